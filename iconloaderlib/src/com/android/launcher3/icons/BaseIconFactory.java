@@ -93,6 +93,9 @@ public class BaseIconFactory implements AutoCloseable {
     @Nullable
     private ShadowGenerator mShadowGenerator;
 
+    @Nullable
+    private IconNormalizer mNormalizer;
+
     // Shadow bitmap used as background for theme icons
     private Bitmap mWhiteShadowLayer;
 
@@ -134,6 +137,14 @@ public class BaseIconFactory implements AutoCloseable {
         return mShadowGenerator;
     }
 
+    @NonNull
+    public IconNormalizer getNormalizer() {
+        if (mNormalizer == null) {
+            mNormalizer = new IconNormalizer(mIconBitmapSize);
+        }
+        return mNormalizer;
+    }
+
     @Nullable
     public IconThemeController getThemeController() {
         return mThemeController;
@@ -363,7 +374,8 @@ public class BaseIconFactory implements AutoCloseable {
             AdaptiveIconDrawable dr = new AdaptiveIconDrawable(
                     new ColorDrawable(mWrapperBackgroundColor), foreground);
             dr.setBounds(0, 0, 1, 1);
-            float scale = new IconNormalizer(mIconBitmapSize).getScale(icon);
+            float scale = NormalizationCache.getInstance(mContext)
+                    .getScale(icon, getNormalizer(), mIconBitmapSize);
             foreground.setDrawable(createScaledDrawable(icon, scale * LEGACY_ICON_SCALE));
             return dr;
         }
@@ -20,10 +20,12 @@ import android.graphics.Bitmap;
 import android.graphics.Canvas;
 import android.graphics.Color;
 import android.graphics.Rect;
+import android.graphics.RectF;
 import android.graphics.drawable.AdaptiveIconDrawable;
 import android.graphics.drawable.Drawable;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 
 import java.nio.ByteBuffer;
 
@@ -93,7 +95,16 @@ public class IconNormalizer {
      * This closeness is used to determine the ratio of hull area to the full icon size.
      * Refer {@link #MAX_CIRCLE_AREA_FACTOR} and {@link #MAX_SQUARE_AREA_FACTOR}
      */
-    public synchronized float getScale(@NonNull Drawable d) {
+    public float getScale(@NonNull Drawable d) {
+        return getScale(d, null);
+    }
+
+    /**
+     * Same as {@link #getScale(Drawable)}, also returning the bounds of the visible pixels in
+     * {@param outBounds} as fractions of the drawable's size. Left untouched for adaptive icons
+     * and for drawables without visible pixels.
+     */
+    public synchronized float getScale(@NonNull Drawable d, @Nullable RectF outBounds) {
         if (d instanceof AdaptiveIconDrawable) {
             return ICON_VISIBLE_AREA_FACTOR;
         }
@@ -184,6 +195,11 @@ public class IconNormalizer {
         mBounds.top = topY;
         mBounds.bottom = bottomY;
 
+        if (outBounds != null) {
+            outBounds.set((float) leftX / width, (float) topY / height,
+                    (float) (rightX + 1) / width, (float) (bottomY + 1) / height);
+        }
+
         // Area of the rectangle required to fit the convex hull
         float rectArea = (bottomY + 1 - topY) * (rightX + 1 - leftX);
         return getScale(area, rectArea, width * height);
@@ -179,17 +179,28 @@ public class IconProvider {
                 if (info != appInfo && info.icon != 0) {
                     try {
                         icon = resources.getDrawableForDensity(info.icon, density);
+                        tagNormalizationSource(icon, appInfo, info.icon, density);
                     } catch (Resources.NotFoundException exc) { }
                 }
                 if (icon == null && appInfo.icon != 0) {
                     // Load the fallback app icon
                     icon = loadAppInfoIcon(appInfo, resources, density);
+                    tagNormalizationSource(icon, appInfo, appInfo.icon, density);
                 }
             } catch (NameNotFoundException | Resources.NotFoundException exc) { }
         }
         return icon != null ? icon : getFullResDefaultActivityIcon(density);
     }
 
+    /** Lets {@link NormalizationCache} memoise the scale of a non-adaptive resource icon. */
+    private static void tagNormalizationSource(
+            @Nullable Drawable icon, ApplicationInfo appInfo, int resId, int density) {
+        if (icon != null && !(icon instanceof AdaptiveIconDrawable)) {
+            NormalizationCache.tagSource(icon,
+                    NormalizationCache.packageResourceKey(appInfo, resId, density));
+        }
+    }
+
     @Nullable
     protected Drawable loadAppInfoIcon(ApplicationInfo info, Resources resources, int density) {
         try {
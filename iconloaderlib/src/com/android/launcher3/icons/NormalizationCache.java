@@ -0,0 +1,258 @@
+/*
+ * Copyright (C) 2025 DefaultLauncher Contributors
+ *
+ * This file is part of DefaultLauncher.
+ *
+ * DefaultLauncher is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * DefaultLauncher is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with DefaultLauncher. If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.android.launcher3.icons;
+
+import android.content.Context;
+import android.content.pm.ApplicationInfo;
+import android.graphics.RectF;
+import android.graphics.drawable.Drawable;
+import android.os.Build;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Persistent memo of {@link IconNormalizer} results, keyed by where a drawable was loaded from.
+ *
+ * <p>Normalising a non-adaptive icon draws it into a bitmap, copies the pixels out and builds a
+ * convex hull. The result depends on the source drawable and, through the scan resolution, on
+ * the icon bitmap size, so it is looked up here by a key made of the package version and the
+ * drawable resource id (app icons) or drawable name (icon pack icons), plus that size. Shape or
+ * pack setting changes then re-render icons without re-scanning pixels.
+ *
+ * <p>Loaders tag the drawables they inflate with {@link #tagSource}; untagged drawables (e.g.
+ * anything re-wrapped or generated at runtime) are always scanned. Entries are kept in LRU order
+ * and written to the app cache shortly after they change. The file is discarded on a system
+ * update, which can change system app icons without changing their install path.
+ */
+public final class NormalizationCache {
+
+    private static final String TAG = "NormalizationCache";
+
+    private static final String FILE_NAME = "icon_normalization.bin";
+    private static final int FORMAT = 2;
+    private static final int MAX_ENTRIES = 4096;
+    private static final long WRITE_DELAY_MS = 2000;
+
+    // Identity-keyed: Drawable does not override equals/hashCode
+    private static final Map<Drawable, String> sSourceKeys =
+            Collections.synchronizedMap(new WeakHashMap<>());
+
+    private static NormalizationCache sInstance;
+
+    private final File mFile;
+    private final LinkedHashMap<String, Entry> mEntries = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+            return size() > MAX_ENTRIES;
+        }
+    };
+
+    private ScheduledThreadPoolExecutor mWriteExecutor;
+    private boolean mLoaded;
+    private boolean mWriteScheduled;
+
+    private NormalizationCache(File file) {
+        mFile = file;
+    }
+
+    public static synchronized NormalizationCache getInstance(@NonNull Context context) {
+        if (sInstance == null) {
+            Context app = context.getApplicationContext();
+            sInstance = new NormalizationCache(
+                    new File((app != null ? app : context).getCacheDir(), FILE_NAME));
+        }
+        return sInstance;
+    }
+
+    /** Key of an icon inflated from the resources of an installed package. */
+    public static String packageResourceKey(ApplicationInfo appInfo, int resId, int density) {
+        // sourceDir changes with every install or update of a non-system package
+        return "res:" + appInfo.packageName + ":" + appInfo.sourceDir + ":"
+                + Integer.toHexString(resId) + ":" + density;
+    }
+
+    /** Key of an icon pack drawable. */
+    public static String iconPackKey(String packPackage, long versionCode, long lastUpdateTime,
+            String drawableName) {
+        return "pack:" + packPackage + ":" + versionCode + ":" + lastUpdateTime + ":"
+                + drawableName;
+    }
+
+    /** Records that {@code d} was freshly loaded from the source identified by {@code key}. */
+    public static void tagSource(@Nullable Drawable d, @NonNull String key) {
+        if (d != null) {
+            sSourceKeys.put(d, key);
+        }
+    }
+
+    @Nullable
+    public static String getSourceKey(@NonNull Drawable d) {
+        return sSourceKeys.get(d);
+    }
+
+    /**
+     * Returns the normalisation scale of {@code d}, from the memo if {@code d} is tagged and was
+     * seen before at {@code iconBitmapSize}, otherwise computed with {@code normalizer} (and
+     * memoised if tagged).
+     *
+     * @param iconBitmapSize the size {@code normalizer} was created for
+     */
+    public float getScale(@NonNull Drawable d, @NonNull IconNormalizer normalizer,
+            int iconBitmapSize) {
+        String sourceKey = getSourceKey(d);
+        if (sourceKey == null) {
+            return normalizer.getScale(d);
+        }
+        String key = sourceKey + "@" + iconBitmapSize;
+        Entry entry = get(key);
+        if (entry != null) {
+            return entry.scale;
+        }
+        RectF bounds = new RectF(0, 0, 1, 1);
+        float scale = normalizer.getScale(d, bounds);
+        put(key, new Entry(scale, bounds));
+        return scale;
+    }
+
+    @Nullable
+    public synchronized Entry get(@NonNull String key) {
+        ensureLoadedLocked();
+        return mEntries.get(key);
+    }
+
+    public synchronized void put(@NonNull String key, @NonNull Entry entry) {
+        ensureLoadedLocked();
+        mEntries.put(key, entry);
+        if (!mWriteScheduled) {
+            mWriteScheduled = true;
+            getWriteExecutorLocked().schedule(this::write, WRITE_DELAY_MS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /** Drops every entry, in memory and on disk. */
+    public synchronized void clear() {
+        mEntries.clear();
+        mLoaded = true;
+        mFile.delete();
+    }
+
+    private ScheduledThreadPoolExecutor getWriteExecutorLocked() {
+        if (mWriteExecutor == null) {
+            mWriteExecutor = new ScheduledThreadPoolExecutor(1, r -> {
+                Thread t = new Thread(r, "icon-normalization-writer");
+                t.setPriority(Thread.MIN_PRIORITY);
+                return t;
+            });
+            mWriteExecutor.setKeepAliveTime(WRITE_DELAY_MS * 2, TimeUnit.MILLISECONDS);
+            mWriteExecutor.allowCoreThreadTimeOut(true);
+        }
+        return mWriteExecutor;
+    }
+
+    private void ensureLoadedLocked() {
+        if (mLoaded) return;
+        mLoaded = true;
+        if (!mFile.isFile()) return;
+
+        try (DataInputStream in = new DataInputStream(
+                new BufferedInputStream(new FileInputStream(mFile)))) {
+            if (in.readInt() != FORMAT || !Build.FINGERPRINT.equals(in.readUTF())) {
+                mFile.delete();
+                return;
+            }
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                String key = in.readUTF();
+                float scale = in.readFloat();
+                RectF bounds = new RectF(
+                        in.readFloat(), in.readFloat(), in.readFloat(), in.readFloat());
+                mEntries.put(key, new Entry(scale, bounds));
+            }
+        } catch (IOException | RuntimeException e) {
+            Log.w(TAG, "Discarding unreadable normalization cache", e);
+            mEntries.clear();
+            mFile.delete();
+        }
+    }
+
+    private void write() {
+        List<Map.Entry<String, Entry>> snapshot;
+        synchronized (this) {
+            mWriteScheduled = false;
+            // Copy in LRU order, so reloading keeps the most recently used entries last
+            snapshot = new ArrayList<>(mEntries.entrySet());
+        }
+
+        File tmp = new File(mFile.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(tmp)))) {
+            out.writeInt(FORMAT);
+            out.writeUTF(Build.FINGERPRINT);
+            out.writeInt(snapshot.size());
+            for (Map.Entry<String, Entry> e : snapshot) {
+                Entry entry = e.getValue();
+                out.writeUTF(e.getKey());
+                out.writeFloat(entry.scale);
+                out.writeFloat(entry.bounds.left);
+                out.writeFloat(entry.bounds.top);
+                out.writeFloat(entry.bounds.right);
+                out.writeFloat(entry.bounds.bottom);
+            }
+        } catch (IOException e) {
+            Log.w(TAG, "Failed to persist normalization cache", e);
+            tmp.delete();
+            return;
+        }
+        if (!tmp.renameTo(mFile)) {
+            Log.w(TAG, "Failed to replace normalization cache");
+            tmp.delete();
+        }
+    }
+
+    /** Normalisation result of one source drawable. */
+    public static final class Entry {
+        public final float scale;
+        /** Visible pixel bounds, as fractions of the drawable's size. */
+        public final RectF bounds;
+
+        public Entry(float scale, @NonNull RectF bounds) {
+            this.scale = scale;
+            this.bounds = bounds;
+        }
+    }
+}
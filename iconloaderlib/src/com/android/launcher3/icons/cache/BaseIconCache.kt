@@ -72,6 +72,15 @@ constructor(
         @JvmField var contentDescription: CharSequence = ""
     }
 
+    /** An icon rendered by [renderIconForCache], waiting to be committed. */
+    class RenderedIcon(
+        val key: ComponentKey,
+        val bitmapInfo: BitmapInfo,
+        val title: CharSequence,
+        val userSerial: Long,
+        val freshnessId: String?,
+    )
+
     private val packageManager: PackageManager = context.packageManager
 
     private val cache: MutableMap<ComponentKey, CacheEntry?> =
@@ -88,6 +97,15 @@ constructor(
 
     val iconUpdateToken = Any()
 
+    /**
+     * Incremented whenever pending icon updates become invalid, i.e. when a new update handler
+     * is created or the icon params change. Icons rendered under an older value are discarded
+     * instead of committed.
+     */
+    @Volatile
+    var iconUpdateGeneration = 0
+        private set
+
     @JvmField val workerHandler = Handler(bgLooper)
 
     @JvmField protected var iconDb = IconDB(context, dbFileName, iconPixelSize)
@@ -125,6 +143,7 @@ constructor(
     @Synchronized
     private fun updateIconParamsBg(iconDpi: Int, iconPixelSize: Int) {
         try {
+            iconUpdateGeneration++
             this.iconDpi = iconDpi
             defaultIcon = null
             userFlagOpMap.clear()
@@ -169,6 +188,7 @@ constructor(
         updateSystemState()
         // Remove all active icon update tasks.
         workerHandler.removeCallbacksAndMessages(iconUpdateToken)
+        iconUpdateGeneration++
         return IconCacheUpdateHandler(this, iconDb, workerHandler)
     }
 
@@ -204,37 +224,78 @@ constructor(
      */
     @Synchronized
     fun <T : Any> addIconToDBAndMemCache(obj: T, cachingLogic: CachingLogic<T>, userSerial: Long) {
+        val icon = renderIconForCache(obj, cachingLogic, userSerial) ?: return
+        addToMemCacheLocked(icon)
+        if (icon.freshnessId != null) {
+            iconDb.insertOrReplace(icon.toCacheDbValues())
+        }
+    }
+
+    /**
+     * Loads the icon and label of [obj] for [addIconToDBAndMemCache] or
+     * [commitIconsToDBAndMemCache]. Does not take the cache lock, so several icons can be rendered
+     * in parallel.
+     *
+     * @return the rendered entry, or null if the icon fails to load
+     */
+    fun <T : Any> renderIconForCache(
+        obj: T,
+        cachingLogic: CachingLogic<T>,
+        userSerial: Long,
+    ): RenderedIcon? {
         val user = cachingLogic.getUser(obj)
         val componentName = cachingLogic.getComponent(obj)
-        val key = ComponentKey(componentName, user)
         val bitmapInfo = cachingLogic.loadIcon(context, this, obj)
 
         // Icon can't be loaded from cachingLogic, which implies alternative icon was loaded
         // (e.g. fallback icon, default icon). So we drop here since there's no point in caching
         // an empty entry.
         if (bitmapInfo.isNullOrLowRes || isDefaultIcon(bitmapInfo, user)) {
-            return
+            return null
         }
         val entryTitle =
             cachingLogic.getLabel(obj).let {
                 if (it.isNullOrEmpty()) componentName.packageName else it
             }
+        return RenderedIcon(
+            ComponentKey(componentName, user),
+            bitmapInfo,
+            entryTitle,
+            userSerial,
+            cachingLogic.getFreshnessIdentifier(obj, iconProvider),
+        )
+    }
 
-        // Only add an entry in memory, if there was already something previously
-        if (cache[key] != null) {
-            val entry = CacheEntry()
-            entry.bitmap = bitmapInfo
-            entry.title = entryTitle
-            entry.contentDescription = getUserBadgedLabel(entryTitle, user)
-            cache[key] = entry
+    /**
+     * Adds/updates entries rendered by [renderIconForCache] in the in-memory cache, and in the DB
+     * within a single transaction.
+     */
+    @Synchronized
+    fun commitIconsToDBAndMemCache(icons: List<RenderedIcon>) {
+        val rows = ArrayList<ContentValues>(icons.size)
+        for (icon in icons) {
+            addToMemCacheLocked(icon)
+            if (icon.freshnessId != null) {
+                rows.add(icon.toCacheDbValues())
+            }
         }
+        iconDb.insertOrReplaceAll(rows)
+    }
 
-        val freshnessId = cachingLogic.getFreshnessIdentifier(obj, iconProvider)
-        if (freshnessId != null) {
-            addOrUpdateCacheDbEntry(bitmapInfo, entryTitle, componentName, userSerial, freshnessId)
+    private fun addToMemCacheLocked(icon: RenderedIcon) {
+        // Only add an entry in memory, if there was already something previously
+        if (cache[icon.key] != null) {
+            val entry = CacheEntry()
+            entry.bitmap = icon.bitmapInfo
+            entry.title = icon.title
+            entry.contentDescription = getUserBadgedLabel(icon.title, icon.key.user)
+            cache[icon.key] = entry
         }
     }
 
+    private fun RenderedIcon.toCacheDbValues() =
+        toCacheDbValues(bitmapInfo, title, key.componentName, userSerial, freshnessId!!)
+
     @Synchronized
     fun getDefaultIcon(user: UserHandle): BitmapInfo {
         if (defaultIcon == null) {
@@ -570,7 +631,15 @@ constructor(
         key: ComponentName,
         userSerial: Long,
         freshnessId: String,
-    ) {
+    ) = iconDb.insertOrReplace(toCacheDbValues(bitmapInfo, label, key, userSerial, freshnessId))
+
+    private fun toCacheDbValues(
+        bitmapInfo: BitmapInfo,
+        label: CharSequence,
+        key: ComponentName,
+        userSerial: Long,
+        freshnessId: String,
+    ): ContentValues {
         val values = ContentValues()
         if (bitmapInfo.canPersist()) {
             values.put(COLUMN_ICON, GraphicsUtils.flattenBitmap(bitmapInfo.icon))
@@ -587,7 +656,7 @@ constructor(
         values.put(COLUMN_COMPONENT, key.flattenToString())
         values.put(COLUMN_USER, userSerial)
         values.put(COLUMN_FRESHNESS_ID, freshnessId)
-        iconDb.insertOrReplace(values)
+        return values
     }
 
     private fun assertWorkerThread() {
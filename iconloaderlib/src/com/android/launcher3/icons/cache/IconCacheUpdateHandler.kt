@@ -19,13 +19,20 @@ import android.content.ComponentName
 import android.content.pm.ApplicationInfo
 import android.database.sqlite.SQLiteException
 import android.os.Handler
+import android.os.Process
 import android.os.SystemClock
 import android.os.UserHandle
 import android.util.ArrayMap
 import android.util.Log
+import com.android.launcher3.icons.cache.BaseIconCache.RenderedIcon
 import com.android.launcher3.util.ComponentKey
 import com.android.launcher3.util.SQLiteCacheHelper
 import java.util.ArrayDeque
+import java.util.concurrent.LinkedBlockingQueue
+import java.util.concurrent.ThreadPoolExecutor
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicInteger
+import java.util.concurrent.atomic.AtomicLong
 
 /** Utility class to handle updating the Icon cache */
 class IconCacheUpdateHandler(
@@ -40,6 +47,12 @@ class IconCacheUpdateHandler(
 
     private val itemsToDelete = HashSet<UpdateRow>()
 
+    // Pending updates are dropped once the cache moves on to a newer generation
+    private val generation = iconCache.iconUpdateGeneration
+
+    // Progress of the icon updates scheduled by this handler, for the log line of each refresh
+    private val stats = UpdateStats()
+
     // During the first pass, we load all the items from DB and add all invalid items to
     // mItemsToDelete. In follow up passes, we  go through the items in mItemsToDelete, and if the
     // item is valid, removes it from the list, or leave it there.
@@ -91,7 +104,7 @@ class IconCacheUpdateHandler(
      * During the first pass, all the items from the cache are verified one-by-one and any entry
      * with no corresponding entry in {@code componentMap} is added to {@code itemsToDelete}
      *
-     * Also starts a SerializedIconUpdateTask for all updated entries
+     * Also starts a BatchedIconUpdateTask for all updated entries
      */
     private fun <T : Any> updateIconsPerUserForFirstPass(
         user: UserHandle,
@@ -162,7 +175,7 @@ class IconCacheUpdateHandler(
         // Insert remaining apps.
         if (componentMap.isNotEmpty() || appsToUpdate.isNotEmpty()) {
             val appsToAdd = ArrayDeque(componentMap.values)
-            SerializedIconUpdateTask(
+            BatchedIconUpdateTask(
                     userSerial,
                     user,
                     appsToAdd,
@@ -205,7 +218,7 @@ class IconCacheUpdateHandler(
         if (componentMap.isNotEmpty() || appsToUpdate.isNotEmpty()) {
             val appsToAdd = ArrayDeque<T>()
             appsToAdd.addAll(componentMap.values)
-            SerializedIconUpdateTask(
+            BatchedIconUpdateTask(
                     userSerial,
                     user,
                     appsToAdd,
@@ -245,10 +258,11 @@ class IconCacheUpdateHandler(
 
     /**
      * A runnable that updates invalid icons and adds missing icons in the DB for the provided
-     * LauncherActivityInfo list. Items are updated/added one at a time, so that the worker thread
-     * doesn't get blocked.
+     * LauncherActivityInfo list. Items are processed in batches: each batch is rendered in parallel
+     * on [renderExecutor], then committed on the worker thread in a single DB transaction. The
+     * worker thread only does the commit, and yields between batches.
      */
-    private inner class SerializedIconUpdateTask<T : Any>(
+    private inner class BatchedIconUpdateTask<T : Any>(
         private val userSerial: Long,
         private val userHandle: UserHandle,
         private val appsToAdd: ArrayDeque<T>,
@@ -257,28 +271,85 @@ class IconCacheUpdateHandler(
         private val onUpdateCallback: OnUpdateCallback,
     ) : Runnable {
         private val updatedPackages = HashSet<String>()
+        private val startTime = SystemClock.uptimeMillis()
+        private val total = appsToAdd.size + appsToUpdate.size
+
+        // Current batch; written on the worker thread before rendering starts
+        private val batch = ArrayList<T>(BATCH_SIZE)
+        private val rendered = arrayOfNulls<RenderedIcon>(BATCH_SIZE)
+        private var batchUpdatesApps = false
+
+        init {
+            stats.onScheduled(total)
+            TOTAL_STATS.onScheduled(total)
+        }
 
         override fun run() {
-            if (appsToUpdate.isNotEmpty()) {
-                val app = appsToUpdate.removeLast()
-                val pkg = cachingLogic.getComponent(app).packageName
+            if (generation != iconCache.iconUpdateGeneration) return
 
-                iconCache.addIconToDBAndMemCache(app, cachingLogic, userSerial)
-                updatedPackages.add(pkg)
+            batchUpdatesApps = appsToUpdate.isNotEmpty()
+            val source = if (batchUpdatesApps) appsToUpdate else appsToAdd
+            batch.clear()
+            while (batch.size < BATCH_SIZE && source.isNotEmpty()) {
+                batch.add(source.removeLast())
+            }
+            if (batch.isEmpty()) {
+                val elapsed = SystemClock.uptimeMillis() - startTime
+                stats.onRefreshFinished(elapsed)
+                TOTAL_STATS.onRefreshFinished(elapsed)
+                Log.d(TAG, "Refreshed $total icons for $userHandle in ${elapsed}ms, $stats")
+                return
+            }
 
+            val remaining = AtomicInteger(batch.size)
+            for (i in batch.indices) {
+                val app = batch[i]
+                renderExecutor.execute {
+                    try {
+                        rendered[i] =
+                            try {
+                                iconCache.renderIconForCache(app, cachingLogic, userSerial)
+                            } catch (e: RuntimeException) {
+                                Log.e(TAG, "Failed to render icon for update", e)
+                                null
+                            }
+                    } finally {
+                        // Even if rendering threw an Error, so the batch still commits and the
+                        // update carries on with the next one
+                        if (remaining.decrementAndGet() == 0) {
+                            workerHandler.postAtTime(
+                                { commitBatch() },
+                                iconCache.iconUpdateToken,
+                                SystemClock.uptimeMillis(),
+                            )
+                        }
+                    }
+                }
+            }
+        }
+
+        private fun commitBatch() {
+            if (generation != iconCache.iconUpdateGeneration) return
+
+            val icons = ArrayList<RenderedIcon>(batch.size)
+            for (i in batch.indices) {
+                rendered[i]?.let { icons.add(it) }
+                rendered[i] = null
+            }
+            iconCache.commitIconsToDBAndMemCache(icons)
+            stats.onCommitted(batch.size, icons.size)
+            TOTAL_STATS.onCommitted(batch.size, icons.size)
+
+            if (batchUpdatesApps) {
+                batch.forEach { updatedPackages.add(cachingLogic.getComponent(it).packageName) }
                 if (appsToUpdate.isEmpty() && updatedPackages.isNotEmpty()) {
                     // No more app to update. Notify callback.
                     onUpdateCallback.onPackageIconsUpdated(updatedPackages, userHandle)
                 }
-
-                // Let it run one more time.
-                scheduleNext()
-            } else if (appsToAdd.isNotEmpty()) {
-                iconCache.addIconToDBAndMemCache(appsToAdd.removeLast(), cachingLogic, userSerial)
-
-                // Let it run one more time.
-                scheduleNext()
             }
+
+            // Let it run one more time.
+            scheduleNext()
         }
 
         fun scheduleNext() {
@@ -290,11 +361,83 @@ class IconCacheUpdateHandler(
         }
     }
 
+    /**
+     * Counts icons scheduled, processed and written by icon cache refreshes, and their rate over
+     * the time the finished refreshes ran. Updated on the worker thread, read from any thread.
+     */
+    class UpdateStats {
+        private val refreshes = AtomicInteger()
+        private val scheduled = AtomicInteger()
+        private val processed = AtomicInteger()
+        private val written = AtomicInteger()
+        private val refreshTimeMs = AtomicLong()
+
+        internal fun onScheduled(count: Int) {
+            scheduled.addAndGet(count)
+        }
+
+        internal fun onCommitted(processedCount: Int, writtenCount: Int) {
+            processed.addAndGet(processedCount)
+            written.addAndGet(writtenCount)
+        }
+
+        internal fun onRefreshFinished(elapsedMs: Long) {
+            refreshes.incrementAndGet()
+            refreshTimeMs.addAndGet(elapsedMs)
+        }
+
+        /** Icons processed per second of refresh time. */
+        val iconsPerSecond: Float
+            get() {
+                val elapsed = refreshTimeMs.get()
+                return if (elapsed <= 0) 0f else processed.get() * 1000f / elapsed
+            }
+
+        fun reset() {
+            refreshes.set(0)
+            scheduled.set(0)
+            processed.set(0)
+            written.set(0)
+            refreshTimeMs.set(0)
+        }
+
+        override fun toString() =
+            "refreshes=$refreshes processed=$processed/$scheduled written=$written " +
+                "time=${refreshTimeMs}ms rate=${"%.1f".format(iconsPerSecond)} icons/s"
+    }
+
     fun interface OnUpdateCallback {
         fun onPackageIconsUpdated(updatedPackages: HashSet<String>, user: UserHandle)
     }
 
     companion object {
         private const val TAG = "IconCacheUpdateHandler"
+
+        /** Totals of every handler since process start or the last reset, for dumpsys. */
+        @JvmField val TOTAL_STATS = UpdateStats()
+
+        private const val BATCH_SIZE = 16
+
+        private val RENDER_THREADS = (Runtime.getRuntime().availableProcessors() - 1).coerceIn(1, 4)
+
+        /** Bounded pool rendering the icons of a batch in parallel; idle threads time out. */
+        private val renderExecutor: ThreadPoolExecutor by lazy {
+            ThreadPoolExecutor(
+                    RENDER_THREADS,
+                    RENDER_THREADS,
+                    1,
+                    TimeUnit.SECONDS,
+                    LinkedBlockingQueue(),
+                ) { r ->
+                    Thread(
+                        {
+                            Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND)
+                            r.run()
+                        },
+                        "icon-cache-render",
+                    )
+                }
+                .apply { allowCoreThreadTimeOut(true) }
+        }
     }
 }
@@ -0,0 +1,280 @@
+/*
+ * Copyright (C) 2025 DefaultLauncher Contributors
+ *
+ * This file is part of DefaultLauncher.
+ *
+ * DefaultLauncher is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * DefaultLauncher is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with DefaultLauncher. If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.android.launcher3.icons.pack;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Plain-JVM microbenchmark for the {@link PerAppIconOverrideManager} lookup path, run by
+ * {@code run-override-snapshot.sh}.
+ *
+ * The manager needs {@code ComponentName} and a {@code Context}, so both strategies are modelled
+ * here on a stand-in {@link Component} with the same cached-hash {@code hashCode()} and an
+ * allocating {@code flattenToString()}:
+ * <ul>
+ *   <li>{@link LockedStore}: the manager before the snapshot. Lookups are {@code synchronized}
+ *   and build a key string; a write updates the map and serialises it to JSON under the same
+ *   lock, as {@code persist()} did.</li>
+ *   <li>{@link SnapshotStore}: the copy-on-write snapshot. Lookups are a volatile read and a
+ *   {@code HashMap.get()} on the component; a write copies the string-keyed map and rebuilds the
+ *   component-keyed one under a writer lock, as {@code publish()} does.</li>
+ * </ul>
+ * Each run has reader threads standing in for binder and UI threads looking up random
+ * components, alone and then next to a writer changing an override at a fixed rate. It first
+ * checks that both stores return the same overrides, then reports the time per lookup.
+ */
+public final class OverrideSnapshotBenchmark {
+
+    private static final int COMPONENT_COUNT = 2000;
+    private static final int OVERRIDE_COUNT = 200;
+    private static final int READER_THREADS = 3;
+    private static final long WRITE_INTERVAL_NANOS = TimeUnit.MICROSECONDS.toNanos(500);
+    private static final long WARMUP_MS = 1000;
+    private static final long MEASURED_MS = 2000;
+    private static final long SEED = 42;
+
+    private OverrideSnapshotBenchmark() { }
+
+    public static void main(String[] args) throws InterruptedException {
+        Random random = new Random(SEED);
+        Component[] components = new Component[COMPONENT_COUNT];
+        for (int i = 0; i < COMPONENT_COUNT; i++) {
+            components[i] = new Component("com.example.app" + i, "com.example.app" + i
+                    + ".MainActivity");
+        }
+        Map<String, String> initial = new HashMap<>();
+        for (int i = 0; i < OVERRIDE_COUNT; i++) {
+            Component c = components[random.nextInt(COMPONENT_COUNT)];
+            initial.put(c.flattenToString(), "pack" + i + "|drawable" + i);
+        }
+
+        Store locked = new LockedStore(initial);
+        Store snapshot = new SnapshotStore(initial);
+        for (int i = 0; i < 500; i++) {
+            Component c = components[random.nextInt(COMPONENT_COUNT)];
+            String value = random.nextBoolean() ? null : "edit" + i;
+            locked.set(c, value);
+            snapshot.set(c, value);
+        }
+        for (Component c : components) {
+            String expected = locked.get(c);
+            String actual = snapshot.get(c);
+            if (expected == null ? actual != null : !expected.equals(actual)) {
+                throw new AssertionError("Stores differ for " + c.flattenToString() + ": "
+                        + expected + " / " + actual);
+            }
+        }
+        System.out.println("Both stores agree on " + COMPONENT_COUNT + " components after 500"
+                + " edits; " + READER_THREADS + " reader threads");
+
+        for (boolean withWriter : new boolean[] {false, true}) {
+            run("synchronized map", new LockedStore(initial), components, withWriter);
+            run("copy-on-write snapshot", new SnapshotStore(initial), components, withWriter);
+        }
+    }
+
+    private static void run(String name, Store store, Component[] components,
+            boolean withWriter) throws InterruptedException {
+        AtomicBoolean measuring = new AtomicBoolean();
+        AtomicBoolean stop = new AtomicBoolean();
+        long[] lookups = new long[READER_THREADS];
+        long[] sinks = new long[READER_THREADS];
+        CountDownLatch done = new CountDownLatch(READER_THREADS);
+        for (int t = 0; t < READER_THREADS; t++) {
+            int index = t;
+            new Thread(() -> {
+                Random random = new Random(SEED + index);
+                long count = 0;
+                long sink = 0;
+                boolean counting = false;
+                while (!stop.get()) {
+                    if (!counting && measuring.get()) {
+                        counting = true;
+                        count = 0;
+                    }
+                    String value = store.get(components[random.nextInt(components.length)]);
+                    if (value != null) sink += value.length();
+                    count++;
+                }
+                lookups[index] = count;
+                sinks[index] = sink;
+                done.countDown();
+            }, "reader-" + t).start();
+        }
+
+        long[] writes = new long[1];
+        Thread writer = null;
+        if (withWriter) {
+            writer = new Thread(() -> {
+                Random random = new Random(SEED - 1);
+                while (!stop.get()) {
+                    Component c = components[random.nextInt(components.length)];
+                    store.set(c, random.nextBoolean() ? null : "edit" + writes[0]);
+                    if (measuring.get()) writes[0]++;
+                    LockSupport.parkNanos(WRITE_INTERVAL_NANOS);
+                }
+            }, "writer");
+            writer.start();
+        }
+
+        Thread.sleep(WARMUP_MS);
+        measuring.set(true);
+        long start = System.nanoTime();
+        Thread.sleep(MEASURED_MS);
+        stop.set(true);
+        long elapsed = System.nanoTime() - start;
+        done.await();
+        if (writer != null) writer.join();
+
+        long total = 0;
+        long sink = 0;
+        for (int t = 0; t < READER_THREADS; t++) {
+            total += lookups[t];
+            sink += sinks[t];
+        }
+        // Wall time per lookup on one reader thread
+        long perLookup = elapsed * READER_THREADS / Math.max(1, total);
+        System.out.printf(Locale.ROOT, "%-24s %-13s %6d ns/lookup %12d lookups %6d writes"
+                + " (sink %d)%n", name, withWriter ? "with writer" : "readers only",
+                perLookup, total, writes[0], sink);
+    }
+
+    /** Stand-in for {@code ComponentName}: cached string hashes, allocating flatten. */
+    private static final class Component {
+        final String pkg;
+        final String cls;
+
+        Component(String pkg, String cls) {
+            this.pkg = pkg;
+            this.cls = cls;
+        }
+
+        String flattenToString() {
+            return pkg + "/" + cls;
+        }
+
+        static Component unflattenFromString(String key) {
+            int sep = key.indexOf('/');
+            return sep < 0 ? null : new Component(key.substring(0, sep), key.substring(sep + 1));
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Component && pkg.equals(((Component) o).pkg)
+                    && cls.equals(((Component) o).cls);
+        }
+
+        @Override
+        public int hashCode() {
+            return pkg.hashCode() + cls.hashCode();
+        }
+    }
+
+    private interface Store {
+        String get(Component c);
+
+        void set(Component c, String value);
+    }
+
+    /** The manager before the snapshot: one lock for lookups, edits and serialisation. */
+    private static final class LockedStore implements Store {
+        private final Map<String, String> mOverrides;
+        // Last serialised form, standing in for the prefs write
+        private String mPersisted;
+
+        LockedStore(Map<String, String> initial) {
+            mOverrides = new HashMap<>(initial);
+        }
+
+        @Override
+        public synchronized String get(Component c) {
+            return mOverrides.get(c.flattenToString());
+        }
+
+        @Override
+        public synchronized void set(Component c, String value) {
+            String key = c.flattenToString();
+            if (value == null) {
+                mOverrides.remove(key);
+            } else {
+                mOverrides.put(key, value);
+            }
+            mPersisted = toJson(mOverrides);
+        }
+
+        private static String toJson(Map<String, String> overrides) {
+            StringBuilder json = new StringBuilder("{");
+            for (Map.Entry<String, String> e : overrides.entrySet()) {
+                if (json.length() > 1) json.append(',');
+                json.append('"').append(e.getKey()).append("\":{\"pack\":\"")
+                        .append(e.getValue()).append("\"}");
+            }
+            return json.append('}').toString();
+        }
+    }
+
+    /** The copy-on-write snapshot: lock-free lookups, writers copy and republish. */
+    private static final class SnapshotStore implements Store {
+        private volatile Snapshot mSnapshot;
+
+        SnapshotStore(Map<String, String> initial) {
+            mSnapshot = new Snapshot(initial);
+        }
+
+        @Override
+        public String get(Component c) {
+            return mSnapshot.byComponent.get(c);
+        }
+
+        @Override
+        public synchronized void set(Component c, String value) {
+            Map<String, String> byKey = new HashMap<>(mSnapshot.byKey);
+            String key = c.flattenToString();
+            if (value == null) {
+                byKey.remove(key);
+            } else {
+                byKey.put(key, value);
+            }
+            mSnapshot = new Snapshot(byKey);
+        }
+
+        private static final class Snapshot {
+            final Map<String, String> byKey;
+            final Map<Component, String> byComponent;
+
+            Snapshot(Map<String, String> byKey) {
+                this.byKey = Collections.unmodifiableMap(new HashMap<>(byKey));
+                Map<Component, String> map = new HashMap<>(byKey.size() * 2);
+                for (Map.Entry<String, String> e : byKey.entrySet()) {
+                    Component c = Component.unflattenFromString(e.getKey());
+                    if (c != null) map.put(c, e.getValue());
+                }
+                this.byComponent = Collections.unmodifiableMap(map);
+            }
+        }
+    }
+}
@@ -0,0 +1,254 @@
+/*
+ * Copyright (C) 2025 DefaultLauncher Contributors
+ *
+ * This file is part of DefaultLauncher.
+ *
+ * DefaultLauncher is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * DefaultLauncher is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with DefaultLauncher. If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.android.launcher3.search;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.PriorityQueue;
+import java.util.Random;
+
+/**
+ * Plain-JVM microbenchmark for {@link SearchScorer}, run by {@code run-search-scorer.sh}.
+ *
+ * Scores fixed, seeded queries against a synthetic list of app titles three ways: the original
+ * allocating scorer ({@link LegacyScorer}, a copy of {@code SearchScorer.score} before the
+ * allocation-free rewrite) with a full sort, the pre-lowercased {@code char[]} path with a full
+ * sort, and the {@code char[]} path behind a top-K heap whose worst score is passed as the
+ * early-exit bar, as {@link AppSearchIndex} does. It first checks that the new scorer gives every
+ * pair the original's score and that both new paths return the original's top results, then
+ * reports the time per query after warmup.
+ */
+public final class SearchScorerBenchmark {
+
+    private static final int TITLE_COUNT = 300;
+    private static final int TOP_K = 5;
+    private static final int WARMUP_ROUNDS = 200;
+    private static final int MEASURED_ROUNDS = 1000;
+    private static final long SEED = 42;
+    private static final float SCORE_TOLERANCE = 1e-5f;
+
+    private static final String[] WORDS = {
+            "calendar", "camera", "chrome", "clock", "contacts", "drive", "files", "gallery",
+            "gmail", "keep", "maps", "messages", "music", "news", "notes", "phone", "photos",
+            "play", "settings", "store", "tasks", "translate", "wallet", "weather", "youtube",
+            "google", "pro", "lite", "go", "plus", "studio", "manager", "reader", "player"};
+    private static final String[] QUERIES = {
+            "c", "ch", "chr", "chrome", "cam", "gmail", "mpas", "setings", "you", "wthr",
+            "photo", "play store", "note", "xyz"};
+
+    private SearchScorerBenchmark() { }
+
+    public static void main(String[] args) {
+        Random random = new Random(SEED);
+        String[] titles = new String[TITLE_COUNT];
+        char[][] titlesLower = new char[TITLE_COUNT][];
+        for (int i = 0; i < TITLE_COUNT; i++) {
+            int words = 1 + random.nextInt(3);
+            StringBuilder sb = new StringBuilder();
+            for (int w = 0; w < words; w++) {
+                if (w > 0) sb.append(' ');
+                String word = WORDS[random.nextInt(WORDS.length)];
+                sb.append(Character.toUpperCase(word.charAt(0))).append(word.substring(1));
+            }
+            titles[i] = sb.toString();
+            titlesLower[i] = titles[i].toLowerCase(Locale.ROOT).toCharArray();
+        }
+        char[][] queriesLower = new char[QUERIES.length][];
+        for (int q = 0; q < QUERIES.length; q++) {
+            queriesLower[q] = QUERIES[q].toCharArray();
+        }
+
+        for (int q = 0; q < QUERIES.length; q++) {
+            for (int i = 0; i < TITLE_COUNT; i++) {
+                float legacy = LegacyScorer.score(QUERIES[q], titles[i]);
+                float current = SearchScorer.scoreLowercase(queriesLower[q], titlesLower[i], 0f);
+                if (Math.abs(legacy - current) > SCORE_TOLERANCE) {
+                    throw new AssertionError("Score differs for \"" + QUERIES[q] + "\" vs \""
+                            + titles[i] + "\": " + legacy + " / " + current);
+                }
+            }
+            int[] expected = topByLegacy(QUERIES[q], titles);
+            int[] sorted = topByChars(queriesLower[q], titlesLower);
+            int[] heap = topByHeap(queriesLower[q], titlesLower);
+            if (!Arrays.equals(expected, sorted) || !Arrays.equals(expected, heap)) {
+                throw new AssertionError("Top results differ for \"" + QUERIES[q] + "\": "
+                        + Arrays.toString(expected) + " / " + Arrays.toString(sorted)
+                        + " / " + Arrays.toString(heap));
+            }
+        }
+        System.out.println("Scores and top-" + TOP_K + " results match the legacy scorer for "
+                + QUERIES.length + " queries over " + TITLE_COUNT + " titles");
+
+        report("legacy score(String) + sort", () -> {
+            int sink = 0;
+            for (String query : QUERIES) sink += topByLegacy(query, titles).length;
+            return sink;
+        });
+        report("scoreLowercase(char[]) + sort", () -> {
+            int sink = 0;
+            for (char[] query : queriesLower) sink += topByChars(query, titlesLower).length;
+            return sink;
+        });
+        report("scoreLowercase(char[]) + top-K bar", () -> {
+            int sink = 0;
+            for (char[] query : queriesLower) sink += topByHeap(query, titlesLower).length;
+            return sink;
+        });
+    }
+
+    private static void report(String name, Round round) {
+        long sink = 0;
+        for (int i = 0; i < WARMUP_ROUNDS; i++) sink += round.run();
+        long start = System.nanoTime();
+        for (int i = 0; i < MEASURED_ROUNDS; i++) sink += round.run();
+        long perQuery = (System.nanoTime() - start) / ((long) MEASURED_ROUNDS * QUERIES.length);
+        System.out.printf(Locale.ROOT, "%-36s %8d ns/query (sink %d)%n", name, perQuery, sink);
+    }
+
+    private static int[] topByLegacy(String query, String[] titles) {
+        List<float[]> scored = new ArrayList<>();
+        for (int i = 0; i < titles.length; i++) {
+            float score = LegacyScorer.score(query, titles[i]);
+            if (score > 0) scored.add(new float[] {score, i});
+        }
+        return top(scored);
+    }
+
+    private static int[] topByChars(char[] query, char[][] titles) {
+        List<float[]> scored = new ArrayList<>();
+        for (int i = 0; i < titles.length; i++) {
+            float score = SearchScorer.scoreLowercase(query, titles[i], 0f);
+            if (score > 0) scored.add(new float[] {score, i});
+        }
+        return top(scored);
+    }
+
+    private static int[] topByHeap(char[] query, char[][] titles) {
+        PriorityQueue<float[]> heap = new PriorityQueue<>(TOP_K + 1,
+                (a, b) -> a[0] != b[0] ? Float.compare(a[0], b[0]) : Float.compare(b[1], a[1]));
+        for (int i = 0; i < titles.length; i++) {
+            float bar = heap.size() < TOP_K ? 0f : heap.peek()[0];
+            float score = SearchScorer.scoreLowercase(query, titles[i], bar);
+            if (score <= 0) continue;
+            heap.add(new float[] {score, i});
+            if (heap.size() > TOP_K) heap.poll();
+        }
+        return top(new ArrayList<>(heap));
+    }
+
+    /** Best first, ties by title order, at most {@link #TOP_K}. */
+    private static int[] top(List<float[]> scored) {
+        scored.sort((a, b) -> a[0] != b[0] ? Float.compare(b[0], a[0]) : Float.compare(a[1], b[1]));
+        int[] result = new int[Math.min(TOP_K, scored.size())];
+        for (int i = 0; i < result.length; i++) result[i] = (int) scored.get(i)[1];
+        return result;
+    }
+
+    private interface Round {
+        int run();
+    }
+
+    /**
+     * {@code SearchScorer.score} as it was before the allocation-free rewrite: lowercase copies
+     * of both strings and two match arrays per call.
+     */
+    private static final class LegacyScorer {
+
+        private static final float PREFIX_BONUS = 0.8f;
+        private static final float SUBSTRING_BONUS = 0.4f;
+        private static final float THRESHOLD = 0.8f;
+
+        static float jaroWinklerSimilarity(String s1, String s2) {
+            if (s1 == null || s2 == null) return 0f;
+            if (s1.equals(s2)) return 1f;
+
+            int len1 = s1.length();
+            int len2 = s2.length();
+            if (len1 == 0 || len2 == 0) return 0f;
+
+            int matchWindow = Math.max(len1, len2) / 2 - 1;
+            if (matchWindow < 0) matchWindow = 0;
+
+            boolean[] matched1 = new boolean[len1];
+            boolean[] matched2 = new boolean[len2];
+
+            int matches = 0;
+            int transpositions = 0;
+
+            for (int i = 0; i < len1; i++) {
+                int start = Math.max(0, i - matchWindow);
+                int end = Math.min(i + matchWindow + 1, len2);
+                for (int j = start; j < end; j++) {
+                    if (matched2[j] || s1.charAt(i) != s2.charAt(j)) continue;
+                    matched1[i] = true;
+                    matched2[j] = true;
+                    matches++;
+                    break;
+                }
+            }
+
+            if (matches == 0) return 0f;
+
+            int k = 0;
+            for (int i = 0; i < len1; i++) {
+                if (!matched1[i]) continue;
+                while (!matched2[k]) k++;
+                if (s1.charAt(i) != s2.charAt(k)) transpositions++;
+                k++;
+            }
+
+            float jaro = ((float) matches / len1
+                    + (float) matches / len2
+                    + (float) (matches - transpositions / 2) / matches) / 3f;
+
+            int prefixLen = 0;
+            int maxPrefix = Math.min(4, Math.min(len1, len2));
+            for (int i = 0; i < maxPrefix; i++) {
+                if (s1.charAt(i) == s2.charAt(i)) {
+                    prefixLen++;
+                } else {
+                    break;
+                }
+            }
+
+            return jaro + prefixLen * 0.1f * (1f - jaro);
+        }
+
+        static float score(String query, String target) {
+            if (query == null || target == null) return 0f;
+
+            String queryLower = query.toLowerCase();
+            String targetLower = target.toLowerCase();
+
+            float jw = jaroWinklerSimilarity(queryLower, targetLower);
+
+            float bonus = 0f;
+            if (targetLower.startsWith(queryLower)) {
+                bonus = PREFIX_BONUS;
+            } else if (targetLower.contains(queryLower)) {
+                bonus = SUBSTRING_BONUS;
+            }
+
+            float total = jw + bonus;
+            return total >= THRESHOLD ? total : 0f;
+        }
+    }
+}
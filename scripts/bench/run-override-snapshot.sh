@@ -0,0 +1,12 @@
+#!/usr/bin/env bash
+# run-override-snapshot.sh — Run the per-app icon override lookup microbenchmark on the host JVM.
+# The harness models both lookup strategies itself, so it compiles without the Android build.
+# Usage: bash scripts/bench/run-override-snapshot.sh
+set -euo pipefail
+
+ROOT="$(cd "$(dirname "$0")/../.." && pwd)"
+OUT="$(mktemp -d)"
+trap 'rm -rf "$OUT"' EXIT
+
+javac -encoding UTF-8 -d "$OUT" "$ROOT/scripts/bench/OverrideSnapshotBenchmark.java"
+java -cp "$OUT" com.android.launcher3.icons.pack.OverrideSnapshotBenchmark
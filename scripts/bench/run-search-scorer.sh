@@ -0,0 +1,14 @@
+#!/usr/bin/env bash
+# run-search-scorer.sh — Run the SearchScorer microbenchmark on the host JVM.
+# SearchScorer is plain Java, so it is compiled on its own, without the Android build.
+# Usage: bash scripts/bench/run-search-scorer.sh
+set -euo pipefail
+
+ROOT="$(cd "$(dirname "$0")/../.." && pwd)"
+OUT="$(mktemp -d)"
+trap 'rm -rf "$OUT"' EXIT
+
+javac -encoding UTF-8 -d "$OUT" \
+    "$ROOT/src/com/android/launcher3/search/SearchScorer.java" \
+    "$ROOT/scripts/bench/SearchScorerBenchmark.java"
+java -cp "$OUT" com.android.launcher3.search.SearchScorerBenchmark
@@ -276,6 +276,9 @@ public class BubbleTextView extends TextView implements ItemInfoUpdateReceiver,
 
     private CancellableTask mIconLoadRequest;
 
+    // Identifies the latest async override icon request; stale results are dropped.
+    private Object mOverrideIconToken;
+
     /** Cached notification dot color — cleared on theme change via {@link #clearDotColorCache()}. */
     private static int sCachedDotColor;
 
@@ -400,6 +403,7 @@ public class BubbleTextView extends TextView implements ItemInfoUpdateReceiver,
         cancelLineIndicatorAnim();
 
         setTag(null);
+        mOverrideIconToken = null;
         if (mIconLoadRequest != null) {
             mIconLoadRequest.cancel();
             mIconLoadRequest = null;
@@ -612,14 +616,18 @@ public class BubbleTextView extends TextView implements ItemInfoUpdateReceiver,
             flags |= FLAG_SKIP_USER_BADGE;
         }
         FastBitmapDrawable iconDrawable;
-        // Check for drawer-specific icon override when displaying in all-apps
+        // Drawer and per-app home overrides are bound from cache when possible; on a miss the
+        // regular home icon is bound as a placeholder and the override swaps in once rendered.
+        Object token = new Object();
+        mOverrideIconToken = token;
         if (mDisplay == DISPLAY_ALL_APPS) {
-            FastBitmapDrawable drawerIcon =
-                    DrawerIconResolver.getInstance().getDrawerIcon(info, getContext(), flags);
+            FastBitmapDrawable drawerIcon = DrawerIconResolver.getInstance().getDrawerIconAsync(
+                    info, getContext(), flags, d -> applyOverrideIcon(info, token, d));
             iconDrawable = drawerIcon != null ? drawerIcon : info.newIcon(getContext(), flags);
         } else if (mDisplay == DISPLAY_WORKSPACE) {
-            FastBitmapDrawable homeOverride =
-                    PerAppHomeIconResolver.getInstance().getHomeIcon(info, getContext(), flags);
+            FastBitmapDrawable homeOverride = PerAppHomeIconResolver.getInstance()
+                    .getHomeIconAsync(info, getContext(), flags,
+                            d -> applyOverrideIcon(info, token, d));
             iconDrawable = homeOverride != null ? homeOverride : info.newIcon(getContext(), flags);
         } else {
             iconDrawable = info.newIcon(getContext(), flags);
@@ -632,6 +640,21 @@ public class BubbleTextView extends TextView implements ItemInfoUpdateReceiver,
         setIcon(iconDrawable);
     }
 
+    /**
+     * Swaps in an asynchronously rendered override icon, unless this view has been rebound
+     * (or reset for recycling) since the request was made.
+     */
+    private void applyOverrideIcon(ItemInfoWithIcon info, Object token,
+            FastBitmapDrawable icon) {
+        if (mOverrideIconToken != token || getTag() != info
+                || mIcon instanceof PreloadIconDrawable) {
+            return;
+        }
+        mOverrideIconToken = null;
+        mDotParams.appColor = icon.getIconColor();
+        setIcon(icon);
+    }
+
     protected boolean shouldUseTheme() {
         return mDisplay == DISPLAY_WORKSPACE || mDisplay == DISPLAY_FOLDER
                 || mDisplay == DISPLAY_TASKBAR;
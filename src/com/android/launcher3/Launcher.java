@@ -107,6 +107,7 @@ import static com.android.launcher3.states.RotationHelper.REQUEST_LOCK;
 import static com.android.launcher3.states.RotationHelper.REQUEST_NONE;
 import static com.android.launcher3.testing.shared.TestProtocol.LAUNCHER_ACTIVITY_STOPPED_MESSAGE;
 import static com.android.launcher3.util.Executors.MAIN_EXECUTOR;
+import static com.android.launcher3.util.Executors.MODEL_EXECUTOR;
 import static com.android.launcher3.util.ItemInfoMatcher.forFolderMatch;
 import static com.android.launcher3.util.SettingsCache.TOUCHPAD_NATURAL_SCROLLING;
 import static com.android.launcher3.util.WallpaperThemeManager.setWallpaperDependentTheme;
@@ -196,8 +197,11 @@ import com.android.launcher3.dragndrop.DragLayer;
 import com.android.launcher3.dragndrop.DragView;
 import com.android.launcher3.dragndrop.LauncherDragController;
 import com.android.launcher3.folder.Folder;
+import com.android.launcher3.folder.FolderCoverManager;
 import com.android.launcher3.folder.FolderIcon;
 import com.android.launcher3.icons.IconCache;
+import com.android.launcher3.icons.cache.IconCacheUpdateHandler;
+import com.android.launcher3.icons.pack.PerAppIconOverrideManager;
 import com.android.launcher3.keyboard.ViewGroupFocusHelper;
 import com.android.launcher3.logger.LauncherAtom;
 import com.android.launcher3.logger.LauncherAtom.ContainerInfo;
@@ -225,6 +229,7 @@ import com.android.launcher3.pm.PinRequestHelper;
 import com.android.launcher3.popup.ArrowPopup;
 import com.android.launcher3.popup.PopupDataProvider;
 import com.android.launcher3.popup.SystemShortcut;
+import com.android.launcher3.search.SearchMetrics;
 import com.android.launcher3.statemanager.StateManager;
 import com.android.launcher3.statemanager.StateManager.StateHandler;
 import com.android.launcher3.statemanager.StatefulActivity;
@@ -275,6 +280,7 @@ import com.android.launcher3.widget.WidgetStackView;
 import com.android.launcher3.widget.WidgetManagerHelper;
 import com.android.launcher3.widget.custom.CustomWidgetManager;
 import com.android.launcher3.widget.model.WidgetsListBaseEntry;
+import com.android.launcher3.widget.picker.WidgetPickerMetrics;
 import com.android.launcher3.widget.picker.WidgetsFullSheet;
 import com.android.launcher3.widget.picker.model.WidgetPickerDataProvider;
 import com.android.launcher3.widget.util.WidgetSizes;
@@ -526,6 +532,12 @@ public class Launcher extends StatefulActivity<LauncherState>
 
         LauncherAppState app = LauncherAppState.getInstance(this);
         mModel = app.getModel();
+        // Both stores are read while binding; opening their databases (and importing legacy
+        // prefs) ahead of the loader keeps that off the main thread
+        MODEL_EXECUTOR.execute(() -> {
+            FolderCoverManager.getInstance(this).preload();
+            PerAppIconOverrideManager.getInstance(this).preload();
+        });
 
         mRotationHelper = new RotationHelper(this);
         InvariantDeviceProfile idp = app.getInvariantDeviceProfile();
@@ -2755,6 +2767,9 @@ public class Launcher extends StatefulActivity<LauncherState>
         if (mAppsView.shouldShowTabs()) {
             mAppsView.getWorkAppList().dump(prefix, writer);
         }
+        SearchMetrics.INSTANCE.dump(prefix, writer);
+        WidgetPickerMetrics.INSTANCE.dump(prefix, writer);
+        writer.println(prefix + "IconCacheUpdateHandler: " + IconCacheUpdateHandler.TOTAL_STATS);
 
         try {
             FileLog.flushAll(writer);
@@ -35,6 +35,9 @@ public class LauncherFiles {
 
     public static final String WIDGET_PREVIEWS_DB = "widgetpreviews.db";
     public static final String APP_ICONS_DB = "app_icons.db";
+    public static final String DRAWER_ICONS_DB = "drawer_icons.db";
+    public static final String ICON_OVERRIDES_DB = "icon_overrides.db";
+    public static final String FOLDER_COVERS_DB = "folder_covers.db";
 
     public static final List<String> GRID_DB_FILES = Collections.unmodifiableList(Arrays.asList(
             LAUNCHER_DB,
@@ -55,7 +58,10 @@ public class LauncherFiles {
             WIDGET_PREVIEWS_DB,
             MANAGED_USER_PREFERENCES_KEY + XML,
             DEVICE_PREFERENCES_KEY + XML,
-            APP_ICONS_DB));
+            APP_ICONS_DB,
+            DRAWER_ICONS_DB,
+            ICON_OVERRIDES_DB,
+            FOLDER_COVERS_DB));
 
     private static List<String> createAllFiles() {
         ArrayList<String> result = new ArrayList<>();
@@ -384,6 +384,10 @@ constructor(@ApplicationContext private val encryptedContext: Context) {
         val ICON_PACK = backedUpItem("pref_icon_pack", "")
         @JvmField
         val ICON_PACK_DRAWER = backedUpItem("pref_icon_pack_drawer", "")
+        // Hash of all per-app icon overrides, so the icon cache state can be computed at startup
+        // without opening the overrides database. Not restored: it must match the local db.
+        @JvmField
+        val PER_APP_ICON_OVERRIDES_HASH = nonRestorableItem("per_app_icon_overrides_hash", 17)
         @JvmField
         val ICON_SIZE_SCALE = backedUpItem("pref_icon_size_scale", "1.0", EncryptionType.ENCRYPTED)
         @JvmField
@@ -410,6 +414,9 @@ constructor(@ApplicationContext private val encryptedContext: Context) {
         @JvmField val WALLPAPER_SCROLL = backedUpItem("pref_wallpaper_scroll", true)
         @JvmField val SHOW_TOP_SHADOW = backedUpItem("pref_show_top_shadow", true)
 
+        // Widget stacks: keep only the active widget and its neighbours live
+        @JvmField val LAZY_WIDGET_STACKS = backedUpItem("pref_lazy_widget_stacks", true)
+
         // Folder appearance preferences (store color resource name or shape key; empty = default)
         // Pref key is "pref_folder_icon_color" for backward compat; stores cover background color
         @JvmField val FOLDER_COVER_BG_COLOR = backedUpItem("pref_folder_icon_color", "")
@@ -430,6 +437,10 @@ constructor(@ApplicationContext private val encryptedContext: Context) {
         @JvmField val SEARCH_WEB_APP = backedUpItem("pref_search_web_app", "default")
         @JvmField val SEARCH_AI_APP = backedUpItem("pref_search_ai_app", "")
         @JvmField val SEARCH_AUTO_KEYBOARD = backedUpItem("pref_search_auto_keyboard", false)
+        // Debug: time budget (ms) for every search provider but apps; -1 = per-category defaults
+        @JvmField
+        val SEARCH_PROVIDER_BUDGET_OVERRIDE =
+            nonRestorableItem("pref_debug_search_provider_budget", -1)
 
         /** AI app packages in auto-detection priority order. */
         @JvmField val AI_APP_PACKAGES = arrayOf(
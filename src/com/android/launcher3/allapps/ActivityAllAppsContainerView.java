@@ -1024,15 +1024,9 @@ public class ActivityAllAppsContainerView<T extends Context & ActivityContext>
         // Pre-cache drawer icons on background thread so the first scroll is jank-free.
         final Context ctx = getContext().getApplicationContext();
         final com.android.launcher3.model.data.AppInfo[] apps = mAllAppsStore.getApps();
-        com.android.launcher3.util.Executors.MODEL_EXECUTOR.execute(() -> {
-            android.content.ComponentName[] components =
-                    new android.content.ComponentName[apps.length];
-            for (int i = 0; i < apps.length; i++) {
-                components[i] = apps[i].getTargetComponent();
-            }
-            com.android.launcher3.icons.DrawerIconResolver.getInstance()
-                    .preCacheIcons(ctx, components);
-        });
+        com.android.launcher3.util.Executors.MODEL_EXECUTOR.execute(() ->
+                com.android.launcher3.icons.DrawerIconResolver.getInstance()
+                        .preCacheIcons(ctx, apps));
     }
 
     @Override
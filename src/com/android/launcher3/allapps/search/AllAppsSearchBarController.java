@@ -72,6 +72,9 @@ public class AllAppsSearchBarController
         mInput.addTextChangedListener(this);
         mInput.setOnEditorActionListener(this);
         mInput.setOnBackKeyListener(this);
+        mInput.addOnFocusChangeListener((v, hasFocus) -> {
+            if (hasFocus) mSearchAlgorithm.onSearchOpened();
+        });
         mSearchAlgorithm = searchAlgorithm;
     }
 
@@ -1374,11 +1374,8 @@ public class Folder extends AbstractFloatingView implements ClipPathView, DragSo
         if (mDestroyed) {
             return;
         }
-        // Clean up per-folder prefs when folder is being deleted
-        FolderCoverManager mgr = FolderCoverManager.getInstance(getContext());
-        mgr.removeCover(mInfo.id);
-        mgr.removeExpandedShape(mInfo.id);
-        mgr.removeIconShape(mInfo.id);
+        // Clean up per-folder customizations when folder is being deleted
+        FolderCoverManager.getInstance(getContext()).removeFolder(mInfo.id);
         mDestroyed = mLauncherDelegate.replaceFolderWithFinalItem(this);
     }
 
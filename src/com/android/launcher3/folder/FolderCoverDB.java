@@ -0,0 +1,163 @@
+/*
+ * Copyright (C) 2025 DefaultLauncher Contributors
+ *
+ * This file is part of DefaultLauncher.
+ *
+ * DefaultLauncher is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * DefaultLauncher is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with DefaultLauncher. If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.android.launcher3.folder;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteException;
+import android.util.Log;
+import android.util.LongSparseArray;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.WorkerThread;
+
+import com.android.launcher3.LauncherFiles;
+import com.android.launcher3.folder.FolderCoverManager.FolderCustomization;
+import com.android.launcher3.util.NoLocaleSQLiteHelper;
+
+import java.util.Map;
+
+/**
+ * Persistent store for {@link FolderCoverManager}: one row per customized folder holding its
+ * cover, expanded shape and icon shape.
+ *
+ * On creation it imports the per-key SharedPreferences file used before, which is cleared
+ * once the database is in place.
+ */
+public class FolderCoverDB extends NoLocaleSQLiteHelper {
+
+    private static final String TAG = "FolderCoverDB";
+    private static final int DB_VERSION = 1;
+
+    public static final String TABLE_NAME = "folder_covers";
+    public static final String COLUMN_FOLDER_ID = "folderId";
+    public static final String COLUMN_COVER = "cover";
+    public static final String COLUMN_EXPANDED_SHAPE = "expandedShape";
+    public static final String COLUMN_ICON_SHAPE = "iconShape";
+
+    private static final String[] READ_COLUMNS = {
+            COLUMN_FOLDER_ID, COLUMN_COVER, COLUMN_EXPANDED_SHAPE, COLUMN_ICON_SHAPE };
+
+    // Key prefixes of the legacy prefs; covers used the bare folder id
+    private static final String LEGACY_SHAPE_PREFIX = "shape_";
+    private static final String LEGACY_ICON_SHAPE_PREFIX = "iconshape_";
+
+    private final SharedPreferences mLegacyPrefs;
+
+    public FolderCoverDB(Context context, SharedPreferences legacyPrefs) {
+        super(context, LauncherFiles.FOLDER_COVERS_DB, DB_VERSION);
+        mLegacyPrefs = legacyPrefs;
+    }
+
+    @Override
+    public void onCreate(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE IF NOT EXISTS " + TABLE_NAME + " ("
+                + COLUMN_FOLDER_ID + " INTEGER PRIMARY KEY, "
+                + COLUMN_COVER + " TEXT, "
+                + COLUMN_EXPANDED_SHAPE + " TEXT, "
+                + COLUMN_ICON_SHAPE + " TEXT);");
+
+        LongSparseArray<FolderCustomization> legacy = readLegacy(mLegacyPrefs.getAll());
+        for (int i = 0; i < legacy.size(); i++) {
+            db.insertWithOnConflict(TABLE_NAME, null,
+                    toValues(legacy.keyAt(i), legacy.valueAt(i)),
+                    SQLiteDatabase.CONFLICT_REPLACE);
+        }
+    }
+
+    @Override
+    public void onOpen(SQLiteDatabase db) {
+        super.onOpen(db);
+        // The customizations were imported by onCreate, now committed
+        if (!mLegacyPrefs.getAll().isEmpty()) {
+            mLegacyPrefs.edit().clear().apply();
+        }
+    }
+
+    @Override
+    public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) { }
+
+    private static LongSparseArray<FolderCustomization> readLegacy(Map<String, ?> prefs) {
+        LongSparseArray<FolderCustomization> out = new LongSparseArray<>();
+        for (Map.Entry<String, ?> e : prefs.entrySet()) {
+            if (!(e.getValue() instanceof String value)) continue;
+            String key = e.getKey();
+            try {
+                if (key.startsWith(LEGACY_ICON_SHAPE_PREFIX)) {
+                    long id = Long.parseLong(key.substring(LEGACY_ICON_SHAPE_PREFIX.length()));
+                    out.put(id, out.get(id, FolderCustomization.EMPTY).withIconShape(value));
+                } else if (key.startsWith(LEGACY_SHAPE_PREFIX)) {
+                    long id = Long.parseLong(key.substring(LEGACY_SHAPE_PREFIX.length()));
+                    out.put(id, out.get(id, FolderCustomization.EMPTY).withExpandedShape(value));
+                } else {
+                    long id = Long.parseLong(key);
+                    out.put(id, out.get(id, FolderCustomization.EMPTY).withCover(
+                            FolderCoverManager.CoverIcon.deserialize(value)));
+                }
+            } catch (NumberFormatException ex) {
+                Log.w(TAG, "Skipping unknown folder cover key " + key);
+            }
+        }
+        return out;
+    }
+
+    /** Reads every customized folder in one query. */
+    @WorkerThread
+    public void loadAll(@NonNull LongSparseArray<FolderCustomization> out) {
+        try (Cursor c = getReadableDatabase().query(TABLE_NAME, READ_COLUMNS,
+                null, null, null, null, null)) {
+            while (c.moveToNext()) {
+                out.put(c.getLong(0), new FolderCustomization(
+                        FolderCoverManager.CoverIcon.deserialize(c.getString(1)),
+                        c.getString(2), c.getString(3)));
+            }
+        } catch (SQLiteException e) {
+            Log.e(TAG, "Failed to read folder covers", e);
+        }
+    }
+
+    /** Writes the row of one folder, or deletes it when nothing is customized any more. */
+    @WorkerThread
+    public void put(long folderId, @NonNull FolderCustomization customization) {
+        try {
+            if (customization.isEmpty()) {
+                getWritableDatabase().delete(TABLE_NAME, COLUMN_FOLDER_ID + " = ?",
+                        new String[] { Long.toString(folderId) });
+            } else {
+                getWritableDatabase().insertWithOnConflict(TABLE_NAME, null,
+                        toValues(folderId, customization), SQLiteDatabase.CONFLICT_REPLACE);
+            }
+        } catch (SQLiteException e) {
+            Log.e(TAG, "Failed to write folder cover", e);
+        }
+    }
+
+    private static ContentValues toValues(long folderId, FolderCustomization customization) {
+        ContentValues cv = new ContentValues();
+        cv.put(COLUMN_FOLDER_ID, folderId);
+        cv.put(COLUMN_COVER,
+                customization.cover != null ? customization.cover.serialize() : null);
+        cv.put(COLUMN_EXPANDED_SHAPE, customization.expandedShape);
+        cv.put(COLUMN_ICON_SHAPE, customization.iconShape);
+        return cv;
+    }
+}
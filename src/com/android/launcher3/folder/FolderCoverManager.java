@@ -19,7 +19,6 @@
 package com.android.launcher3.folder;
 
 import android.content.Context;
-import android.content.SharedPreferences;
 import android.graphics.Bitmap;
 import android.graphics.Canvas;
 import android.graphics.Paint;
@@ -28,9 +27,11 @@ import android.graphics.drawable.BitmapDrawable;
 import android.graphics.drawable.Drawable;
 import android.text.TextPaint;
 import android.util.Log;
+import android.util.LongSparseArray;
 import android.util.TypedValue;
 
 import androidx.annotation.Nullable;
+import androidx.annotation.WorkerThread;
 
 import com.android.launcher3.BuildConfig;
 import com.android.launcher3.R;
@@ -38,11 +39,17 @@ import com.android.launcher3.icons.pack.IconPack;
 import com.android.launcher3.icons.pack.IconPackManager;
 import com.android.launcher3.dagger.LauncherComponentProvider;
 import com.android.launcher3.settings.FolderSettingsHelper;
+import com.android.launcher3.util.Executors;
+
+import java.util.function.UnaryOperator;
 
 /**
- * Manages per-folder custom cover icons stored in SharedPreferences.
+ * Manages per-folder custom cover icons and shapes, stored in {@link FolderCoverDB}.
  * Cover icon is serialized as "packPackage|drawableName".
  *
+ * <p>All customizations are read in one query on first use and kept in memory; each change
+ * rewrites only the row of its folder, in the background.
+ *
  * <p>Future improvement: shape persistence (getExpandedShape, getIconShape, etc.) and
  * emoji rendering (renderEmoji, getEmojiTypeface) should be extracted into separate
  * classes to follow single-responsibility. Not done now to avoid a large cross-file refactor.
@@ -58,8 +65,10 @@ public class FolderCoverManager {
 
     private static volatile FolderCoverManager sInstance;
 
-    private final SharedPreferences mPrefs;
+    private final FolderCoverDB mDb;
     private final Context mContext;
+    // Loaded lazily, guarded by this
+    @Nullable private LongSparseArray<FolderCustomization> mCustomizations;
     @Nullable private Typeface mEmojiTypeface;
 
     /**
@@ -87,9 +96,42 @@ public class FolderCoverManager {
         }
     }
 
+    /** Everything customized on one folder. Fields are null when not customized. */
+    public static final class FolderCustomization {
+        static final FolderCustomization EMPTY = new FolderCustomization(null, null, null);
+
+        @Nullable public final CoverIcon cover;
+        @Nullable public final String expandedShape;
+        @Nullable public final String iconShape;
+
+        FolderCustomization(@Nullable CoverIcon cover, @Nullable String expandedShape,
+                @Nullable String iconShape) {
+            this.cover = cover;
+            this.expandedShape = expandedShape;
+            this.iconShape = iconShape;
+        }
+
+        FolderCustomization withCover(@Nullable CoverIcon cover) {
+            return new FolderCustomization(cover, expandedShape, iconShape);
+        }
+
+        FolderCustomization withExpandedShape(@Nullable String expandedShape) {
+            return new FolderCustomization(cover, expandedShape, iconShape);
+        }
+
+        FolderCustomization withIconShape(@Nullable String iconShape) {
+            return new FolderCustomization(cover, expandedShape, iconShape);
+        }
+
+        boolean isEmpty() {
+            return cover == null && expandedShape == null && iconShape == null;
+        }
+    }
+
     private FolderCoverManager(Context context) {
         mContext = context.getApplicationContext();
-        mPrefs = mContext.getSharedPreferences(PREFS_FILE, Context.MODE_PRIVATE);
+        mDb = new FolderCoverDB(mContext,
+                mContext.getSharedPreferences(PREFS_FILE, Context.MODE_PRIVATE));
     }
 
     public static FolderCoverManager getInstance(Context context) {
@@ -109,8 +151,7 @@ public class FolderCoverManager {
      */
     @Nullable
     public CoverIcon getCover(long folderId) {
-        String value = mPrefs.getString(String.valueOf(folderId), null);
-        return CoverIcon.deserialize(value);
+        return get(folderId).cover;
     }
 
     /**
@@ -119,7 +160,7 @@ public class FolderCoverManager {
     public void setCover(long folderId, CoverIcon cover) {
         if (DEBUG) Log.d(TAG, "setCover: folderId=" + folderId
                 + " pack=" + cover.packPackage + " drawable=" + cover.drawableName);
-        mPrefs.edit().putString(String.valueOf(folderId), cover.serialize()).apply();
+        update(folderId, c -> c.withCover(cover));
     }
 
     /**
@@ -127,7 +168,7 @@ public class FolderCoverManager {
      */
     public void removeCover(long folderId) {
         if (DEBUG) Log.d(TAG, "removeCover: folderId=" + folderId);
-        mPrefs.edit().remove(String.valueOf(folderId)).apply();
+        update(folderId, c -> c.withCover(null));
     }
 
     /**
@@ -136,21 +177,21 @@ public class FolderCoverManager {
      */
     @Nullable
     public String getExpandedShape(long folderId) {
-        return mPrefs.getString("shape_" + folderId, null);
+        return get(folderId).expandedShape;
     }
 
     /**
      * Sets the per-folder expanded shape key.
      */
     public void setExpandedShape(long folderId, String shapeKey) {
-        mPrefs.edit().putString("shape_" + folderId, shapeKey).apply();
+        update(folderId, c -> c.withExpandedShape(shapeKey));
     }
 
     /**
      * Removes the per-folder expanded shape.
      */
     public void removeExpandedShape(long folderId) {
-        mPrefs.edit().remove("shape_" + folderId).apply();
+        update(folderId, c -> c.withExpandedShape(null));
     }
 
     /**
@@ -159,21 +200,65 @@ public class FolderCoverManager {
      */
     @Nullable
     public String getIconShape(long folderId) {
-        return mPrefs.getString("iconshape_" + folderId, null);
+        return get(folderId).iconShape;
     }
 
     /**
      * Sets the per-folder icon shape key.
      */
     public void setIconShape(long folderId, String shapeKey) {
-        mPrefs.edit().putString("iconshape_" + folderId, shapeKey).apply();
+        update(folderId, c -> c.withIconShape(shapeKey));
     }
 
     /**
      * Removes the per-folder icon shape.
      */
     public void removeIconShape(long folderId) {
-        mPrefs.edit().remove("iconshape_" + folderId).apply();
+        update(folderId, c -> c.withIconShape(null));
+    }
+
+    /**
+     * Removes the cover and both shapes of a folder that no longer exists.
+     */
+    public void removeFolder(long folderId) {
+        if (DEBUG) Log.d(TAG, "removeFolder: folderId=" + folderId);
+        update(folderId, c -> FolderCustomization.EMPTY);
+    }
+
+    /**
+     * Opens the database and loads every customization, so the first folder bind does not.
+     */
+    @WorkerThread
+    public synchronized void preload() {
+        ensureLoaded();
+    }
+
+    private synchronized FolderCustomization get(long folderId) {
+        return ensureLoaded().get(folderId, FolderCustomization.EMPTY);
+    }
+
+    /** Applies {@code change} to the folder's current customization under a single lock. */
+    private synchronized void update(long folderId,
+            UnaryOperator<FolderCustomization> change) {
+        LongSparseArray<FolderCustomization> all = ensureLoaded();
+        FolderCustomization customization =
+                change.apply(all.get(folderId, FolderCustomization.EMPTY));
+        if (customization.isEmpty()) {
+            if (all.get(folderId) == null) return;
+            all.remove(folderId);
+        } else {
+            all.put(folderId, customization);
+        }
+        // Rows are written in call order, so the last change of a folder always wins
+        Executors.ORDERED_BG_EXECUTOR.execute(() -> mDb.put(folderId, customization));
+    }
+
+    private LongSparseArray<FolderCustomization> ensureLoaded() {
+        if (mCustomizations == null) {
+            mCustomizations = new LongSparseArray<>();
+            mDb.loadAll(mCustomizations);
+        }
+        return mCustomizations;
     }
 
     private static final String EMOJI_PREFIX = "emoji";
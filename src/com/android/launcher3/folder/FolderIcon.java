@@ -32,6 +32,8 @@ import android.content.Context;
 import android.graphics.Canvas;
 import android.graphics.Paint;
 import android.graphics.Rect;
+import android.graphics.RecordingCanvas;
+import android.graphics.RenderNode;
 import android.graphics.drawable.Drawable;
 import android.os.Looper;
 import android.text.TextUtils;
@@ -186,6 +188,11 @@ public class FolderIcon extends FrameLayout implements FloatingIconViewCompanion
     // Cleared on content change, cover change, or expanded state change.
     private final SparseArray<Drawable> mExpandedIconCache = new SparseArray<>();
 
+    // Recorded expanded grid (background shape, icons and open indicator), replayed on every
+    // draw until invalidateExpandedRender(). The dot is drawn live on top since it animates.
+    private final RenderNode mExpandedNode = new RenderNode("ExpandedFolderIcon");
+    private boolean mExpandedNodeValid;
+
     // Cached values to avoid per-frame pref reads and object allocation
     private int mCachedCoverBgColor;
     private int mCachedFolderBgColor;
@@ -276,6 +283,8 @@ public class FolderIcon extends FrameLayout implements FloatingIconViewCompanion
             }
             mFolderPrefSubscription = null;
         }
+        mExpandedNode.discardDisplayList();
+        mExpandedNodeValid = false;
     }
 
     /**
@@ -288,6 +297,7 @@ public class FolderIcon extends FrameLayout implements FloatingIconViewCompanion
         mCachedFolderBgColor = FolderSettingsHelper.getEffectiveFolderBgColor(ctx);
         mCachedOnSurfaceVariantColor = ctx.getColor(R.color.materialColorOnSurfaceVariant);
         mCachedExpandedCornerPx = getResources().getDimension(R.dimen.m3_shape_large);
+        mExpandedNodeValid = false;
     }
 
     public static <T extends Context & ActivityContext> FolderIcon inflateFolderAndIcon(int resId,
@@ -445,7 +455,7 @@ public class FolderIcon extends FrameLayout implements FloatingIconViewCompanion
 
     /** Called after expand/collapse to refresh the rendering mode. */
     public void updateExpandedState() {
-        mExpandedIconCache.clear();
+        invalidateExpandedRender();
         mCachedGridParams = null;
         boolean flagSet = mInfo != null && mInfo.hasOption(FolderInfo.FLAG_EXPANDED);
         // Only consider expanded if span is actually > 1x1 and square
@@ -473,13 +483,16 @@ public class FolderIcon extends FrameLayout implements FloatingIconViewCompanion
     }
 
     /**
-     * Proactively loads high-res icons for all folder items using the bulk IconCache API.
-     * Called when entering expanded state, since the model loader only pre-loads preview items.
+     * Loads high-res icons for the folder items shown in the expanded grid using the bulk
+     * IconCache API. The model loader already does this for folders that are expanded at load
+     * time, so this only has work to do after a folder is expanded or grows.
      */
     private void requestHighResIcons() {
         IconCache iconCache = LauncherAppState.getInstance(getContext()).getIconCache();
         List<IconRequestInfo<WorkspaceItemInfo>> requests = new ArrayList<>();
-        for (ItemInfo item : mInfo.getContents()) {
+        List<ItemInfo> contents = mInfo.getContents();
+        int visibleCount = Math.min(mInfo.getExpandedVisibleItemCount(), contents.size());
+        for (ItemInfo item : contents.subList(0, visibleCount)) {
             if (item instanceof WorkspaceItemInfo wii && wii.bitmap.isNullOrLowRes()) {
                 requests.add(new IconRequestInfo<>(wii, null, false));
             }
@@ -487,7 +500,10 @@ public class FolderIcon extends FrameLayout implements FloatingIconViewCompanion
         if (!requests.isEmpty()) {
             Executors.MODEL_EXECUTOR.post(() -> {
                 iconCache.getTitlesAndIconsInBulk(requests);
-                post(() -> invalidate());
+                post(() -> {
+                    invalidateExpandedRender();
+                    invalidate();
+                });
             });
         }
     }
@@ -508,7 +524,7 @@ public class FolderIcon extends FrameLayout implements FloatingIconViewCompanion
 
     /** Reloads the cover drawable from the cover manager. */
     public void updateCoverDrawable() {
-        mExpandedIconCache.clear();
+        invalidateExpandedRender();
         if (mInfo != null) {
             mCoverDrawable = FolderCoverManager.getInstance(
                     getContext().getApplicationContext()).loadCoverDrawable(mInfo.id);
@@ -1064,11 +1080,42 @@ public class FolderIcon extends FrameLayout implements FloatingIconViewCompanion
     /**
      * Draws the expanded NxN folder view: app icons in a grid + open indicator in last cell.
      * Only called when mIsExpanded is true (square span >= 2x2).
+     *
+     * On hardware canvases the grid is recorded once into {@link #mExpandedNode} and replayed
+     * until {@link #invalidateExpandedRender()}, so scrolling and page transitions don't redraw
+     * every icon.
      */
     private void drawExpandedFolder(Canvas canvas) {
         ExpandedGridParams g = computeExpandedGridParams();
         if (g == null) return;
 
+        if (canvas.isHardwareAccelerated()) {
+            if (!mExpandedNodeValid) {
+                int w = getWidth();
+                int h = getHeight();
+                mExpandedNode.setPosition(0, 0, w, h);
+                RecordingCanvas rc = mExpandedNode.beginRecording(w, h);
+                try {
+                    // Keep re-recording while icons are still loading at high resolution
+                    mExpandedNodeValid = drawExpandedGrid(rc, g);
+                } finally {
+                    mExpandedNode.endRecording();
+                }
+            }
+            canvas.drawRenderNode(mExpandedNode);
+        } else {
+            // Software canvases (drag outlines, previews) can't replay a RenderNode
+            drawExpandedGrid(canvas, g);
+        }
+
+        drawDot(canvas);
+    }
+
+    /**
+     * Draws the expanded grid without the dot.
+     * @return false if some icons were skipped because they are not loaded at full resolution.
+     */
+    private boolean drawExpandedGrid(Canvas canvas, ExpandedGridParams g) {
         if (DEBUG && mDebugLogPending) {
             Log.d(TAG, "drawExpandedFolder: w=" + getWidth() + " h=" + getHeight()
                     + " span=" + g.spanX + "x" + g.spanY
@@ -1102,6 +1149,7 @@ public class FolderIcon extends FrameLayout implements FloatingIconViewCompanion
 
         // Draw app icons in row-major order, up to maxIcons.
         // Icons are cached in mExpandedIconCache to avoid per-frame allocation.
+        boolean complete = true;
         int iconIdx = 0;
         for (int row = 0; row < g.spanY && iconIdx < maxIcons; row++) {
             for (int col = 0; col < g.spanX && iconIdx < maxIcons; col++) {
@@ -1123,6 +1171,8 @@ public class FolderIcon extends FrameLayout implements FloatingIconViewCompanion
                         icon.setBounds(iconLeft, iconTop,
                                 iconLeft + g.iconSize, iconTop + g.iconSize);
                         icon.draw(canvas);
+                    } else if (item instanceof WorkspaceItemInfo) {
+                        complete = false;
                     }
                 }
                 iconIdx++;
@@ -1135,8 +1185,16 @@ public class FolderIcon extends FrameLayout implements FloatingIconViewCompanion
         int indCellLeft = g.startX + lastCol * (g.cellW + g.borderSpace);
         int indCellTop = g.startY + lastRow * (g.cellH + g.borderSpace);
         drawOpenIndicator(canvas, indCellLeft, indCellTop, g.cellW, g.cellH);
+        return complete;
+    }
 
-        drawDot(canvas);
+    /**
+     * Drops the cached expanded icon drawables and the recorded grid. Call whenever the contents,
+     * their icons, the cover, the colors or the size of the folder change.
+     */
+    private void invalidateExpandedRender() {
+        mExpandedIconCache.clear();
+        mExpandedNodeValid = false;
     }
 
     /**
@@ -1237,6 +1295,7 @@ public class FolderIcon extends FrameLayout implements FloatingIconViewCompanion
         // Invalidate cached shape and grid params since they depend on view dimensions
         mCachedExpandedShape = null;
         mCachedGridParams = null;
+        mExpandedNodeValid = false;
         if (DEBUG && (w != oldw || h != oldh)) {
             Log.d(TAG, "onSizeChanged: id=" + (mInfo != null ? mInfo.id : -1)
                     + " " + oldw + "x" + oldh + " -> " + w + "x" + h
@@ -1296,10 +1355,16 @@ public class FolderIcon extends FrameLayout implements FloatingIconViewCompanion
      */
     public void updatePreviewItems(Predicate<ItemInfo> itemCheck) {
         mPreviewItemManager.updatePreviewItems(itemCheck);
+        if (mIsExpanded && mInfo != null
+                && mInfo.getContents().stream().anyMatch(itemCheck)) {
+            // Icons of the grid changed; the cached drawables hold the old bitmaps
+            invalidateExpandedRender();
+            invalidate();
+        }
     }
 
     public void onItemsChanged(boolean animate) {
-        mExpandedIconCache.clear();
+        invalidateExpandedRender();
         updatePreviewItems(false);
         updateDotInfo();
         setContentDescription(getAccessiblityTitle(mInfo.title));
@@ -0,0 +1,153 @@
+/*
+ * Copyright (C) 2025 DefaultLauncher Contributors
+ *
+ * This file is part of DefaultLauncher.
+ *
+ * DefaultLauncher is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * DefaultLauncher is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with DefaultLauncher. If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.android.launcher3.icons;
+
+import static com.android.launcher3.util.Executors.ICON_OVERRIDE_EXECUTOR;
+import static com.android.launcher3.util.Executors.MAIN_EXECUTOR;
+
+import android.util.Log;
+
+import androidx.annotation.Nullable;
+import androidx.annotation.UiThread;
+
+import com.android.launcher3.util.ComponentKey;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.function.IntFunction;
+
+/**
+ * Renders icon overrides on {@link com.android.launcher3.util.Executors#ICON_OVERRIDE_EXECUTOR}
+ * and delivers them on the main thread.
+ *
+ * Requests are coalesced per component and override: while a render for them is in flight,
+ * further requests only add a callback, so fast scrolling over the same rows never queues
+ * duplicate pack lookups or bitmap renders. A request made after the override was edited
+ * starts its own render.
+ *
+ * Callers clear their caches through {@link #invalidate}, which starts a new generation.
+ * Renders started in an older generation are neither cached, through {@link #runIfCurrent},
+ * nor delivered.
+ */
+public class AsyncIconOverrideLoader {
+
+    private static final String TAG = "AsyncIconOverrideLoader";
+
+    // Only accessed on the main thread.
+    private final Map<PendingKey, List<Consumer<BitmapInfo>>> mPending = new HashMap<>();
+
+    // Guarded by this
+    private int mGeneration;
+
+    /**
+     * Renders the icon for {@code key} and {@code override} in the background unless that
+     * render is already in flight, then calls {@code callback} on the main thread with the
+     * result (null if nothing could be rendered). {@code renderer} receives the generation the
+     * request was made in, for {@link #runIfCurrent}.
+     */
+    @UiThread
+    public void load(ComponentKey key, @Nullable Object override,
+            IntFunction<BitmapInfo> renderer, Consumer<BitmapInfo> callback) {
+        int generation = getGeneration();
+        PendingKey pendingKey = new PendingKey(key, override, generation);
+        List<Consumer<BitmapInfo>> waiters = mPending.get(pendingKey);
+        if (waiters != null) {
+            waiters.add(callback);
+            return;
+        }
+        waiters = new ArrayList<>();
+        waiters.add(callback);
+        mPending.put(pendingKey, waiters);
+
+        ICON_OVERRIDE_EXECUTOR.execute(() -> {
+            BitmapInfo result = render(key, renderer, generation);
+            MAIN_EXECUTOR.execute(() -> {
+                List<Consumer<BitmapInfo>> done = mPending.remove(pendingKey);
+                if (done == null || generation != getGeneration()) return;
+                for (Consumer<BitmapInfo> c : done) {
+                    c.accept(result);
+                }
+            });
+        });
+    }
+
+    /** Returns the current generation, to pass to {@link #runIfCurrent} after a render. */
+    public synchronized int getGeneration() {
+        return mGeneration;
+    }
+
+    /**
+     * Starts a new generation and runs {@code clearCaches}. Both happen under the lock that
+     * {@link #runIfCurrent} takes, so no render of the old generation is cached afterwards.
+     */
+    public synchronized void invalidate(Runnable clearCaches) {
+        mGeneration++;
+        clearCaches.run();
+    }
+
+    /** Runs {@code cacheWrite} only if no {@link #invalidate} happened since {@code generation}. */
+    public synchronized void runIfCurrent(int generation, Runnable cacheWrite) {
+        if (generation == mGeneration) {
+            cacheWrite.run();
+        }
+    }
+
+    @Nullable
+    private static BitmapInfo render(ComponentKey key, IntFunction<BitmapInfo> renderer,
+            int generation) {
+        try {
+            return renderer.apply(generation);
+        } catch (RuntimeException e) {
+            // A broken pack drawable must not take down the loader thread; the caller keeps
+            // the placeholder it already bound.
+            Log.w(TAG, "Failed to render icon override for " + key, e);
+            return null;
+        }
+    }
+
+    /** A component, the override it is rendered with (by identity) and the generation. */
+    private static class PendingKey {
+        final ComponentKey key;
+        @Nullable final Object override;
+        final int generation;
+
+        PendingKey(ComponentKey key, @Nullable Object override, int generation) {
+            this.key = key;
+            this.override = override;
+            this.generation = generation;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof PendingKey)) return false;
+            PendingKey other = (PendingKey) o;
+            // Overrides are immutable and replaced on every edit, so identity marks a new one
+            return key.equals(other.key) && override == other.override
+                    && generation == other.generation;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * (31 * key.hashCode() + System.identityHashCode(override)) + generation;
+        }
+    }
+}
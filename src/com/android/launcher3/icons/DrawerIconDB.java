@@ -0,0 +1,209 @@
+/*
+ * Copyright (C) 2025 DefaultLauncher Contributors
+ *
+ * This file is part of DefaultLauncher.
+ *
+ * DefaultLauncher is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * DefaultLauncher is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with DefaultLauncher. If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.android.launcher3.icons;
+
+import static android.graphics.Bitmap.Config.HARDWARE;
+
+import android.content.ComponentName;
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteException;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.os.UserHandle;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.WorkerThread;
+
+import com.android.launcher3.LauncherFiles;
+import com.android.launcher3.util.ComponentKey;
+import com.android.launcher3.util.SQLiteCacheHelper;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.function.LongFunction;
+
+/**
+ * Persistent store for drawer-specific icons rendered by {@link DrawerIconResolver}.
+ *
+ * Rows are keyed by component, user serial, drawer pack id, shape key and size scale, so
+ * switching between drawer configurations does not throw away icons rendered for another one.
+ * The size scale is stored as text so float round-tripping never misses a row.
+ * The freshness column captures everything else that affects the rendered bitmap (pack
+ * version, remaining drawer render flags); rows with a stale freshness id are ignored on read
+ * and overwritten on the next bulk write.
+ */
+public class DrawerIconDB extends SQLiteCacheHelper {
+
+    private static final String TAG = "DrawerIconDB";
+
+    // Bump to drop all persisted drawer icons after a rendering change.
+    private static final int RELEASE_VERSION = 1;
+
+    public static final String TABLE_NAME = "drawer_icons";
+    public static final String COLUMN_COMPONENT = "componentName";
+    public static final String COLUMN_USER = "profileId";
+    public static final String COLUMN_PACK = "pack";
+    public static final String COLUMN_SHAPE = "shape";
+    public static final String COLUMN_SIZE_SCALE = "size_scale";
+    public static final String COLUMN_FRESHNESS_ID = "freshnessId";
+    public static final String COLUMN_ICON = "icon";
+    public static final String COLUMN_ICON_COLOR = "icon_color";
+    public static final String COLUMN_FLAGS = "flags";
+
+    private static final String[] READ_COLUMNS = {
+            COLUMN_COMPONENT, COLUMN_USER, COLUMN_ICON, COLUMN_ICON_COLOR, COLUMN_FLAGS };
+
+    public DrawerIconDB(Context context, int iconPixelSize) {
+        super(context, LauncherFiles.DRAWER_ICONS_DB,
+                (RELEASE_VERSION << 16) + iconPixelSize, TABLE_NAME);
+    }
+
+    @Override
+    protected void onCreateTable(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE IF NOT EXISTS " + TABLE_NAME + " ("
+                + COLUMN_COMPONENT + " TEXT NOT NULL, "
+                + COLUMN_USER + " INTEGER NOT NULL, "
+                + COLUMN_PACK + " TEXT NOT NULL, "
+                + COLUMN_SHAPE + " TEXT NOT NULL, "
+                + COLUMN_SIZE_SCALE + " TEXT NOT NULL, "
+                + COLUMN_FRESHNESS_ID + " TEXT, "
+                + COLUMN_ICON + " BLOB, "
+                + COLUMN_ICON_COLOR + " INTEGER NOT NULL DEFAULT 0, "
+                + COLUMN_FLAGS + " INTEGER NOT NULL DEFAULT 0, "
+                + "PRIMARY KEY (" + COLUMN_COMPONENT + ", " + COLUMN_USER + ", "
+                + COLUMN_PACK + ", " + COLUMN_SHAPE + ", " + COLUMN_SIZE_SCALE + "));");
+    }
+
+    /**
+     * Reads every icon persisted for the given configuration into {@code out} in a single
+     * cursor pass. Components already present in {@code out} are skipped.
+     *
+     * @param userForSerial maps a persisted user serial back to its {@link UserHandle}
+     * @return the number of icons decoded
+     */
+    @WorkerThread
+    public int loadAll(@NonNull Config config,
+            @NonNull LongFunction<UserHandle> userForSerial,
+            @NonNull Map<ComponentKey, BitmapInfo> out) {
+        int loaded = 0;
+        try (Cursor c = query(READ_COLUMNS,
+                COLUMN_PACK + " = ? AND " + COLUMN_SHAPE + " = ? AND "
+                        + COLUMN_SIZE_SCALE + " = ? AND " + COLUMN_FRESHNESS_ID + " = ?",
+                new String[] { config.packId, config.shapeKey,
+                        Float.toString(config.sizeScale), config.freshnessId })) {
+            while (c.moveToNext()) {
+                ComponentName cn = ComponentName.unflattenFromString(c.getString(0));
+                UserHandle user = userForSerial.apply(c.getLong(1));
+                byte[] data = c.getBlob(2);
+                if (cn == null || user == null || data == null) continue;
+
+                ComponentKey key = new ComponentKey(cn, user);
+                if (out.containsKey(key)) continue;
+
+                BitmapFactory.Options opts = new BitmapFactory.Options();
+                opts.inPreferredConfig = HARDWARE;
+                Bitmap bitmap = BitmapFactory.decodeByteArray(data, 0, data.length, opts);
+                if (bitmap == null) continue;
+
+                BitmapInfo info = BitmapInfo.of(bitmap, c.getInt(3));
+                info.flags = c.getInt(4);
+                out.put(key, info);
+                loaded++;
+            }
+        } catch (SQLiteException e) {
+            Log.d(TAG, "Error reading drawer icon cache", e);
+        }
+        return loaded;
+    }
+
+    /** Writes all the rendered icons for the given configuration in one transaction. */
+    @WorkerThread
+    public void saveAll(@NonNull Config config, @NonNull List<Row> rows) {
+        List<ContentValues> values = new ArrayList<>(rows.size());
+        for (Row row : rows) {
+            if (!row.info.canPersist()) continue;
+            byte[] data = GraphicsUtils.flattenBitmap(row.info.icon);
+            if (data == null) continue;
+
+            ContentValues cv = new ContentValues();
+            cv.put(COLUMN_COMPONENT, row.component.flattenToString());
+            cv.put(COLUMN_USER, row.userSerial);
+            cv.put(COLUMN_PACK, config.packId);
+            cv.put(COLUMN_SHAPE, config.shapeKey);
+            cv.put(COLUMN_SIZE_SCALE, Float.toString(config.sizeScale));
+            cv.put(COLUMN_FRESHNESS_ID, config.freshnessId);
+            cv.put(COLUMN_ICON, data);
+            cv.put(COLUMN_ICON_COLOR, row.info.color);
+            cv.put(COLUMN_FLAGS, row.info.flags);
+            values.add(cv);
+        }
+        insertOrReplaceAll(values);
+    }
+
+    /** Removes every persisted drawer icon of the given package for the given user. */
+    @WorkerThread
+    public void removePackage(@NonNull String packageName, long userSerial) {
+        // Exact prefix compare: LIKE would treat '_' in package names as a wildcard
+        String prefix = packageName + "/";
+        delete("substr(" + COLUMN_COMPONENT + ", 1, " + prefix.length() + ") = ? AND "
+                + COLUMN_USER + " = ?", new String[] { prefix, Long.toString(userSerial) });
+    }
+
+    /** Removes every persisted drawer icon rendered from the given icon pack. */
+    @WorkerThread
+    public void removePack(@NonNull String packId) {
+        delete(COLUMN_PACK + " = ?", new String[] { packId });
+    }
+
+    /**
+     * Identity of a drawer icon configuration. The key columns (pack, shape, size) select the
+     * rows; the freshness id invalidates them when anything else about the rendering changes.
+     */
+    public static class Config {
+        public final String packId;
+        public final String shapeKey;
+        public final float sizeScale;
+        public final String freshnessId;
+
+        public Config(String packId, String shapeKey, float sizeScale, String freshnessId) {
+            this.packId = packId;
+            this.shapeKey = shapeKey;
+            this.sizeScale = sizeScale;
+            this.freshnessId = freshnessId;
+        }
+    }
+
+    /** A single rendered drawer icon waiting to be written. */
+    public static class Row {
+        final ComponentName component;
+        final long userSerial;
+        final BitmapInfo info;
+
+        public Row(ComponentName component, long userSerial, BitmapInfo info) {
+            this.component = component;
+            this.userSerial = userSerial;
+            this.info = info;
+        }
+    }
+}
@@ -18,6 +18,8 @@
  */
 package com.android.launcher3.icons;
 
+import static com.android.launcher3.util.Executors.MODEL_EXECUTOR;
+
 import android.content.ComponentName;
 import android.content.Context;
 import android.content.pm.PackageManager;
@@ -28,10 +30,13 @@ import android.graphics.PorterDuff;
 import android.graphics.Rect;
 import android.graphics.drawable.AdaptiveIconDrawable;
 import android.graphics.drawable.Drawable;
+import android.os.UserHandle;
 import android.util.LruCache;
 
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
+import androidx.annotation.UiThread;
+import androidx.annotation.WorkerThread;
 
 import com.android.launcher3.Flags;
 import com.android.launcher3.InvariantDeviceProfile;
@@ -44,14 +49,26 @@ import com.android.launcher3.icons.pack.IconPack;
 import com.android.launcher3.icons.pack.IconPackManager;
 import com.android.launcher3.icons.pack.PerAppIconOverrideManager;
 import com.android.launcher3.icons.pack.PerAppIconOverrideManager.IconOverride;
+import com.android.launcher3.model.data.AppInfo;
 import com.android.launcher3.model.data.ItemInfoWithIcon;
+import com.android.launcher3.pm.UserCache;
 import com.android.launcher3.shapes.IconShapeModel;
 import com.android.launcher3.shapes.ShapesProvider;
+import com.android.launcher3.util.ComponentKey;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.Consumer;
 
 /**
  * Resolves app drawer icons on-demand when the drawer has different icon settings
  * (pack, shape, or size) than the home screen. Uses an in-memory LRU cache to avoid
- * re-resolving icons on every scroll.
+ * re-resolving icons on every scroll, backed by {@link DrawerIconDB} so rendered icons
+ * survive process restarts and are read back in bulk when the drawer binds.
  *
  * The main icon cache always stores HOME icon pack/shape/size icons. This resolver
  * provides drawer-specific overrides that are checked at display time in BubbleTextView.
@@ -59,12 +76,22 @@ import com.android.launcher3.shapes.ShapesProvider;
 public class DrawerIconResolver {
 
     private static final int CACHE_SIZE = 500;
+    private static final int OVERRIDE_CACHE_SIZE = 100;
     private static final int FALLBACK_ICON_SIZE = 192;
 
     private static volatile DrawerIconResolver sInstance;
 
-    private final LruCache<ComponentName, BitmapInfo> mCache = new LruCache<>(CACHE_SIZE);
+    private final LruCache<ComponentKey, BitmapInfo> mCache = new LruCache<>(CACHE_SIZE);
+    private final LruCache<ComponentKey, OverrideEntry> mOverrideCache =
+            new LruCache<>(OVERRIDE_CACHE_SIZE);
+    private final AsyncIconOverrideLoader mLoader = new AsyncIconOverrideLoader();
     private volatile Boolean mHasDistinctSettings;
+    // Rendering factories for the current drawer configuration; dropped by invalidate()
+    private volatile FactoryPool mFactoryPool;
+
+    // Opened lazily on MODEL_EXECUTOR; only touched from background work.
+    private DrawerIconDB mIconDb;
+    private int mIconDbSize;
 
     private DrawerIconResolver() { }
 
@@ -79,7 +106,7 @@ public class DrawerIconResolver {
         if (icon == null && pack.hasFallbackMask()) {
             try {
                 Drawable original = pm.getActivityIcon(cn);
-                icon = pack.applyFallbackMask(original, FALLBACK_ICON_SIZE);
+                icon = pack.applyFallbackMask(original, FALLBACK_ICON_SIZE, cn);
             } catch (PackageManager.NameNotFoundException ignored) { }
         }
         return IconPackDrawable.wrap(icon);
@@ -129,7 +156,7 @@ public class DrawerIconResolver {
 
     /**
      * Get a drawer-specific icon for the given app info, or null if no override is needed.
-     * Called from BubbleTextView when displaying in DISPLAY_ALL_APPS mode.
+     * Renders synchronously on a cache miss; prefer {@link #getDrawerIconAsync} on the UI thread.
      *
      * @param info    the app info (provides component name and disabled state)
      * @param context the context
@@ -143,23 +170,76 @@ public class DrawerIconResolver {
 
         // Check per-app drawer override first (even when match-home is on,
         // per-app drawer overrides still apply)
-        PerAppIconOverrideManager overrideMgr = PerAppIconOverrideManager.getInstance(context);
-        IconOverride perAppOverride = overrideMgr.getDrawerOverride(cn);
+        IconOverride perAppOverride =
+                PerAppIconOverrideManager.getInstance(context).getDrawerOverride(cn);
+        if (perAppOverride == null && !hasDistinctDrawerSettings(context)) return null;
+
+        ComponentKey cacheKey = new ComponentKey(cn, info.user);
+        BitmapInfo bitmapInfo = getCachedIcon(cacheKey, perAppOverride);
+        if (bitmapInfo == null) {
+            bitmapInfo = renderDrawerIcon(
+                    cacheKey, perAppOverride, context, mLoader.getGeneration());
+        }
+        return bitmapInfo != null ? newDrawable(bitmapInfo, info, context, flags) : null;
+    }
+
+    /**
+     * Non-blocking variant of {@link #getDrawerIcon}. Returns the drawer icon when it is
+     * already cached. On a miss it returns null, so the caller binds the home icon as a
+     * placeholder, and renders the drawer icon in the background; {@code onLoaded} is then
+     * called on the main thread with the result. Concurrent misses for the same component
+     * share one render.
+     */
+    @UiThread
+    @Nullable
+    public FastBitmapDrawable getDrawerIconAsync(ItemInfoWithIcon info, Context context,
+            int flags, Consumer<FastBitmapDrawable> onLoaded) {
+        ComponentName cn = info.getTargetComponent();
+        if (cn == null) return null;
 
+        IconOverride perAppOverride =
+                PerAppIconOverrideManager.getInstance(context).getDrawerOverride(cn);
         if (perAppOverride == null && !hasDistinctDrawerSettings(context)) return null;
 
-        Path badgeShape = Utilities.getIconShapeOrNull(context);
+        ComponentKey cacheKey = new ComponentKey(cn, info.user);
+        BitmapInfo cached = getCachedIcon(cacheKey, perAppOverride);
+        if (cached != null) return newDrawable(cached, info, context, flags);
+
+        Context appContext = context.getApplicationContext();
+        mLoader.load(cacheKey, perAppOverride,
+                generation -> renderDrawerIcon(cacheKey, perAppOverride, appContext, generation),
+                result -> {
+                    if (result != null) onLoaded.accept(newDrawable(result, info, context, flags));
+                });
+        return null;
+    }
 
-        // Skip cache if there's a per-app override (cache doesn't track per-app)
-        if (perAppOverride == null) {
-            BitmapInfo cached = mCache.get(cn);
-            if (cached != null) {
-                FastBitmapDrawable drawable = cached.newIcon(context, flags, badgeShape);
-                drawable.setIsDisabled(info.isDisabled());
-                return drawable;
-            }
-        }
+    /** Returns the cached drawer icon for the key, or null if it still needs rendering. */
+    @Nullable
+    private BitmapInfo getCachedIcon(ComponentKey key, @Nullable IconOverride perAppOverride) {
+        if (perAppOverride == null) return mCache.get(key);
+        // Overrides are immutable and replaced on every edit, so identity marks a stale entry
+        OverrideEntry entry = mOverrideCache.get(key);
+        return entry != null && entry.override == perAppOverride ? entry.bitmap : null;
+    }
 
+    private static FastBitmapDrawable newDrawable(BitmapInfo bitmapInfo, ItemInfoWithIcon info,
+            Context context, int flags) {
+        FastBitmapDrawable drawable = bitmapInfo.newIcon(
+                context, flags, Utilities.getIconShapeOrNull(context));
+        drawable.setIsDisabled(info.isDisabled());
+        return drawable;
+    }
+
+    /**
+     * Resolves and renders the drawer icon for a component: pack lookup, drawable loading,
+     * fallback masking and bitmap rendering. Safe to call off the main thread. The result is
+     * only cached if {@link #invalidate} was not called since {@code generation}.
+     */
+    @Nullable
+    private BitmapInfo renderDrawerIcon(ComponentKey cacheKey,
+            @Nullable IconOverride perAppOverride, Context context, int generation) {
+        ComponentName cn = cacheKey.componentName;
         PackageManager pm = context.getPackageManager();
         Drawable icon = null;
 
@@ -214,37 +294,51 @@ public class DrawerIconResolver {
         if (icon == null) return null;
 
         // Create BitmapInfo using drawer-specific factory (per-app overrides take priority)
-        InvariantDeviceProfile idp = InvariantDeviceProfile.INSTANCE.get(context);
-        ThemeManager.IconState state = ThemeManager.INSTANCE.get(context).getIconState();
+        FactoryPool pool = getFactoryPool(context);
         BitmapInfo bitmapInfo;
         if (perAppOverride != null && perAppOverride.hasAnyRenderOverride()) {
-            try (PerAppDrawerIconFactory factory = new PerAppDrawerIconFactory(
-                    context, idp.fillResIconDpi, idp.iconBitmapSize, perAppOverride, state)) {
+            try (PerAppDrawerIconFactory factory = pool.obtainPerApp(perAppOverride)) {
                 bitmapInfo = factory.createBadgedIconBitmap(icon);
             }
         } else {
-            try (DrawerIconFactory factory = new DrawerIconFactory(
-                    context, idp.fillResIconDpi, idp.iconBitmapSize, state)) {
+            try (DrawerIconFactory factory = pool.obtain()) {
                 bitmapInfo = factory.createBadgedIconBitmap(icon);
             }
         }
 
-        // Only cache when there's no per-app override
-        if (perAppOverride == null) {
-            mCache.put(cn, bitmapInfo);
-        }
-
-        FastBitmapDrawable drawable = bitmapInfo.newIcon(context, flags, badgeShape);
-        drawable.setIsDisabled(info.isDisabled());
-        return drawable;
+        // Per-app overrides are cached separately so an override edit never serves the
+        // global drawer icon (and vice versa)
+        final BitmapInfo result = bitmapInfo;
+        mLoader.runIfCurrent(generation, () -> {
+            if (perAppOverride == null) {
+                mCache.put(cacheKey, result);
+            } else {
+                mOverrideCache.put(cacheKey, new OverrideEntry(perAppOverride, result));
+            }
+        });
+        return bitmapInfo;
     }
 
     /**
      * Pre-populate the drawer icon cache for all apps on a background thread.
-     * After this completes, the first drawer scroll has zero cache misses.
+     * Icons persisted for the current drawer configuration are read back in a single
+     * {@link DrawerIconDB} pass; only the remaining misses are rendered, and those are
+     * written back in one transaction. After this completes, the first drawer scroll has
+     * zero cache misses.
      */
-    public void preCacheIcons(Context context, ComponentName[] components) {
+    @WorkerThread
+    public void preCacheIcons(Context context, AppInfo[] apps) {
         if (!hasDistinctDrawerSettings(context)) return;
+        int generation = mLoader.getGeneration();
+
+        List<ComponentKey> misses = new ArrayList<>();
+        for (AppInfo app : apps) {
+            ComponentKey key = app.getComponentKey();
+            if (key != null && mCache.get(key) == null) {
+                misses.add(key);
+            }
+        }
+        if (misses.isEmpty()) return;
 
         PackageManager pm = context.getPackageManager();
         InvariantDeviceProfile idp = InvariantDeviceProfile.INSTANCE.get(context);
@@ -252,10 +346,23 @@ public class DrawerIconResolver {
         IconPackManager mgr = LauncherComponentProvider.get(context).getIconPackManager();
         IconPack pack = mgr.hasDistinctDrawerPack()
                 ? mgr.getDrawerPack() : mgr.getCurrentPack();
+        UserCache userCache = UserCache.INSTANCE.get(context);
+        DrawerIconDB db = getIconDb(context, idp);
+        DrawerIconDB.Config config = getCacheConfig(pm, pack, state);
+        FactoryPool pool = getFactoryPool(context);
+
+        Map<ComponentKey, BitmapInfo> persisted = new HashMap<>();
+        db.loadAll(config, userCache::getUserForSerialNumber, persisted);
+
+        List<DrawerIconDB.Row> rendered = new ArrayList<>();
+        for (ComponentKey key : misses) {
+            BitmapInfo info = persisted.get(key);
+            if (info != null) {
+                putIfCurrent(generation, key, info);
+                continue;
+            }
 
-        for (ComponentName cn : components) {
-            if (cn == null || mCache.get(cn) != null) continue;
-
+            ComponentName cn = key.componentName;
             Drawable icon = pack != null ? resolveFromPack(pack, cn, pm) : null;
             if (icon == null) {
                 try { icon = pm.getActivityIcon(cn); }
@@ -263,17 +370,172 @@ public class DrawerIconResolver {
             }
             if (icon == null) continue;
 
-            try (DrawerIconFactory factory = new DrawerIconFactory(
-                    context, idp.fillResIconDpi, idp.iconBitmapSize, state)) {
-                mCache.put(cn, factory.createBadgedIconBitmap(icon));
+            try (DrawerIconFactory factory = pool.obtain()) {
+                info = factory.createBadgedIconBitmap(icon);
             }
+            putIfCurrent(generation, key, info);
+            rendered.add(new DrawerIconDB.Row(
+                    cn, userCache.getSerialNumberForUser(key.user), info));
         }
+        db.saveAll(config, rendered);
+    }
+
+    private void putIfCurrent(int generation, ComponentKey key, BitmapInfo info) {
+        mLoader.runIfCurrent(generation, () -> mCache.put(key, info));
     }
 
-    /** Clear the drawer icon cache. Call when drawer pack, shape, or size changes. */
+    /**
+     * Drops memory and persisted drawer icons for a package that was added, updated or
+     * removed. Must be called on {@link com.android.launcher3.util.Executors#MODEL_EXECUTOR}.
+     */
+    @WorkerThread
+    public void removeIconsForPkg(Context context, String packageName, UserHandle user) {
+        evictPackage(mCache, packageName, user);
+        evictPackage(mOverrideCache, packageName, user);
+        getIconDb(context, InvariantDeviceProfile.INSTANCE.get(context)).removePackage(
+                packageName, UserCache.INSTANCE.get(context).getSerialNumberForUser(user));
+    }
+
+    private static void evictPackage(LruCache<ComponentKey, ?> cache, String packageName,
+            UserHandle user) {
+        for (ComponentKey key : cache.snapshot().keySet()) {
+            if (key.componentName.getPackageName().equals(packageName) && key.user.equals(user)) {
+                cache.remove(key);
+            }
+        }
+    }
+
+    /** Drops persisted drawer icons rendered from an icon pack that was uninstalled. */
+    public void removeIconsForPack(Context context, String packId) {
+        Context appContext = context.getApplicationContext();
+        MODEL_EXECUTOR.execute(() -> getIconDb(
+                appContext, InvariantDeviceProfile.INSTANCE.get(appContext)).removePack(packId));
+    }
+
+    /**
+     * Returns the factory pool for the current icon state and grid, replacing the pool if
+     * either changed since it was created.
+     */
+    private FactoryPool getFactoryPool(Context context) {
+        InvariantDeviceProfile idp = InvariantDeviceProfile.INSTANCE.get(context);
+        ThemeManager.IconState state = ThemeManager.INSTANCE.get(context).getIconState();
+        FactoryPool pool = mFactoryPool;
+        if (pool == null || !pool.matches(state, idp)) {
+            pool = new FactoryPool(context.getApplicationContext(), state, idp);
+            mFactoryPool = pool;
+        }
+        return pool;
+    }
+
+    @WorkerThread
+    private synchronized DrawerIconDB getIconDb(Context context, InvariantDeviceProfile idp) {
+        // The bitmap size is part of the DB version, so a grid change reopens (and resets) it
+        if (mIconDb == null || mIconDbSize != idp.iconBitmapSize) {
+            if (mIconDb != null) mIconDb.close();
+            mIconDb = new DrawerIconDB(context.getApplicationContext(), idp.iconBitmapSize);
+            mIconDbSize = idp.iconBitmapSize;
+        }
+        return mIconDb;
+    }
+
+    /**
+     * Builds the persistent cache identity for the current drawer settings. Pack, shape and
+     * size form the row key; everything else that changes the rendered bitmap goes into the
+     * freshness id so stale rows are skipped instead of served.
+     */
+    private static DrawerIconDB.Config getCacheConfig(PackageManager pm,
+            @Nullable IconPack pack, ThemeManager.IconState state) {
+        String packId = pack != null ? pack.packageName : "";
+        long packVersion = 0;
+        if (pack != null) {
+            try {
+                packVersion = pm.getPackageInfo(pack.packageName, 0).getLongVersionCode();
+            } catch (PackageManager.NameNotFoundException ignored) { }
+        }
+        String shapeKey = ShapesProvider.findKeyForMask(state.getIconMaskDrawer());
+        if (shapeKey.isEmpty()) {
+            shapeKey = Integer.toHexString(state.getIconMaskDrawer().hashCode());
+        }
+        String freshnessId = packVersion + "," + state.getIconScaleDrawer() + ","
+                + state.getSkipWrapNonAdaptiveDrawer() + ","
+                + state.getUseOemForNativeDrawer() + ","
+                + state.getWrapperBgColorDrawer() + ","
+                + Flags.enableLauncherIconShapes();
+        return new DrawerIconDB.Config(
+                packId, shapeKey, state.getIconSizeScaleDrawer(), freshnessId);
+    }
+
+    /**
+     * Clear the in-memory drawer icon cache. Call when drawer pack, shape, or size changes.
+     * Persisted icons are keyed by configuration and are left in place.
+     */
     public void invalidate() {
-        mCache.evictAll();
+        // Renders still in flight were started for the old configuration; drop their results
+        mLoader.invalidate(() -> {
+            mCache.evictAll();
+            mOverrideCache.evictAll();
+        });
         mHasDistinctSettings = null;
+        mFactoryPool = null;
+    }
+
+    /**
+     * Reusable drawer icon factories for one icon state and grid, in the manner of
+     * {@link LauncherIcons.IconPool}. Each factory owns a canvas, normalizer buffers and a
+     * shadow generator, so rendering a whole drawer should not build one per icon. Factories
+     * go back to their queue on {@code close()}; a factory closed after its pool was replaced
+     * is simply dropped with it.
+     */
+    private static class FactoryPool {
+        private final Context mContext;
+        private final ThemeManager.IconState mState;
+        private final int mFillResIconDpi;
+        private final int mIconBitmapSize;
+
+        private final ConcurrentLinkedQueue<DrawerIconFactory> mDrawerFactories =
+                new ConcurrentLinkedQueue<>();
+        // Keyed by the render fields of the per-app override
+        private final Map<String, ConcurrentLinkedQueue<PerAppDrawerIconFactory>>
+                mPerAppFactories = new ConcurrentHashMap<>();
+
+        FactoryPool(Context context, ThemeManager.IconState state, InvariantDeviceProfile idp) {
+            mContext = context;
+            mState = state;
+            mFillResIconDpi = idp.fillResIconDpi;
+            mIconBitmapSize = idp.iconBitmapSize;
+        }
+
+        boolean matches(ThemeManager.IconState state, InvariantDeviceProfile idp) {
+            return mState.equals(state) && mFillResIconDpi == idp.fillResIconDpi
+                    && mIconBitmapSize == idp.iconBitmapSize;
+        }
+
+        DrawerIconFactory obtain() {
+            DrawerIconFactory factory = mDrawerFactories.poll();
+            return factory != null ? factory : new DrawerIconFactory(
+                    mContext, mFillResIconDpi, mIconBitmapSize, mState, mDrawerFactories);
+        }
+
+        PerAppDrawerIconFactory obtainPerApp(IconOverride override) {
+            String key = override.shapeKey + '|' + override.sizeScale + '|'
+                    + override.adaptiveShape;
+            ConcurrentLinkedQueue<PerAppDrawerIconFactory> queue =
+                    mPerAppFactories.computeIfAbsent(key, k -> new ConcurrentLinkedQueue<>());
+            PerAppDrawerIconFactory factory = queue.poll();
+            return factory != null ? factory : new PerAppDrawerIconFactory(
+                    mContext, mFillResIconDpi, mIconBitmapSize, override, mState, queue);
+        }
+    }
+
+    /** A rendered per-app override icon, tagged with the override it was rendered for. */
+    static class OverrideEntry {
+        final IconOverride override;
+        final BitmapInfo bitmap;
+
+        OverrideEntry(IconOverride override, BitmapInfo bitmap) {
+            this.override = override;
+            this.bitmap = bitmap;
+        }
     }
 
     /**
@@ -290,10 +552,12 @@ public class DrawerIconResolver {
         private final boolean mUseOemForNative;
         private boolean mUseOemShape = false;
         private final int mWrapperBgColorInt;
+        private final ConcurrentLinkedQueue<DrawerIconFactory> mPool;
 
         DrawerIconFactory(Context context, int fillResIconDpi, int iconBitmapSize,
-                ThemeManager.IconState state) {
+                ThemeManager.IconState state, ConcurrentLinkedQueue<DrawerIconFactory> pool) {
             super(context, fillResIconDpi, iconBitmapSize);
+            mPool = pool;
             mIconScale = state.getIconScaleDrawer();
             mIconSizeScale = state.getIconSizeScaleDrawer();
             mIconShape = state.getIconShapeDrawer();
@@ -303,6 +567,12 @@ public class DrawerIconResolver {
             mWrapperBgColorInt = state.getWrapperBgColorDrawer();
         }
 
+        @Override
+        public void close() {
+            super.close();
+            mPool.add(this);
+        }
+
         @Override
         public Path getShapePath(AdaptiveIconDrawable drawable, Rect iconBounds) {
             if (!Flags.enableLauncherIconShapes() || mUseOemShape) return super.getShapePath(drawable, iconBounds);
@@ -420,10 +690,18 @@ public class DrawerIconResolver {
         private final boolean mUseOemForNative;
         private boolean mUseOemShape = false;
         private final int mWrapperBgColorInt;
+        @Nullable private final ConcurrentLinkedQueue<PerAppDrawerIconFactory> mPool;
 
         public PerAppDrawerIconFactory(Context context, int fillResIconDpi, int iconBitmapSize,
                 IconOverride override, ThemeManager.IconState globalState) {
+            this(context, fillResIconDpi, iconBitmapSize, override, globalState, null);
+        }
+
+        PerAppDrawerIconFactory(Context context, int fillResIconDpi, int iconBitmapSize,
+                IconOverride override, ThemeManager.IconState globalState,
+                @Nullable ConcurrentLinkedQueue<PerAppDrawerIconFactory> pool) {
             super(context, fillResIconDpi, iconBitmapSize);
+            mPool = pool;
 
             Boolean perAppAdaptive = override.getAdaptiveShapeBool();
             boolean effectiveAdaptive = perAppAdaptive != null
@@ -480,6 +758,12 @@ public class DrawerIconResolver {
             mWrapperBgColorInt = globalState.getWrapperBgColorDrawer();
         }
 
+        @Override
+        public void close() {
+            super.close();
+            if (mPool != null) mPool.add(this);
+        }
+
         @Override
         public Path getShapePath(AdaptiveIconDrawable drawable, Rect iconBounds) {
             if (!Flags.enableLauncherIconShapes() || mUseOemShape) return super.getShapePath(drawable, iconBounds);
@@ -147,7 +147,11 @@ public class LauncherIconProvider extends IconProvider {
             } else if (pack.hasFallbackMask()) {
                 Drawable original = super.getIcon(info, iconDpi);
                 int iconSize = Math.round(48 * iconDpi / 160f);
-                Drawable masked = pack.applyFallbackMask(original, iconSize);
+                // No launcher activity; key the back by the application class (or the
+                // package when it has none) so each app keeps its own, stable back
+                ComponentName appCn = new ComponentName(info.packageName,
+                        info.name != null ? info.name : info.packageName);
+                Drawable masked = pack.applyFallbackMask(original, iconSize, appCn);
                 if (masked != null) return IconPackDrawable.wrap(masked);
             }
         }
@@ -207,7 +211,7 @@ public class LauncherIconProvider extends IconProvider {
         if (pack.hasFallbackMask()) {
             Drawable original = systemFallback.get();
             int iconSize = Math.round(48 * iconDpi / 160f);
-            Drawable masked = pack.applyFallbackMask(original, iconSize);
+            Drawable masked = pack.applyFallbackMask(original, iconSize, cn);
             if (masked != null) return IconPackDrawable.wrap(masked);
         }
         return null;
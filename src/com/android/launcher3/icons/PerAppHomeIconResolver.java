@@ -33,6 +33,7 @@ import android.util.LruCache;
 
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
+import androidx.annotation.UiThread;
 
 import com.android.launcher3.Flags;
 import com.android.launcher3.InvariantDeviceProfile;
@@ -48,11 +49,15 @@ import com.android.launcher3.icons.pack.PerAppIconOverrideManager.IconOverride;
 import com.android.launcher3.model.data.ItemInfoWithIcon;
 import com.android.launcher3.shapes.IconShapeModel;
 import com.android.launcher3.shapes.ShapesProvider;
+import com.android.launcher3.util.ComponentKey;
+
+import java.util.function.Consumer;
 
 /**
  * Resolves home screen icons on-demand when a per-app override includes
  * shape, size, or adaptive rendering customization. Uses an LRU cache
- * to avoid re-resolving icons on every bind.
+ * to avoid re-resolving icons on every bind; entries are tagged with the
+ * override they were rendered for, so edits never serve a stale icon.
  *
  * Only returns an icon when a per-app render override (shape/size/adaptive)
  * is set; per-app icon pack overrides without render changes are handled
@@ -65,7 +70,9 @@ public class PerAppHomeIconResolver {
 
     private static volatile PerAppHomeIconResolver sInstance;
 
-    private final LruCache<ComponentName, BitmapInfo> mCache = new LruCache<>(CACHE_SIZE);
+    private final LruCache<ComponentKey, DrawerIconResolver.OverrideEntry> mCache =
+            new LruCache<>(CACHE_SIZE);
+    private final AsyncIconOverrideLoader mLoader = new AsyncIconOverrideLoader();
 
     private PerAppHomeIconResolver() { }
 
@@ -82,6 +89,7 @@ public class PerAppHomeIconResolver {
 
     /**
      * Get a home icon with per-app render overrides, or null if no render override is needed.
+     * Renders synchronously on a cache miss; prefer {@link #getHomeIconAsync} on the UI thread.
      */
     @Nullable
     public FastBitmapDrawable getHomeIcon(ItemInfoWithIcon info, Context context, int flags) {
@@ -92,11 +100,66 @@ public class PerAppHomeIconResolver {
         IconOverride override = overrideMgr.getHomeOverride(cn);
         if (override == null) return null;
 
-        Path badgeShape = Utilities.getIconShapeOrNull(context);
+        ComponentKey key = new ComponentKey(cn, info.user);
+        BitmapInfo bitmapInfo = getCachedIcon(key, override);
+        if (bitmapInfo == null) {
+            bitmapInfo = renderHomeIcon(key, override, context, mLoader.getGeneration());
+        }
+        return bitmapInfo != null ? newDrawable(bitmapInfo, info, context, flags) : null;
+    }
+
+    /**
+     * Non-blocking variant of {@link #getHomeIcon}. Returns the override icon when cached;
+     * otherwise returns null so the caller keeps the regular home icon, and delivers the
+     * rendered override to {@code onLoaded} on the main thread.
+     */
+    @UiThread
+    @Nullable
+    public FastBitmapDrawable getHomeIconAsync(ItemInfoWithIcon info, Context context,
+            int flags, Consumer<FastBitmapDrawable> onLoaded) {
+        ComponentName cn = info.getTargetComponent();
+        if (cn == null) return null;
+
+        IconOverride override = PerAppIconOverrideManager.getInstance(context).getHomeOverride(cn);
+        if (override == null) return null;
+
+        ComponentKey key = new ComponentKey(cn, info.user);
+        BitmapInfo cached = getCachedIcon(key, override);
+        if (cached != null) return newDrawable(cached, info, context, flags);
+
+        Context appContext = context.getApplicationContext();
+        mLoader.load(key, override,
+                generation -> renderHomeIcon(key, override, appContext, generation),
+                result -> {
+                    if (result != null) onLoaded.accept(newDrawable(result, info, context, flags));
+                });
+        return null;
+    }
+
+    @Nullable
+    private BitmapInfo getCachedIcon(ComponentKey key, IconOverride override) {
+        // Overrides are immutable and replaced on every edit, so identity marks a stale entry
+        DrawerIconResolver.OverrideEntry entry = mCache.get(key);
+        return entry != null && entry.override == override ? entry.bitmap : null;
+    }
+
+    private static FastBitmapDrawable newDrawable(BitmapInfo bitmapInfo, ItemInfoWithIcon info,
+            Context context, int flags) {
+        FastBitmapDrawable drawable = bitmapInfo.newIcon(
+                context, flags, Utilities.getIconShapeOrNull(context));
+        drawable.setIsDisabled(info.isDisabled());
+        return drawable;
+    }
 
-        // Per-app render overrides are not cached (each can differ)
+    /**
+     * Resolves and renders the override icon. Safe to call off the main thread. The result is
+     * only cached if {@link #invalidate} was not called since {@code generation}.
+     */
+    @Nullable
+    private BitmapInfo renderHomeIcon(ComponentKey key, IconOverride override, Context context,
+            int generation) {
         PackageManager pm = context.getPackageManager();
-        Drawable icon = resolveIcon(cn, override, context, pm);
+        Drawable icon = resolveIcon(key.componentName, override, context, pm);
         if (icon == null) return null;
 
         InvariantDeviceProfile idp = InvariantDeviceProfile.INSTANCE.get(context);
@@ -106,10 +169,10 @@ public class PerAppHomeIconResolver {
                 context, idp.fillResIconDpi, idp.iconBitmapSize, override, state)) {
             bitmapInfo = factory.createBadgedIconBitmap(icon);
         }
-
-        FastBitmapDrawable drawable = bitmapInfo.newIcon(context, flags, badgeShape);
-        drawable.setIsDisabled(info.isDisabled());
-        return drawable;
+        DrawerIconResolver.OverrideEntry entry =
+                new DrawerIconResolver.OverrideEntry(override, bitmapInfo);
+        mLoader.runIfCurrent(generation, () -> mCache.put(key, entry));
+        return bitmapInfo;
     }
 
     /** Resolve the icon drawable from the override's pack settings, or fall back to system. */
@@ -137,7 +200,7 @@ public class PerAppHomeIconResolver {
                 if (pack.hasFallbackMask()) {
                     try {
                         Drawable original = pm.getActivityIcon(cn);
-                        d = pack.applyFallbackMask(original, FALLBACK_ICON_SIZE);
+                        d = pack.applyFallbackMask(original, FALLBACK_ICON_SIZE, cn);
                         if (d != null) return IconPackDrawable.wrap(d);
                     } catch (PackageManager.NameNotFoundException ignored) { }
                 }
@@ -155,7 +218,7 @@ public class PerAppHomeIconResolver {
             if (pack.hasFallbackMask()) {
                 try {
                     Drawable original = pm.getActivityIcon(cn);
-                    d = pack.applyFallbackMask(original, FALLBACK_ICON_SIZE);
+                    d = pack.applyFallbackMask(original, FALLBACK_ICON_SIZE, cn);
                     if (d != null) return IconPackDrawable.wrap(d);
                 } catch (PackageManager.NameNotFoundException ignored) { }
             }
@@ -169,7 +232,8 @@ public class PerAppHomeIconResolver {
 
     /** Clear the cache. Call when home screen per-app overrides change. */
     public void invalidate() {
-        mCache.evictAll();
+        // Renders still in flight used the old overrides; drop their results
+        mLoader.invalidate(mCache::evictAll);
     }
 
     /**
@@ -0,0 +1,411 @@
+/*
+ * Copyright (C) 2025 DefaultLauncher Contributors
+ *
+ * This file is part of DefaultLauncher.
+ *
+ * DefaultLauncher is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * DefaultLauncher is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with DefaultLauncher. If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.android.launcher3.icons.pack;
+
+import android.content.ComponentName;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.ToIntFunction;
+
+/**
+ * Compact, memory-mapped index of a parsed ADW {@code appfilter.xml}.
+ *
+ * Components are stored as sorted 64-bit hashes of their flattened name, each pointing into a
+ * de-duplicated drawable-name string table, so a lookup is a binary search over the mapped file
+ * and never materialises a {@link ComponentName} or a {@code HashMap}. The file also carries
+ * calendar prefixes, the scale factor and the iconback/iconmask/iconupon drawable names.
+ *
+ * The drawables referenced by component mappings can also carry their resolved resource ids.
+ * These are only valid for the pack install the index was built from, which the version key
+ * guarantees, and spare a name-based {@code Resources.getIdentifier} search per lookup.
+ *
+ * Files are keyed by the pack's version code and last update time; a mismatch means the pack
+ * changed and the index is rebuilt from XML.
+ *
+ * Layout (big endian):
+ * <pre>
+ *   header:   magic, format, versionCode, lastUpdateTime, scale,
+ *             itemCount, calendarCount, stringCount, backCount, mask, upon, resIdCount
+ *   backs:    backCount string ids
+ *   items:    itemCount  x (hash: long, stringId: int), sorted by hash
+ *   calendar: calendarCount x (hash: long, stringId: int), sorted by hash
+ *   resIds:   resIdCount x resource id: int, for string ids 0 to resIdCount - 1
+ *   strings:  stringCount x offset: int, then UTF-8 bytes (offsets relative to the data start)
+ * </pre>
+ */
+public final class AppFilterIndex {
+
+    private static final String TAG = "AppFilterIndex";
+
+    private static final int MAGIC = 0x41464958; // "AFIX"
+    private static final int FORMAT = 2;
+    private static final int HEADER_SIZE = 4 + 4 + 8 + 8 + 4 + 4 * 7;
+    private static final int ENTRY_SIZE = 8 + 4;
+    private static final int NO_STRING = -1;
+
+    /** Returned by {@link #getDrawableResId} when the index carries no resolved id. */
+    public static final int RES_ID_UNKNOWN = -1;
+
+    private final ByteBuffer mBuffer;
+    private final int mItemCount;
+    private final int mCalendarCount;
+    private final int mStringCount;
+    private final int mResIdCount;
+    private final int mItemsStart;
+    private final int mCalendarStart;
+    private final int mResIdsStart;
+    private final int mStringOffsetsStart;
+    private final int mStringDataStart;
+
+    public final float scale;
+    @NonNull public final List<String> backNames;
+    @Nullable public final String maskName;
+    @Nullable public final String uponName;
+
+    private AppFilterIndex(ByteBuffer buffer) throws IOException {
+        mBuffer = buffer;
+        if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != FORMAT) {
+            throw new IOException("Not an appfilter index");
+        }
+        scale = buffer.getFloat(24);
+        mItemCount = buffer.getInt(28);
+        mCalendarCount = buffer.getInt(32);
+        mStringCount = buffer.getInt(36);
+        int backCount = buffer.getInt(40);
+        int mask = buffer.getInt(44);
+        int upon = buffer.getInt(48);
+        mResIdCount = buffer.getInt(52);
+
+        int backsStart = HEADER_SIZE;
+        mItemsStart = backsStart + backCount * 4;
+        mCalendarStart = mItemsStart + mItemCount * ENTRY_SIZE;
+        mResIdsStart = mCalendarStart + mCalendarCount * ENTRY_SIZE;
+        mStringOffsetsStart = mResIdsStart + mResIdCount * 4;
+        mStringDataStart = mStringOffsetsStart + mStringCount * 4;
+        if (mStringDataStart > buffer.limit()) {
+            throw new IOException("Truncated appfilter index");
+        }
+
+        List<String> backs = new ArrayList<>(backCount);
+        for (int i = 0; i < backCount; i++) {
+            backs.add(getString(buffer.getInt(backsStart + i * 4)));
+        }
+        backNames = Collections.unmodifiableList(backs);
+        maskName = mask == NO_STRING ? null : getString(mask);
+        uponName = upon == NO_STRING ? null : getString(upon);
+    }
+
+    /** Drawable mapped to the component, or null. */
+    @Nullable
+    public String getDrawable(@NonNull ComponentName cn) {
+        int id = find(mItemsStart, mItemCount, hash(cn));
+        return id == NO_STRING ? null : getString(id);
+    }
+
+    /**
+     * Resource id of the drawable mapped to the component, 0 if the pack does not contain it,
+     * or {@link #RES_ID_UNKNOWN} if it is unmapped or the index was built without ids.
+     */
+    public int getDrawableResId(@NonNull ComponentName cn) {
+        int id = find(mItemsStart, mItemCount, hash(cn));
+        return id == NO_STRING || id >= mResIdCount
+                ? RES_ID_UNKNOWN : mBuffer.getInt(mResIdsStart + id * 4);
+    }
+
+    /** Calendar drawable prefix mapped to the component, or null. */
+    @Nullable
+    public String getCalendarPrefix(@NonNull ComponentName cn) {
+        int id = find(mCalendarStart, mCalendarCount, hash(cn));
+        return id == NO_STRING ? null : getString(id);
+    }
+
+    /** Number of component to drawable mappings. */
+    public int getItemCount() {
+        return mItemCount;
+    }
+
+    /**
+     * All distinct drawable names referenced by component mappings, in first-seen order.
+     * Calendar prefixes and fallback layers are not included.
+     */
+    @NonNull
+    public List<String> getMappedDrawableNames() {
+        BitSet referenced = new BitSet(mStringCount);
+        for (int i = 0; i < mItemCount; i++) {
+            referenced.set(mBuffer.getInt(mItemsStart + i * ENTRY_SIZE + 8));
+        }
+        // String ids are assigned in first-seen order, so ascending ids preserve it
+        List<String> names = new ArrayList<>(referenced.cardinality());
+        for (int id = referenced.nextSetBit(0); id >= 0; id = referenced.nextSetBit(id + 1)) {
+            names.add(getString(id));
+        }
+        return names;
+    }
+
+    /** Binary search for {@code hash}, returning its string id or {@link #NO_STRING}. */
+    private int find(int start, int count, long hash) {
+        int lo = 0;
+        int hi = count - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            long midHash = mBuffer.getLong(start + mid * ENTRY_SIZE);
+            if (midHash < hash) {
+                lo = mid + 1;
+            } else if (midHash > hash) {
+                hi = mid - 1;
+            } else {
+                return mBuffer.getInt(start + mid * ENTRY_SIZE + 8);
+            }
+        }
+        return NO_STRING;
+    }
+
+    private String getString(int id) {
+        int begin = mStringDataStart + mBuffer.getInt(mStringOffsetsStart + id * 4);
+        int end = id + 1 < mStringCount
+                ? mStringDataStart + mBuffer.getInt(mStringOffsetsStart + (id + 1) * 4)
+                : mBuffer.limit();
+        byte[] bytes = new byte[end - begin];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = mBuffer.get(begin + i);
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * 64-bit FNV-1a hash of {@code package/class}, computed from the component's strings
+     * without building the flattened string.
+     */
+    static long hash(@NonNull ComponentName cn) {
+        long h = 0xcbf29ce484222325L;
+        h = hash(h, cn.getPackageName());
+        h = (h ^ '/') * 0x100000001b3L;
+        return hash(h, cn.getClassName());
+    }
+
+    private static long hash(long h, String s) {
+        for (int i = 0, n = s.length(); i < n; i++) {
+            h = (h ^ s.charAt(i)) * 0x100000001b3L;
+        }
+        return h;
+    }
+
+    /**
+     * Memory-maps the index file if it exists and matches the pack version, or returns null.
+     */
+    @Nullable
+    public static AppFilterIndex load(@NonNull File file, long versionCode, long lastUpdateTime) {
+        if (!file.isFile()) return null;
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r");
+                FileChannel channel = raf.getChannel()) {
+            if (channel.size() < HEADER_SIZE) return null;
+            MappedByteBuffer buffer =
+                    channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            buffer.order(ByteOrder.BIG_ENDIAN);
+            if (buffer.getLong(8) != versionCode || buffer.getLong(16) != lastUpdateTime) {
+                return null;
+            }
+            return new AppFilterIndex(buffer);
+        } catch (IOException | RuntimeException e) {
+            Log.w(TAG, "Discarding unreadable appfilter index " + file, e);
+            return null;
+        }
+    }
+
+    /** Collects parsed appfilter.xml data and serialises it into an index. */
+    public static final class Builder {
+
+        private final Map<ComponentName, String> mItems = new LinkedHashMap<>();
+        private final Map<ComponentName, String> mCalendars = new LinkedHashMap<>();
+        private final List<String> mBacks = new ArrayList<>();
+        private String mMask;
+        private String mUpon;
+        private float mScale = 1.0f;
+
+        public void addItem(ComponentName cn, String drawable) {
+            mItems.put(cn, drawable);
+        }
+
+        public void addCalendar(ComponentName cn, String prefix) {
+            mCalendars.put(cn, prefix);
+        }
+
+        public void addBack(String drawable) {
+            mBacks.add(drawable);
+        }
+
+        public void setMask(String drawable) {
+            mMask = drawable;
+        }
+
+        public void setUpon(String drawable) {
+            mUpon = drawable;
+        }
+
+        public void setScale(float scale) {
+            mScale = scale;
+        }
+
+        /** Serialises the collected data into an in-memory index without resource ids. */
+        @NonNull
+        public AppFilterIndex build(long versionCode, long lastUpdateTime) {
+            return build(versionCode, lastUpdateTime, null);
+        }
+
+        /**
+         * Serialises the collected data into an in-memory index. When {@code resolver} is set,
+         * it is called once per distinct mapped drawable name and the returned resource ids are
+         * stored in the index.
+         */
+        @NonNull
+        public AppFilterIndex build(long versionCode, long lastUpdateTime,
+                @Nullable ToIntFunction<String> resolver) {
+            try {
+                return new AppFilterIndex(serialize(versionCode, lastUpdateTime, resolver));
+            } catch (IOException e) {
+                // Only thrown for malformed input, which serialize() never produces
+                throw new IllegalStateException(e);
+            }
+        }
+
+        /**
+         * Serialises the index like {@link #build(long, long, ToIntFunction)} and writes it to
+         * {@code file} atomically (temp file + rename),
+         * then returns it. Falls back to the in-memory index if the write fails.
+         */
+        @NonNull
+        public AppFilterIndex buildAndWrite(@NonNull File file, long versionCode,
+                long lastUpdateTime, @Nullable ToIntFunction<String> resolver) {
+            AppFilterIndex index = build(versionCode, lastUpdateTime, resolver);
+            File tmp = new File(file.getPath() + ".tmp");
+            try {
+                File parent = file.getParentFile();
+                if (parent != null && !parent.isDirectory() && !parent.mkdirs()) {
+                    throw new IOException("Cannot create " + parent);
+                }
+                ByteBuffer data = index.mBuffer.duplicate();
+                data.rewind();
+                try (FileOutputStream out = new FileOutputStream(tmp)) {
+                    out.getChannel().write(data);
+                    out.getFD().sync();
+                }
+                if (!tmp.renameTo(file)) {
+                    throw new IOException("Cannot rename " + tmp);
+                }
+            } catch (IOException e) {
+                Log.w(TAG, "Failed to persist appfilter index " + file, e);
+                tmp.delete();
+            }
+            return index;
+        }
+
+        private ByteBuffer serialize(long versionCode, long lastUpdateTime,
+                @Nullable ToIntFunction<String> resolver) {
+            // Intern strings, item drawables first so they form a prefix of the table
+            Map<String, Integer> ids = new HashMap<>();
+            List<String> strings = new ArrayList<>();
+            long[][] items = entries(mItems, ids, strings);
+            int[] resIds = new int[resolver != null ? strings.size() : 0];
+            for (int i = 0; i < resIds.length; i++) {
+                resIds[i] = resolver.applyAsInt(strings.get(i));
+            }
+            long[][] calendars = entries(mCalendars, ids, strings);
+            int[] backs = new int[mBacks.size()];
+            for (int i = 0; i < backs.length; i++) {
+                backs[i] = intern(mBacks.get(i), ids, strings);
+            }
+            int mask = mMask == null ? NO_STRING : intern(mMask, ids, strings);
+            int upon = mUpon == null ? NO_STRING : intern(mUpon, ids, strings);
+
+            byte[][] encoded = new byte[strings.size()][];
+            int dataSize = 0;
+            for (int i = 0; i < encoded.length; i++) {
+                encoded[i] = strings.get(i).getBytes(StandardCharsets.UTF_8);
+                dataSize += encoded[i].length;
+            }
+
+            int size = HEADER_SIZE + backs.length * 4
+                    + (items.length + calendars.length) * ENTRY_SIZE
+                    + resIds.length * 4 + encoded.length * 4 + dataSize;
+            ByteBuffer buffer = ByteBuffer.allocate(size).order(ByteOrder.BIG_ENDIAN);
+            buffer.putInt(MAGIC).putInt(FORMAT).putLong(versionCode).putLong(lastUpdateTime)
+                    .putFloat(mScale).putInt(items.length).putInt(calendars.length)
+                    .putInt(encoded.length).putInt(backs.length).putInt(mask).putInt(upon)
+                    .putInt(resIds.length);
+            for (int back : backs) buffer.putInt(back);
+            for (long[] e : items) buffer.putLong(e[0]).putInt((int) e[1]);
+            for (long[] e : calendars) buffer.putLong(e[0]).putInt((int) e[1]);
+            for (int resId : resIds) buffer.putInt(resId);
+            int offset = 0;
+            for (byte[] bytes : encoded) {
+                buffer.putInt(offset);
+                offset += bytes.length;
+            }
+            for (byte[] bytes : encoded) buffer.put(bytes);
+            buffer.flip();
+            return buffer;
+        }
+
+        private static long[][] entries(Map<ComponentName, String> map,
+                Map<String, Integer> ids, List<String> strings) {
+            Map<Long, Integer> byHash = new HashMap<>(map.size());
+            for (Map.Entry<ComponentName, String> e : map.entrySet()) {
+                // Later duplicates win, matching the previous HashMap.put semantics
+                byHash.put(hash(e.getKey()), intern(e.getValue(), ids, strings));
+            }
+            long[][] result = new long[byHash.size()][];
+            int i = 0;
+            for (Map.Entry<Long, Integer> e : byHash.entrySet()) {
+                result[i++] = new long[] { e.getKey(), e.getValue() };
+            }
+            Arrays.sort(result, (a, b) -> Long.compare(a[0], b[0]));
+            return result;
+        }
+
+        private static int intern(String s, Map<String, Integer> ids, List<String> strings) {
+            Integer id = ids.get(s);
+            if (id == null) {
+                id = strings.size();
+                ids.put(s, id);
+                strings.add(s);
+            }
+            return id;
+        }
+    }
+}
@@ -0,0 +1,152 @@
+/*
+ * Copyright (C) 2025 DefaultLauncher Contributors
+ *
+ * This file is part of DefaultLauncher.
+ *
+ * DefaultLauncher is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * DefaultLauncher is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with DefaultLauncher. If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.android.launcher3.icons.pack;
+
+import android.content.ComponentName;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.PorterDuff;
+import android.graphics.PorterDuffXfermode;
+import android.graphics.Rect;
+import android.graphics.drawable.Drawable;
+import android.util.SparseArray;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Composes iconback/iconmask/iconupon fallback icons for apps an icon pack does not map.
+ *
+ * The pack layers are scaled once per output size and kept, so composing an icon only blits
+ * same-size bitmaps. The app icon is drawn straight into the output with the pack's scale,
+ * without first converting it to a bitmap, and the {@link Canvas}, paints and rects are reused
+ * per thread. The back is chosen from the component's name, so an app always gets the same
+ * result and the rendered icon can be cached.
+ */
+final class FallbackMaskRenderer {
+
+    // Output sizes whose scaled layers are kept; callers use only a few sizes
+    private static final int MAX_CACHED_SIZES = 4;
+
+    private final List<Bitmap> mBacks;
+    @Nullable private final Bitmap mMask;
+    @Nullable private final Bitmap mUpon;
+    private final float mScale;
+
+    // Guarded by itself
+    private final SparseArray<Layers> mLayers = new SparseArray<>();
+
+    private static final ThreadLocal<Scratch> sScratch = ThreadLocal.withInitial(Scratch::new);
+
+    FallbackMaskRenderer(@NonNull List<Bitmap> backs, @Nullable Bitmap mask,
+            @Nullable Bitmap upon, float scale) {
+        mBacks = backs;
+        mMask = mask;
+        mUpon = upon;
+        mScale = scale;
+    }
+
+    /**
+     * Returns a new {@code size} square bitmap of {@code original} composed with the pack
+     * layers. The back is picked from {@code cn}, or is the first back when it is null.
+     */
+    @NonNull
+    Bitmap render(@NonNull Drawable original, int size, @Nullable ComponentName cn) {
+        Layers layers = getLayers(size);
+        Scratch scratch = sScratch.get();
+        Bitmap result = Bitmap.createBitmap(size, size, Bitmap.Config.ARGB_8888);
+        Canvas canvas = scratch.canvas;
+        canvas.setBitmap(result);
+
+        if (!layers.backs.isEmpty()) {
+            int index = cn == null ? 0
+                    : (int) Math.floorMod(AppFilterIndex.hash(cn), (long) layers.backs.size());
+            canvas.drawBitmap(layers.backs.get(index), 0, 0, scratch.layerPaint);
+        }
+
+        int scaledSize = Math.round(size * mScale);
+        int offset = (size - scaledSize) / 2;
+        original.copyBounds(scratch.originalBounds);
+        original.setBounds(offset, offset, offset + scaledSize, offset + scaledSize);
+        original.draw(canvas);
+        original.setBounds(scratch.originalBounds);
+
+        if (layers.mask != null) {
+            canvas.drawBitmap(layers.mask, 0, 0, scratch.maskPaint);
+        }
+        if (layers.upon != null) {
+            canvas.drawBitmap(layers.upon, 0, 0, scratch.layerPaint);
+        }
+
+        canvas.setBitmap(null);
+        return result;
+    }
+
+    private Layers getLayers(int size) {
+        synchronized (mLayers) {
+            Layers layers = mLayers.get(size);
+            if (layers == null) {
+                if (mLayers.size() >= MAX_CACHED_SIZES) {
+                    mLayers.clear();
+                }
+                layers = new Layers(size);
+                mLayers.put(size, layers);
+            }
+            return layers;
+        }
+    }
+
+    @Nullable
+    private static Bitmap scale(@Nullable Bitmap src, int size) {
+        if (src == null || (src.getWidth() == size && src.getHeight() == size)) return src;
+        return Bitmap.createScaledBitmap(src, size, size, true);
+    }
+
+    /** The pack layers scaled to one output size. */
+    private class Layers {
+        final List<Bitmap> backs;
+        @Nullable final Bitmap mask;
+        @Nullable final Bitmap upon;
+
+        Layers(int size) {
+            backs = new ArrayList<>(mBacks.size());
+            for (Bitmap back : mBacks) {
+                backs.add(scale(back, size));
+            }
+            mask = scale(mMask, size);
+            upon = scale(mUpon, size);
+        }
+    }
+
+    /** Per-thread drawing state, so composing an icon allocates only its output bitmap. */
+    private static class Scratch {
+        final Canvas canvas = new Canvas();
+        final Paint layerPaint = new Paint(Paint.FILTER_BITMAP_FLAG);
+        final Paint maskPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+        final Rect originalBounds = new Rect();
+
+        Scratch() {
+            maskPaint.setXfermode(new PorterDuffXfermode(PorterDuff.Mode.DST_OUT));
+        }
+    }
+}
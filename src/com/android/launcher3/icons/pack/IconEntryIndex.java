@@ -0,0 +1,493 @@
+/*
+ * Copyright (C) 2025 DefaultLauncher Contributors
+ *
+ * This file is part of DefaultLauncher.
+ *
+ * DefaultLauncher is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * DefaultLauncher is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with DefaultLauncher. If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.android.launcher3.icons.pack;
+
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.WorkerThread;
+
+import com.android.launcher3.icons.pack.IconPack.IconCategory;
+import com.android.launcher3.icons.pack.IconPack.IconEntry;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Token index over the entries of an icon pack, for searching by drawable name or label.
+ *
+ * Names are split into lowercase tokens on underscores and other separators, on camel case and
+ * on letter/digit boundaries: {@code ic_googleMaps2} gives {@code ic, google, maps, 2}. Every
+ * run of trailing tokens is also indexed joined together ({@code googlemaps2, maps2}), so a
+ * query typed without separators still matches. Distinct tokens are kept sorted, each with the
+ * ordinals of the entries containing it, so the tokens starting with a query token form one
+ * contiguous range found by binary search.
+ *
+ * An entry matches when every query token is a prefix of one of its tokens. Results keep the
+ * pack's category and entry order.
+ *
+ * For infix lookups ({@link #findContaining}), every token suffix of at least
+ * {@link #MIN_INFIX_LENGTH} characters is kept too, as a sorted array of (token, offset) pairs
+ * rather than strings. The suffixes starting with a needle form one contiguous range as well, so
+ * {@code chrome} finds {@code googlechrome} without scanning the entries.
+ *
+ * Immutable once built; safe to query from any thread. An index can be persisted with the
+ * categories and tokens it was built from, keyed by the pack's version code and last update
+ * time like {@link AppFilterIndex}, so later loads skip both drawable.xml and tokenizing.
+ */
+public final class IconEntryIndex {
+
+    private static final String TAG = "IconEntryIndex";
+
+    private static final int MAGIC = 0x49434958; // "ICIX"
+    private static final int FORMAT = 2;
+
+    /** Shortest needle {@link #findContaining} answers, and shortest suffix indexed for it. */
+    public static final int MIN_INFIX_LENGTH = 3;
+    // Suffixes are packed as (token index << OFFSET_BITS | offset)
+    private static final int OFFSET_BITS = 8;
+    private static final int MAX_OFFSET = (1 << OFFSET_BITS) - 1;
+
+    private final List<IconCategory> mCategories;
+    // Ordinal of the first entry of each category, plus the total entry count
+    private final int[] mCategoryStarts;
+    private final IconEntry[] mEntries;
+
+    // Sorted distinct tokens and, per token, the ascending ordinals of the entries having it
+    private final String[] mTokens;
+    private final int[][] mPostings;
+    // Proper suffixes of the tokens, packed, in the order of the suffix text
+    private final int[] mSuffixes;
+
+    private IconEntryIndex(List<IconCategory> categories, int[] categoryStarts,
+            IconEntry[] entries, String[] tokens, int[][] postings, int[] suffixes) {
+        mCategories = categories;
+        mCategoryStarts = categoryStarts;
+        mEntries = entries;
+        mTokens = tokens;
+        mPostings = postings;
+        mSuffixes = suffixes;
+    }
+
+    /** Builds the index of {@code categories}, as returned by {@link IconPack#getAllIcons}. */
+    @WorkerThread
+    public static IconEntryIndex build(@NonNull List<IconCategory> categories) {
+        int[] categoryStarts = new int[categories.size() + 1];
+        int count = 0;
+        for (int c = 0; c < categories.size(); c++) {
+            categoryStarts[c] = count;
+            count += categories.get(c).items.size();
+        }
+        categoryStarts[categories.size()] = count;
+
+        IconEntry[] entries = new IconEntry[count];
+        Map<String, IntList> postings = new HashMap<>();
+        Set<String> entryTokens = new LinkedHashSet<>();
+        int ordinal = 0;
+        for (IconCategory category : categories) {
+            for (IconEntry entry : category.items) {
+                entries[ordinal] = entry;
+                entryTokens.clear();
+                addTokens(entry.drawableName, entryTokens);
+                addTokens(entry.label, entryTokens);
+                for (String token : entryTokens) {
+                    postings.computeIfAbsent(token, t -> new IntList()).add(ordinal);
+                }
+                ordinal++;
+            }
+        }
+
+        String[] tokens = postings.keySet().toArray(new String[0]);
+        Arrays.sort(tokens);
+        int[][] lists = new int[tokens.length][];
+        for (int i = 0; i < tokens.length; i++) {
+            lists[i] = postings.get(tokens[i]).toArray();
+        }
+        return new IconEntryIndex(Collections.unmodifiableList(categories), categoryStarts,
+                entries, tokens, lists, buildSuffixes(tokens));
+    }
+
+    /** Packs and sorts every token suffix of at least {@link #MIN_INFIX_LENGTH} characters. */
+    private static int[] buildSuffixes(String[] tokens) {
+        List<Integer> suffixes = new ArrayList<>();
+        for (int t = 0; t < tokens.length; t++) {
+            int last = Math.min(tokens[t].length() - MIN_INFIX_LENGTH, MAX_OFFSET);
+            for (int offset = 1; offset <= last; offset++) {
+                suffixes.add(t << OFFSET_BITS | offset);
+            }
+        }
+        suffixes.sort((a, b) -> compareSuffix(tokens, a, b));
+        int[] result = new int[suffixes.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = suffixes.get(i);
+        }
+        return result;
+    }
+
+    /** Number of indexed entries. */
+    public int size() {
+        return mEntries.length;
+    }
+
+    /** Every indexed category, in pack order. */
+    @NonNull
+    public List<IconCategory> getCategories() {
+        return mCategories;
+    }
+
+    /**
+     * Returns the categories with only the entries matching {@code query}, dropping categories
+     * left empty. A query without tokens returns every category.
+     */
+    @WorkerThread
+    public List<IconCategory> query(String query) {
+        List<String> queryTokens = tokenize(query);
+        if (queryTokens.isEmpty()) return mCategories;
+
+        BitSet matches = null;
+        for (String queryToken : queryTokens) {
+            BitSet tokenMatches = new BitSet(mEntries.length);
+            int end = upperBound(queryToken);
+            for (int t = lowerBound(queryToken); t < end; t++) {
+                for (int ordinal : mPostings[t]) {
+                    tokenMatches.set(ordinal);
+                }
+            }
+            if (matches == null) {
+                matches = tokenMatches;
+            } else {
+                matches.and(tokenMatches);
+            }
+            if (matches.isEmpty()) return new ArrayList<>();
+        }
+
+        List<IconCategory> result = new ArrayList<>();
+        int category = -1;
+        List<IconEntry> items = null;
+        for (int i = matches.nextSetBit(0); i >= 0; i = matches.nextSetBit(i + 1)) {
+            if (items == null || i >= mCategoryStarts[category + 1]) {
+                while (i >= mCategoryStarts[category + 1]) category++;
+                items = new ArrayList<>();
+                result.add(new IconCategory(mCategories.get(category).title, items));
+            }
+            items.add(mEntries[i]);
+        }
+        return result;
+    }
+
+    /**
+     * Returns the entries with a token containing {@code needle}, in pack order. Separators in
+     * the needle are dropped, so it matches the joined runs of tokens too: {@code chrome} finds
+     * {@code chrome_dev}, {@code ic_google_chrome} and {@code googlechrome}. Needles shorter
+     * than {@link #MIN_INFIX_LENGTH} find nothing.
+     */
+    @WorkerThread
+    public List<IconEntry> findContaining(String needle) {
+        String joined = String.join("", tokenize(needle));
+        List<IconEntry> result = new ArrayList<>();
+        if (joined.length() < MIN_INFIX_LENGTH) return result;
+
+        BitSet matches = new BitSet(mEntries.length);
+        int end = upperBound(joined);
+        for (int t = lowerBound(joined); t < end; t++) {
+            for (int ordinal : mPostings[t]) matches.set(ordinal);
+        }
+        end = suffixUpperBound(joined);
+        for (int i = suffixLowerBound(joined); i < end; i++) {
+            for (int ordinal : mPostings[mSuffixes[i] >>> OFFSET_BITS]) matches.set(ordinal);
+        }
+        for (int i = matches.nextSetBit(0); i >= 0; i = matches.nextSetBit(i + 1)) {
+            result.add(mEntries[i]);
+        }
+        return result;
+    }
+
+    /**
+     * Reads a persisted index if {@code file} exists and matches the pack version, or returns
+     * null.
+     */
+    @WorkerThread
+    @Nullable
+    public static IconEntryIndex load(@NonNull File file, long versionCode, long lastUpdateTime) {
+        if (!file.isFile()) return null;
+        try (DataInputStream in = new DataInputStream(
+                new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readInt() != FORMAT
+                    || in.readLong() != versionCode || in.readLong() != lastUpdateTime) {
+                return null;
+            }
+
+            int categoryCount = in.readInt();
+            List<IconCategory> categories = new ArrayList<>(categoryCount);
+            int[] categoryStarts = new int[categoryCount + 1];
+            List<IconEntry> entries = new ArrayList<>();
+            for (int c = 0; c < categoryCount; c++) {
+                String title = in.readUTF();
+                int itemCount = in.readInt();
+                List<IconEntry> items = new ArrayList<>(itemCount);
+                for (int i = 0; i < itemCount; i++) {
+                    items.add(new IconEntry(in.readUTF(), in.readUTF()));
+                }
+                categoryStarts[c] = entries.size();
+                entries.addAll(items);
+                categories.add(new IconCategory(title, items));
+            }
+            categoryStarts[categoryCount] = entries.size();
+
+            String[] tokens = new String[in.readInt()];
+            int[][] postings = new int[tokens.length][];
+            for (int t = 0; t < tokens.length; t++) {
+                tokens[t] = in.readUTF();
+                int[] ordinals = new int[in.readInt()];
+                for (int i = 0; i < ordinals.length; i++) {
+                    ordinals[i] = in.readInt();
+                    if (ordinals[i] < 0 || ordinals[i] >= entries.size()) {
+                        throw new IOException("Entry ordinal out of range");
+                    }
+                }
+                postings[t] = ordinals;
+            }
+            int[] suffixes = new int[in.readInt()];
+            for (int i = 0; i < suffixes.length; i++) {
+                suffixes[i] = in.readInt();
+                int token = suffixes[i] >>> OFFSET_BITS;
+                if (token >= tokens.length
+                        || (suffixes[i] & MAX_OFFSET) > tokens[token].length()) {
+                    throw new IOException("Token suffix out of range");
+                }
+            }
+            return new IconEntryIndex(Collections.unmodifiableList(categories), categoryStarts,
+                    entries.toArray(new IconEntry[0]), tokens, postings, suffixes);
+        } catch (IOException | RuntimeException e) {
+            Log.w(TAG, "Discarding unreadable icon entry index " + file, e);
+            return null;
+        }
+    }
+
+    /**
+     * Writes this index to {@code file} atomically (temp file + rename), keyed by the given
+     * pack version. Failures are logged; the index stays usable in memory.
+     */
+    @WorkerThread
+    public void write(@NonNull File file, long versionCode, long lastUpdateTime) {
+        File tmp = new File(file.getPath() + ".tmp");
+        try {
+            File parent = file.getParentFile();
+            if (parent != null && !parent.isDirectory() && !parent.mkdirs()) {
+                throw new IOException("Cannot create " + parent);
+            }
+            try (FileOutputStream fos = new FileOutputStream(tmp);
+                    DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fos))) {
+                out.writeInt(MAGIC);
+                out.writeInt(FORMAT);
+                out.writeLong(versionCode);
+                out.writeLong(lastUpdateTime);
+                out.writeInt(mCategories.size());
+                for (IconCategory category : mCategories) {
+                    out.writeUTF(category.title);
+                    out.writeInt(category.items.size());
+                    for (IconEntry entry : category.items) {
+                        out.writeUTF(entry.drawableName);
+                        out.writeUTF(entry.label);
+                    }
+                }
+                out.writeInt(mTokens.length);
+                for (int t = 0; t < mTokens.length; t++) {
+                    out.writeUTF(mTokens[t]);
+                    out.writeInt(mPostings[t].length);
+                    for (int ordinal : mPostings[t]) out.writeInt(ordinal);
+                }
+                out.writeInt(mSuffixes.length);
+                for (int suffix : mSuffixes) out.writeInt(suffix);
+                out.flush();
+                fos.getFD().sync();
+            }
+            if (!tmp.renameTo(file)) {
+                throw new IOException("Cannot rename " + tmp);
+            }
+        } catch (IOException e) {
+            Log.w(TAG, "Failed to persist icon entry index " + file, e);
+            tmp.delete();
+        }
+    }
+
+    /** Index of the first token not less than {@code prefix}. */
+    private int lowerBound(String prefix) {
+        int lo = 0;
+        int hi = mTokens.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (mTokens[mid].compareTo(prefix) < 0) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    /** Index of the first token after every token starting with {@code prefix}. */
+    private int upperBound(String prefix) {
+        int lo = lowerBound(prefix);
+        int hi = mTokens.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (mTokens[mid].startsWith(prefix)) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    /** Index of the first suffix not less than {@code prefix}. */
+    private int suffixLowerBound(String prefix) {
+        int lo = 0;
+        int hi = mSuffixes.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (compareSuffix(mTokens, mSuffixes[mid], prefix) < 0) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    /** Index of the first suffix after every suffix starting with {@code prefix}. */
+    private int suffixUpperBound(String prefix) {
+        int lo = suffixLowerBound(prefix);
+        int hi = mSuffixes.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            int suffix = mSuffixes[mid];
+            if (mTokens[suffix >>> OFFSET_BITS].startsWith(prefix, suffix & MAX_OFFSET)) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    /** Compares two packed suffixes by their text. */
+    private static int compareSuffix(String[] tokens, int a, int b) {
+        return compareFrom(tokens[a >>> OFFSET_BITS], a & MAX_OFFSET,
+                tokens[b >>> OFFSET_BITS], b & MAX_OFFSET);
+    }
+
+    /** Compares a packed suffix with {@code s}, as {@link String#compareTo} would. */
+    private static int compareSuffix(String[] tokens, int suffix, String s) {
+        return compareFrom(tokens[suffix >>> OFFSET_BITS], suffix & MAX_OFFSET, s, 0);
+    }
+
+    private static int compareFrom(String a, int aStart, String b, int bStart) {
+        int aLen = a.length() - aStart;
+        int bLen = b.length() - bStart;
+        for (int i = 0, n = Math.min(aLen, bLen); i < n; i++) {
+            int diff = a.charAt(aStart + i) - b.charAt(bStart + i);
+            if (diff != 0) return diff;
+        }
+        return aLen - bLen;
+    }
+
+    private static void addTokens(String name, Set<String> out) {
+        List<String> tokens = tokenize(name);
+        out.addAll(tokens);
+        // Joined runs of trailing tokens, for queries typed without separators
+        StringBuilder joined = new StringBuilder();
+        for (int i = tokens.size() - 1; i > 0; i--) {
+            joined.insert(0, tokens.get(i));
+            if (i < tokens.size() - 1) {
+                out.add(joined.toString());
+            }
+        }
+        if (tokens.size() > 1) {
+            out.add(tokens.get(0) + joined);
+        }
+    }
+
+    /**
+     * Splits {@code s} into lowercase tokens on non-alphanumeric characters, lower-to-upper case
+     * changes and letter/digit changes.
+     */
+    static List<String> tokenize(String s) {
+        List<String> tokens = new ArrayList<>();
+        int start = -1;
+        for (int i = 0, n = s.length(); i < n; i++) {
+            char c = s.charAt(i);
+            if (!Character.isLetterOrDigit(c)) {
+                if (start >= 0) {
+                    tokens.add(s.substring(start, i).toLowerCase());
+                    start = -1;
+                }
+                continue;
+            }
+            if (start >= 0) {
+                char prev = s.charAt(i - 1);
+                if ((Character.isLowerCase(prev) && Character.isUpperCase(c))
+                        || Character.isDigit(prev) != Character.isDigit(c)) {
+                    tokens.add(s.substring(start, i).toLowerCase());
+                    start = i;
+                }
+            } else {
+                start = i;
+            }
+        }
+        if (start >= 0) {
+            tokens.add(s.substring(start).toLowerCase());
+        }
+        return tokens;
+    }
+
+    /** Growable list of ascending entry ordinals. */
+    private static class IntList {
+        private int[] mValues = new int[4];
+        private int mSize;
+
+        void add(int value) {
+            if (mSize == mValues.length) {
+                mValues = Arrays.copyOf(mValues, mSize * 2);
+            }
+            mValues[mSize++] = value;
+        }
+
+        int[] toArray() {
+            return Arrays.copyOf(mValues, mSize);
+        }
+    }
+}
@@ -0,0 +1,185 @@
+/*
+ * Copyright (C) 2025 DefaultLauncher Contributors
+ *
+ * This file is part of DefaultLauncher.
+ *
+ * DefaultLauncher is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * DefaultLauncher is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with DefaultLauncher. If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.android.launcher3.icons.pack;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteException;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.WorkerThread;
+
+import com.android.launcher3.LauncherFiles;
+import com.android.launcher3.icons.pack.PerAppIconOverrideManager.IconOverride;
+import com.android.launcher3.util.NoLocaleSQLiteHelper;
+
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * Persistent store for {@link PerAppIconOverrideManager}, one row per component and surface.
+ *
+ * Unlike the icon caches this holds user choices, so it is never dropped: a change touches a
+ * single row, and everything is read back in one query at startup. On creation it imports the
+ * overrides from the JSON SharedPreferences file used before, which is cleared once the
+ * database is in place.
+ */
+public class IconOverrideDB extends NoLocaleSQLiteHelper {
+
+    private static final String TAG = "IconOverrideDB";
+    private static final int DB_VERSION = 1;
+
+    /** Overrides shown on the home screen. */
+    public static final int SURFACE_HOME = 0;
+    /** Overrides shown in the app drawer. */
+    public static final int SURFACE_DRAWER = 1;
+
+    public static final String TABLE_NAME = "icon_overrides";
+    public static final String COLUMN_COMPONENT = "componentName";
+    public static final String COLUMN_SURFACE = "surface";
+    public static final String COLUMN_PACK = "pack";
+    public static final String COLUMN_DRAWABLE = "drawable";
+    public static final String COLUMN_SHAPE = "shape";
+    public static final String COLUMN_SIZE = "size";
+    public static final String COLUMN_ADAPTIVE = "adaptive";
+
+    private static final String[] READ_COLUMNS = { COLUMN_COMPONENT, COLUMN_SURFACE,
+            COLUMN_PACK, COLUMN_DRAWABLE, COLUMN_SHAPE, COLUMN_SIZE, COLUMN_ADAPTIVE };
+
+    private final SharedPreferences mLegacyPrefs;
+
+    public IconOverrideDB(Context context, SharedPreferences legacyPrefs) {
+        super(context, LauncherFiles.ICON_OVERRIDES_DB, DB_VERSION);
+        mLegacyPrefs = legacyPrefs;
+    }
+
+    @Override
+    public void onCreate(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE IF NOT EXISTS " + TABLE_NAME + " ("
+                + COLUMN_COMPONENT + " TEXT NOT NULL, "
+                + COLUMN_SURFACE + " INTEGER NOT NULL, "
+                + COLUMN_PACK + " TEXT NOT NULL, "
+                + COLUMN_DRAWABLE + " TEXT NOT NULL, "
+                + COLUMN_SHAPE + " TEXT NOT NULL, "
+                + COLUMN_SIZE + " TEXT NOT NULL, "
+                + COLUMN_ADAPTIVE + " TEXT NOT NULL, "
+                + "PRIMARY KEY (" + COLUMN_COMPONENT + ", " + COLUMN_SURFACE + "));");
+
+        importLegacy(db, SURFACE_HOME, PerAppIconOverrideManager.fromJson(
+                mLegacyPrefs.getString(PerAppIconOverrideManager.KEY_HOME, "{}")));
+        importLegacy(db, SURFACE_DRAWER, PerAppIconOverrideManager.fromJson(
+                mLegacyPrefs.getString(PerAppIconOverrideManager.KEY_DRAWER, "{}")));
+    }
+
+    @Override
+    public void onOpen(SQLiteDatabase db) {
+        super.onOpen(db);
+        // The overrides were imported by onCreate, now committed
+        if (!mLegacyPrefs.getAll().isEmpty()) {
+            mLegacyPrefs.edit().clear().apply();
+        }
+    }
+
+    @Override
+    public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) { }
+
+    private static void importLegacy(SQLiteDatabase db, int surface,
+            Map<String, IconOverride> overrides) {
+        for (Map.Entry<String, IconOverride> e : overrides.entrySet()) {
+            db.insertWithOnConflict(TABLE_NAME, null,
+                    toValues(e.getKey(), surface, e.getValue()),
+                    SQLiteDatabase.CONFLICT_REPLACE);
+        }
+    }
+
+    /** Reads the overrides of both surfaces in one query, keyed by flattened component. */
+    @WorkerThread
+    public void loadAll(@NonNull Map<String, IconOverride> outHome,
+            @NonNull Map<String, IconOverride> outDrawer) {
+        try (Cursor c = getReadableDatabase().query(TABLE_NAME, READ_COLUMNS,
+                null, null, null, null, null)) {
+            while (c.moveToNext()) {
+                IconOverride override = new IconOverride(c.getString(2), c.getString(3),
+                        c.getString(4), c.getString(5), c.getString(6));
+                (c.getInt(1) == SURFACE_HOME ? outHome : outDrawer)
+                        .put(c.getString(0), override);
+            }
+        } catch (SQLiteException e) {
+            Log.e(TAG, "Failed to read icon overrides", e);
+        }
+    }
+
+    /** Inserts or replaces the override of one component. */
+    @WorkerThread
+    public void put(@NonNull String component, int surface, @NonNull IconOverride override) {
+        try {
+            getWritableDatabase().insertWithOnConflict(TABLE_NAME, null,
+                    toValues(component, surface, override), SQLiteDatabase.CONFLICT_REPLACE);
+        } catch (SQLiteException e) {
+            Log.e(TAG, "Failed to write icon override", e);
+        }
+    }
+
+    /** Removes the overrides of the given components on the given surface. */
+    @WorkerThread
+    public void remove(@NonNull Collection<String> components, int surface) {
+        try {
+            SQLiteDatabase db = getWritableDatabase();
+            db.beginTransaction();
+            try {
+                for (String component : components) {
+                    db.delete(TABLE_NAME, COLUMN_COMPONENT + " = ? AND " + COLUMN_SURFACE + " = ?",
+                            new String[] { component, Integer.toString(surface) });
+                }
+                db.setTransactionSuccessful();
+            } finally {
+                db.endTransaction();
+            }
+        } catch (SQLiteException e) {
+            Log.e(TAG, "Failed to remove icon overrides", e);
+        }
+    }
+
+    /** Removes every override of one surface. */
+    @WorkerThread
+    public void clear(int surface) {
+        try {
+            getWritableDatabase().delete(TABLE_NAME, COLUMN_SURFACE + " = ?",
+                    new String[] { Integer.toString(surface) });
+        } catch (SQLiteException e) {
+            Log.e(TAG, "Failed to clear icon overrides", e);
+        }
+    }
+
+    private static ContentValues toValues(String component, int surface, IconOverride override) {
+        ContentValues cv = new ContentValues();
+        cv.put(COLUMN_COMPONENT, component);
+        cv.put(COLUMN_SURFACE, surface);
+        cv.put(COLUMN_PACK, override.packPackage);
+        cv.put(COLUMN_DRAWABLE, override.drawableName);
+        cv.put(COLUMN_SHAPE, override.shapeKey);
+        cv.put(COLUMN_SIZE, override.sizeScale);
+        cv.put(COLUMN_ADAPTIVE, override.adaptiveShape);
+        return cv;
+    }
+}
@@ -19,92 +19,169 @@
 package com.android.launcher3.icons.pack;
 
 import android.content.ComponentName;
+import android.content.pm.PackageInfo;
 import android.content.pm.PackageManager;
 import android.content.res.Resources;
 import android.content.res.XmlResourceParser;
 import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
 import android.graphics.Canvas;
-import android.graphics.Paint;
-import android.graphics.PorterDuff;
-import android.graphics.PorterDuffXfermode;
 import android.graphics.drawable.AdaptiveIconDrawable;
 import android.graphics.drawable.BitmapDrawable;
 import android.graphics.drawable.Drawable;
 import android.util.Log;
+import android.util.TypedValue;
 
 import androidx.annotation.Nullable;
 
+import com.android.launcher3.icons.NormalizationCache;
+
 import org.xmlpull.v1.XmlPullParser;
 import org.xmlpull.v1.XmlPullParserException;
 import org.xmlpull.v1.XmlPullParserFactory;
 
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.Calendar;
-import java.util.HashMap;
-import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
-import java.util.Map;
-import java.util.Random;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.ToIntFunction;
 
 /**
  * Model representing a parsed ADW-format icon pack.
- * Lazily parses appfilter.xml on first use.
+ * Lazily loads appfilter.xml on first use, through a persisted {@link AppFilterIndex}.
  */
 public class IconPack {
 
     private static final String TAG = "IconPack";
 
+    private static final String INDEX_SUFFIX = ".idx";
+    private static final String ICONS_SUFFIX = ".icons";
+
     public final String packageName;
     public final CharSequence label;
 
-    // Parsed from appfilter.xml
-    private Map<ComponentName, String> mComponentToDrawable;
-    private final List<Bitmap> mBackImages = new ArrayList<>();
-    private Bitmap mMaskImage;
-    private Bitmap mFrontImage;
-    private float mScale = 1.0f;
-    private Map<ComponentName, String> mCalendarPrefixes;
+    @Nullable private final File mIndexDir;
+
+    // Parsed from appfilter.xml (via the persisted binary index when it is up to date)
+    private AppFilterIndex mIndex;
+    // Composes iconback/iconmask/iconupon fallbacks, or null if the pack defines none
+    @Nullable private volatile FallbackMaskRenderer mFallbackRenderer;
     private boolean mParsed = false;
     private Boolean mIsAdaptive = null;
+    // Installed pack version, part of the normalization cache key of its drawables
+    private volatile long mVersionCode = -1;
+    private volatile long mLastUpdateTime;
 
-    private final Random mRandom = new Random();
+    // The pack's resources, and drawable name to resource id (0 when missing). Resolved ids of
+    // mapped drawables are persisted in the index, so only other names cost a getIdentifier.
+    private volatile Resources mResources;
+    private final ConcurrentHashMap<String, Integer> mResIds = new ConcurrentHashMap<>();
+
+    // Categories and token index of every icon, built on first use. Own lock so building it
+    // never blocks appfilter lookups, which synchronize on this.
+    private final Object mIconIndexLock = new Object();
+    private volatile IconEntryIndex mIconIndex;
 
     public IconPack(String packageName, CharSequence label) {
+        this(packageName, label, null);
+    }
+
+    /**
+     * @param indexDir directory for the persisted appfilter index, or null to always parse
+     *                 appfilter.xml
+     */
+    public IconPack(String packageName, CharSequence label, @Nullable File indexDir) {
         this.packageName = packageName;
         this.label = label;
+        mIndexDir = indexDir;
+    }
+
+    /** Returns the file the appfilter index of the given pack is persisted to. */
+    static File getIndexFile(File indexDir, String packageName) {
+        return new File(indexDir, packageName + INDEX_SUFFIX);
     }
 
-    /** Parse appfilter.xml on first use. Thread-safe. */
+    /** Returns the file the icon entry index of the given pack is persisted to. */
+    static File getIconsFile(File indexDir, String packageName) {
+        return new File(indexDir, packageName + ICONS_SUFFIX);
+    }
+
+    /**
+     * Load the appfilter index on first use. Thread-safe.
+     *
+     * The index is memory-mapped from disk when it matches the installed pack version;
+     * otherwise appfilter.xml is parsed once and the resulting index is persisted.
+     */
     public synchronized void ensureParsed(PackageManager pm) {
         if (mParsed) return;
-        mComponentToDrawable = new HashMap<>();
-        mCalendarPrefixes = new HashMap<>();
 
+        long versionCode;
+        long lastUpdateTime;
+        Resources res;
         try {
-            Resources res = pm.getResourcesForApplication(packageName);
+            PackageInfo info = pm.getPackageInfo(packageName, 0);
+            versionCode = info.getLongVersionCode();
+            lastUpdateTime = info.lastUpdateTime;
+            res = pm.getResourcesForApplication(packageName);
+            mResources = res;
+        } catch (PackageManager.NameNotFoundException e) {
+            Log.e(TAG, "Icon pack not found: " + packageName, e);
+            mIndex = new AppFilterIndex.Builder().build(0, 0);
+            mParsed = true;
+            return;
+        }
+
+        File indexFile = mIndexDir != null ? getIndexFile(mIndexDir, packageName) : null;
+        AppFilterIndex index = indexFile != null
+                ? AppFilterIndex.load(indexFile, versionCode, lastUpdateTime) : null;
+        if (index == null) {
+            AppFilterIndex.Builder builder = new AppFilterIndex.Builder();
             // Try compiled XML resource first (res/xml/appfilter.xml)
-            boolean parsed = tryParseXmlResource(res);
+            boolean parsed = tryParseXmlResource(res, builder);
             if (!parsed) {
                 // Fall back to assets/appfilter.xml
-                tryParseAssets(pm, res);
+                tryParseAssets(res, builder);
             }
-        } catch (PackageManager.NameNotFoundException e) {
-            Log.e(TAG, "Icon pack not found: " + packageName, e);
+            final Resources packRes = res;
+            ToIntFunction<String> resolver =
+                    name -> packRes.getIdentifier(name, "drawable", packageName);
+            index = indexFile != null
+                    ? builder.buildAndWrite(indexFile, versionCode, lastUpdateTime, resolver)
+                    : builder.build(versionCode, lastUpdateTime, resolver);
+        }
+        mIndex = index;
+        mVersionCode = versionCode;
+        mLastUpdateTime = lastUpdateTime;
+
+        List<Bitmap> backs = new ArrayList<>();
+        for (String name : index.backNames) {
+            Bitmap bmp = loadBitmapFromDrawableName(res, name);
+            if (bmp != null) {
+                backs.add(bmp);
+            }
+        }
+        Bitmap mask = index.maskName != null
+                ? loadBitmapFromDrawableName(res, index.maskName) : null;
+        Bitmap upon = index.uponName != null
+                ? loadBitmapFromDrawableName(res, index.uponName) : null;
+        if (!backs.isEmpty() || mask != null) {
+            mFallbackRenderer = new FallbackMaskRenderer(backs, mask, upon, index.scale);
         }
 
         mParsed = true;
     }
 
-    private boolean tryParseXmlResource(Resources res) {
+    private boolean tryParseXmlResource(Resources res, AppFilterIndex.Builder builder) {
         int xmlId = res.getIdentifier("appfilter", "xml", packageName);
         if (xmlId == 0) return false;
 
         try (XmlResourceParser parser = res.getXml(xmlId)) {
-            parseAppFilter(parser, res);
+            parseAppFilter(parser, builder);
             return true;
         } catch (Exception e) {
             Log.w(TAG, "Failed to parse res/xml/appfilter.xml for " + packageName, e);
@@ -112,15 +189,12 @@ public class IconPack {
         }
     }
 
-    private void tryParseAssets(PackageManager pm, Resources res) {
-        try {
-            Resources packRes = pm.getResourcesForApplication(packageName);
-            InputStream is = packRes.getAssets().open("appfilter.xml");
+    private void tryParseAssets(Resources res, AppFilterIndex.Builder builder) {
+        try (InputStream is = res.getAssets().open("appfilter.xml")) {
             XmlPullParserFactory factory = XmlPullParserFactory.newInstance();
             XmlPullParser parser = factory.newPullParser();
             parser.setInput(is, "UTF-8");
-            parseAppFilter(parser, res);
-            is.close();
+            parseAppFilter(parser, builder);
         } catch (IOException e) {
             Log.w(TAG, "No appfilter.xml in assets for " + packageName);
         } catch (Exception e) {
@@ -128,7 +202,7 @@ public class IconPack {
         }
     }
 
-    private void parseAppFilter(XmlPullParser parser, Resources res)
+    private void parseAppFilter(XmlPullParser parser, AppFilterIndex.Builder builder)
             throws XmlPullParserException, IOException {
         int eventType = parser.getEventType();
         while (eventType != XmlPullParser.END_DOCUMENT) {
@@ -136,22 +210,22 @@ public class IconPack {
                 String tag = parser.getName();
                 switch (tag) {
                     case "item":
-                        parseItem(parser);
+                        parseItem(parser, builder);
                         break;
                     case "calendar":
-                        parseCalendar(parser);
+                        parseCalendar(parser, builder);
                         break;
                     case "iconback":
-                        parseIconBack(parser, res);
+                        parseIconBack(parser, builder);
                         break;
                     case "iconmask":
-                        parseIconMask(parser, res);
+                        parseIconMask(parser, builder);
                         break;
                     case "iconupon":
-                        parseIconUpon(parser, res);
+                        parseIconUpon(parser, builder);
                         break;
                     case "scale":
-                        parseScale(parser);
+                        parseScale(parser, builder);
                         break;
                 }
             }
@@ -159,63 +233,60 @@ public class IconPack {
         }
     }
 
-    private void parseItem(XmlPullParser parser) {
+    private void parseItem(XmlPullParser parser, AppFilterIndex.Builder builder) {
         String component = parser.getAttributeValue(null, "component");
         String drawable = parser.getAttributeValue(null, "drawable");
         if (component == null || drawable == null) return;
 
         ComponentName cn = parseComponentName(component);
         if (cn != null) {
-            mComponentToDrawable.put(cn, drawable);
+            builder.addItem(cn, drawable);
         }
     }
 
-    private void parseCalendar(XmlPullParser parser) {
+    private void parseCalendar(XmlPullParser parser, AppFilterIndex.Builder builder) {
         String component = parser.getAttributeValue(null, "component");
         String prefix = parser.getAttributeValue(null, "prefix");
         if (component == null || prefix == null) return;
 
         ComponentName cn = parseComponentName(component);
         if (cn != null) {
-            mCalendarPrefixes.put(cn, prefix);
+            builder.addCalendar(cn, prefix);
         }
     }
 
-    private void parseIconBack(XmlPullParser parser, Resources res) {
+    private void parseIconBack(XmlPullParser parser, AppFilterIndex.Builder builder) {
         for (int i = 0; ; i++) {
             String attr = parser.getAttributeValue(null, "img" + (i == 0 ? "" : i));
             if (attr == null) {
                 attr = parser.getAttributeValue(null, "img" + (i + 1));
                 if (attr == null) break;
             }
-            Bitmap bmp = loadBitmapFromDrawableName(res, attr);
-            if (bmp != null) {
-                mBackImages.add(bmp);
-            }
+            builder.addBack(attr);
         }
     }
 
-    private void parseIconMask(XmlPullParser parser, Resources res) {
+    private void parseIconMask(XmlPullParser parser, AppFilterIndex.Builder builder) {
         String attr = parser.getAttributeValue(null, "img1");
         if (attr == null) attr = parser.getAttributeValue(null, "img");
         if (attr != null) {
-            mMaskImage = loadBitmapFromDrawableName(res, attr);
+            builder.setMask(attr);
         }
     }
 
-    private void parseIconUpon(XmlPullParser parser, Resources res) {
+    private void parseIconUpon(XmlPullParser parser, AppFilterIndex.Builder builder) {
         String attr = parser.getAttributeValue(null, "img1");
         if (attr == null) attr = parser.getAttributeValue(null, "img");
         if (attr != null) {
-            mFrontImage = loadBitmapFromDrawableName(res, attr);
+            builder.setUpon(attr);
         }
     }
 
-    private void parseScale(XmlPullParser parser) {
+    private void parseScale(XmlPullParser parser, AppFilterIndex.Builder builder) {
         String factor = parser.getAttributeValue(null, "factor");
         if (factor != null) {
             try {
-                mScale = Float.parseFloat(factor);
+                builder.setScale(Float.parseFloat(factor));
             } catch (NumberFormatException e) {
                 // keep default 1.0
             }
@@ -224,7 +295,7 @@ public class IconPack {
 
     @Nullable
     private Bitmap loadBitmapFromDrawableName(Resources res, String drawableName) {
-        int id = res.getIdentifier(drawableName, "drawable", packageName);
+        int id = getDrawableId(res, drawableName);
         if (id == 0) return null;
         try {
             Drawable d = res.getDrawable(id, null);
@@ -298,18 +369,15 @@ public class IconPack {
      */
     public List<Drawable> getPreviewIcons(PackageManager pm) {
         List<Drawable> previews = new ArrayList<>();
-        if (mComponentToDrawable == null) return previews;
+        if (mIndex == null) return previews;
 
         for (ComponentName[] category : PREVIEW_COMPONENTS) {
             if (previews.size() >= 5) break;
             for (ComponentName cn : category) {
-                String drawableName = mComponentToDrawable.get(cn);
-                if (drawableName != null) {
-                    Drawable d = loadDrawableByName(pm, drawableName);
-                    if (d != null) {
-                        previews.add(d);
-                        break; // got one for this category, next category
-                    }
+                Drawable d = loadMappedDrawable(cn, pm);
+                if (d != null) {
+                    previews.add(d);
+                    break; // got one for this category, next category
                 }
             }
         }
@@ -320,8 +388,17 @@ public class IconPack {
     @Nullable
     public Drawable getIconForComponent(ComponentName cn, PackageManager pm) {
         ensureParsed(pm);
-        String drawableName = mComponentToDrawable.get(cn);
+        return loadMappedDrawable(cn, pm);
+    }
+
+    @Nullable
+    private Drawable loadMappedDrawable(ComponentName cn, PackageManager pm) {
+        String drawableName = mIndex.getDrawable(cn);
         if (drawableName == null) return null;
+        int resId = mIndex.getDrawableResId(cn);
+        if (resId != AppFilterIndex.RES_ID_UNKNOWN) {
+            mResIds.putIfAbsent(drawableName, resId);
+        }
         return loadDrawableByName(pm, drawableName);
     }
 
@@ -329,14 +406,14 @@ public class IconPack {
     @Nullable
     public String getDrawableNameForComponent(ComponentName cn, PackageManager pm) {
         ensureParsed(pm);
-        return mComponentToDrawable.get(cn);
+        return mIndex.getDrawable(cn);
     }
 
     /** Get calendar icon for today's date, or null. */
     @Nullable
     public Drawable getCalendarIcon(ComponentName cn, PackageManager pm) {
         ensureParsed(pm);
-        String prefix = mCalendarPrefixes.get(cn);
+        String prefix = mIndex.getCalendarPrefix(cn);
         if (prefix == null) return null;
 
         int day = Calendar.getInstance().get(Calendar.DAY_OF_MONTH);
@@ -346,7 +423,7 @@ public class IconPack {
 
     /** Returns true if this pack defines iconback/iconmask for fallback masking. */
     public boolean hasFallbackMask() {
-        return !mBackImages.isEmpty() || mMaskImage != null;
+        return mFallbackRenderer != null;
     }
 
     /**
@@ -371,44 +448,16 @@ public class IconPack {
     /**
      * Apply iconback/iconmask/iconupon fallback masking to an unmapped app icon.
      * Returns the masked icon as a BitmapDrawable, or null if no masking is available.
+     *
+     * The iconback is picked from {@code cn}, so an app always gets the same one; without a
+     * component the first iconback is used.
      */
     @Nullable
-    public Drawable applyFallbackMask(Drawable original, int iconSize) {
-        if (!hasFallbackMask() || original == null) return null;
-
-        Bitmap result = Bitmap.createBitmap(iconSize, iconSize, Bitmap.Config.ARGB_8888);
-        Canvas canvas = new Canvas(result);
-
-        // 1. Draw background (iconback) — pick one at random
-        if (!mBackImages.isEmpty()) {
-            Bitmap back = mBackImages.get(mRandom.nextInt(mBackImages.size()));
-            canvas.drawBitmap(back, null,
-                    new android.graphics.Rect(0, 0, iconSize, iconSize), null);
-        }
-
-        // 2. Draw scaled original icon centered
-        Bitmap originalBmp = drawableToBitmap(original);
-        int scaledSize = Math.round(iconSize * mScale);
-        int offset = (iconSize - scaledSize) / 2;
-        canvas.drawBitmap(originalBmp, null,
-                new android.graphics.Rect(offset, offset,
-                        offset + scaledSize, offset + scaledSize), null);
-
-        // 3. Apply mask via DST_IN
-        if (mMaskImage != null) {
-            Paint maskPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
-            maskPaint.setXfermode(new PorterDuffXfermode(PorterDuff.Mode.DST_OUT));
-            canvas.drawBitmap(mMaskImage, null,
-                    new android.graphics.Rect(0, 0, iconSize, iconSize), maskPaint);
-        }
-
-        // 4. Draw overlay (iconupon) on top
-        if (mFrontImage != null) {
-            canvas.drawBitmap(mFrontImage, null,
-                    new android.graphics.Rect(0, 0, iconSize, iconSize), null);
-        }
-
-        return new BitmapDrawable(null, result);
+    public Drawable applyFallbackMask(Drawable original, int iconSize,
+            @Nullable ComponentName cn) {
+        FallbackMaskRenderer renderer = mFallbackRenderer;
+        if (renderer == null || original == null) return null;
+        return new BitmapDrawable(null, renderer.render(original, iconSize, cn));
     }
 
     /** Data class for a category of icons within this pack. */
@@ -439,22 +488,45 @@ public class IconPack {
      * category from appfilter.xml component mappings.
      */
     public List<IconCategory> getAllIcons(PackageManager pm) {
+        return getIconIndex(pm).getCategories();
+    }
+
+    /**
+     * Returns the token index over {@link #getAllIcons}, built once per instance. The index is
+     * persisted next to the appfilter index and reused while the pack version is unchanged.
+     */
+    public IconEntryIndex getIconIndex(PackageManager pm) {
+        IconEntryIndex index = mIconIndex;
+        if (index != null) return index;
         ensureParsed(pm);
+        synchronized (mIconIndexLock) {
+            if (mIconIndex != null) return mIconIndex;
+            long versionCode = mVersionCode;
+            long lastUpdateTime = mLastUpdateTime;
+            File file = mIndexDir != null && versionCode >= 0
+                    ? getIconsFile(mIndexDir, packageName) : null;
+            index = file != null ? IconEntryIndex.load(file, versionCode, lastUpdateTime) : null;
+            if (index == null) {
+                index = IconEntryIndex.build(parseAllIcons(pm));
+                if (file != null) {
+                    index.write(file, versionCode, lastUpdateTime);
+                }
+            }
+            mIconIndex = index;
+            return index;
+        }
+    }
 
+    private List<IconCategory> parseAllIcons(PackageManager pm) {
         List<IconCategory> result = tryParseDrawableXml(pm);
         if (result != null && !result.isEmpty()) {
             return result;
         }
 
         // Fallback: collect unique drawable names from appfilter.xml mappings
-        Set<String> seen = new LinkedHashSet<>();
         List<IconEntry> entries = new ArrayList<>();
-        if (mComponentToDrawable != null) {
-            for (String drawableName : mComponentToDrawable.values()) {
-                if (seen.add(drawableName)) {
-                    entries.add(new IconEntry(drawableName, humanizeDrawableName(drawableName)));
-                }
-            }
+        for (String drawableName : mIndex.getMappedDrawableNames()) {
+            entries.add(new IconEntry(drawableName, humanizeDrawableName(drawableName)));
         }
         result = new ArrayList<>();
         if (!entries.isEmpty()) {
@@ -466,7 +538,7 @@ public class IconPack {
     @Nullable
     private List<IconCategory> tryParseDrawableXml(PackageManager pm) {
         try {
-            Resources res = pm.getResourcesForApplication(packageName);
+            Resources res = getResources(pm);
             int xmlId = res.getIdentifier("drawable", "xml", packageName);
             if (xmlId == 0) return null;
 
@@ -545,13 +617,67 @@ public class IconPack {
         return loadDrawableByName(pm, drawableName);
     }
 
+    /**
+     * Load a drawable of this pack as a bitmap of roughly {@code sizePx} square, for previews.
+     * Bitmap resources are subsampled while decoding, so large PNGs are never decoded at full
+     * resolution; other drawables (vectors, adaptive icons) are drawn at {@code sizePx}.
+     */
+    @Nullable
+    public Bitmap loadThumbnail(PackageManager pm, String drawableName, int sizePx) {
+        ensureParsed(pm);
+        try {
+            Resources res = getResources(pm);
+            int id = getDrawableId(res, drawableName);
+            if (id == 0) return null;
+
+            TypedValue value = new TypedValue();
+            res.getValue(id, value, true);
+            if (value.string != null && !value.string.toString().endsWith(".xml")) {
+                BitmapFactory.Options opts = new BitmapFactory.Options();
+                opts.inScaled = false;
+                opts.inJustDecodeBounds = true;
+                BitmapFactory.decodeResource(res, id, opts);
+                opts.inSampleSize = getSampleSize(opts.outWidth, opts.outHeight, sizePx);
+                opts.inJustDecodeBounds = false;
+                Bitmap bitmap = BitmapFactory.decodeResource(res, id, opts);
+                if (bitmap != null) return bitmap;
+            }
+
+            Drawable d = res.getDrawable(id, null);
+            if (d == null) return null;
+            Bitmap bitmap = Bitmap.createBitmap(sizePx, sizePx, Bitmap.Config.ARGB_8888);
+            d.setBounds(0, 0, sizePx, sizePx);
+            d.draw(new Canvas(bitmap));
+            return bitmap;
+        } catch (PackageManager.NameNotFoundException | Resources.NotFoundException e) {
+            Log.w(TAG, "Failed to load thumbnail " + drawableName + " from " + packageName, e);
+            return null;
+        }
+    }
+
+    /** Largest power of two that keeps both sides of the decoded bitmap at least sizePx. */
+    private static int getSampleSize(int width, int height, int sizePx) {
+        int sampleSize = 1;
+        if (width <= 0 || height <= 0 || sizePx <= 0) return sampleSize;
+        while (width / (sampleSize * 2) >= sizePx && height / (sampleSize * 2) >= sizePx) {
+            sampleSize *= 2;
+        }
+        return sampleSize;
+    }
+
     @Nullable
     public Drawable loadDrawableByName(PackageManager pm, String drawableName) {
         try {
-            Resources res = pm.getResourcesForApplication(packageName);
-            int id = res.getIdentifier(drawableName, "drawable", packageName);
+            Resources res = getResources(pm);
+            int id = getDrawableId(res, drawableName);
             if (id != 0) {
-                return res.getDrawable(id, null);
+                Drawable d = res.getDrawable(id, null);
+                long versionCode = mVersionCode;
+                if (versionCode >= 0 && !(d instanceof AdaptiveIconDrawable)) {
+                    NormalizationCache.tagSource(d, NormalizationCache.iconPackKey(
+                            packageName, versionCode, mLastUpdateTime, drawableName));
+                }
+                return d;
             }
         } catch (PackageManager.NameNotFoundException e) {
             Log.w(TAG, "Icon pack resources not found: " + packageName, e);
@@ -559,6 +685,27 @@ public class IconPack {
         return null;
     }
 
+    /** The pack's resources, fetched once and kept for the lifetime of this instance. */
+    private Resources getResources(PackageManager pm)
+            throws PackageManager.NameNotFoundException {
+        Resources res = mResources;
+        if (res == null) {
+            res = pm.getResourcesForApplication(packageName);
+            mResources = res;
+        }
+        return res;
+    }
+
+    /** Resource id of the named drawable, or 0. Names are only searched for on first use. */
+    private int getDrawableId(Resources res, String drawableName) {
+        Integer id = mResIds.get(drawableName);
+        if (id == null) {
+            id = res.getIdentifier(drawableName, "drawable", packageName);
+            mResIds.put(drawableName, id);
+        }
+        return id;
+    }
+
     private static Bitmap drawableToBitmap(Drawable drawable) {
         if (drawable instanceof BitmapDrawable) {
             Bitmap bmp = ((BitmapDrawable) drawable).getBitmap();
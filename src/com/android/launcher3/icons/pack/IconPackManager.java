@@ -28,11 +28,13 @@ import android.graphics.drawable.Drawable;
 import android.util.Log;
 
 import androidx.annotation.Nullable;
+import androidx.annotation.WorkerThread;
 
 import com.android.launcher3.LauncherPrefs;
 import com.android.launcher3.dagger.ApplicationContext;
 import com.android.launcher3.dagger.LauncherAppSingleton;
 
+import java.io.File;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
@@ -54,8 +56,11 @@ public class IconPackManager {
             "com.novalauncher.THEME",
     };
 
+    private static final String INDEX_DIR = "icon_pack_index";
+
     private final Context mContext;
     private final LauncherPrefs mPrefs;
+    private final File mIndexDir;
 
     private Map<String, IconPack> mInstalledPacks;
     private IconPack mCurrentPack;
@@ -68,6 +73,7 @@ public class IconPackManager {
     public IconPackManager(@ApplicationContext Context context, LauncherPrefs prefs) {
         mContext = context;
         mPrefs = prefs;
+        mIndexDir = new File(context.getCacheDir(), INDEX_DIR);
 
         // Register broadcast receiver for icon pack install/uninstall/update
         IntentFilter filter = new IntentFilter();
@@ -96,7 +102,7 @@ public class IconPackManager {
                     String pkg = ri.activityInfo.packageName;
                     if (!packs.containsKey(pkg) && !pkg.equals(mContext.getPackageName())) {
                         CharSequence label = ri.loadLabel(pm);
-                        packs.put(pkg, new IconPack(pkg, label));
+                        packs.put(pkg, new IconPack(pkg, label, mIndexDir));
                     }
                 }
             } catch (Exception e) {
@@ -255,6 +261,28 @@ public class IconPackManager {
         mPreviewCache = null;
     }
 
+    /**
+     * Delete the persisted appfilter and icon entry indexes of an uninstalled pack.
+     *
+     * @return true if the package had an index, i.e. it was parsed as an icon pack before
+     */
+    @WorkerThread
+    boolean removePackIndex(String packageName) {
+        File file = IconPack.getIndexFile(mIndexDir, packageName);
+        boolean hadIndex = file.exists();
+        if (hadIndex && !file.delete()) {
+            Log.w(TAG, "Failed to delete appfilter index for " + packageName);
+        }
+        File iconsFile = IconPack.getIconsFile(mIndexDir, packageName);
+        if (iconsFile.exists()) {
+            hadIndex = true;
+            if (!iconsFile.delete()) {
+                Log.w(TAG, "Failed to delete icon entry index for " + packageName);
+            }
+        }
+        return hadIndex;
+    }
+
     Context getContext() {
         return mContext;
     }
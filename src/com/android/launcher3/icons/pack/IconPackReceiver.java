@@ -18,6 +18,8 @@
  */
 package com.android.launcher3.icons.pack;
 
+import static com.android.launcher3.util.Executors.MODEL_EXECUTOR;
+
 import android.content.BroadcastReceiver;
 import android.content.Context;
 import android.content.Intent;
@@ -25,6 +27,7 @@ import android.content.Intent;
 import com.android.launcher3.LauncherAppState;
 import com.android.launcher3.LauncherPrefs;
 import com.android.launcher3.icons.DrawerIconResolver;
+import com.android.launcher3.settings.IconThumbnailCache;
 
 /**
  * Handles icon pack install/uninstall/update broadcasts.
@@ -44,12 +47,26 @@ public class IconPackReceiver extends BroadcastReceiver {
                 ? intent.getData().getSchemeSpecificPart() : null;
         if (pkg == null) return;
 
+        boolean removed = Intent.ACTION_PACKAGE_REMOVED.equals(intent.getAction())
+                && !intent.getBooleanExtra(Intent.EXTRA_REPLACING, false);
+        if (removed) {
+            // The installed-pack list may no longer contain a removed pack, so decide from its
+            // persisted index instead; file and database I/O stays off the main thread
+            Context appContext = context.getApplicationContext();
+            MODEL_EXECUTOR.execute(() -> {
+                if (mManager.removePackIndex(pkg)) {
+                    DrawerIconResolver.getInstance().removeIconsForPack(appContext, pkg);
+                }
+            });
+        }
+
         boolean isIconPack = mManager.isIconPack(pkg);
         boolean isCurrentPack = pkg.equals(mManager.getCurrentPackId());
 
         if (isIconPack || isCurrentPack) {
             mManager.invalidate();
             DrawerIconResolver.getInstance().invalidate();
+            IconThumbnailCache.getInstance().removePack(pkg);
 
             // If the active pack was uninstalled, revert to system default
             if (isCurrentPack
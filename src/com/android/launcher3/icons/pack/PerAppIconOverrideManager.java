@@ -20,37 +20,55 @@ package com.android.launcher3.icons.pack;
 
 import android.content.ComponentName;
 import android.content.Context;
-import android.content.SharedPreferences;
 import android.util.Log;
 
 import androidx.annotation.Nullable;
+import androidx.annotation.WorkerThread;
+
+import com.android.launcher3.LauncherPrefs;
+import com.android.launcher3.util.Executors;
 
 import org.json.JSONException;
 import org.json.JSONObject;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 /**
- * Manages per-app icon overrides stored in SharedPreferences as JSON maps.
+ * Manages per-app icon overrides, stored in {@link IconOverrideDB}.
  * Supports independent home screen and app drawer overrides.
  *
  * Each override stores an icon pack package name, optional specific drawable name,
  * and optional shape/size/adaptive overrides for per-app rendering customization.
+ *
+ * Reads go through an immutable {@link Snapshot} published on every change, so lookups from
+ * icon binds never lock or allocate. Writes are serialized and copy the affected map, then
+ * persist only the changed rows in the background.
  */
 public class PerAppIconOverrideManager {
 
     private static final String TAG = "PerAppIconOverride";
+    // Legacy JSON storage, imported by IconOverrideDB
     private static final String PREFS_FILE = "per_app_icon_overrides";
-    private static final String KEY_HOME = "home_overrides";
-    private static final String KEY_DRAWER = "drawer_overrides";
+    static final String KEY_HOME = "home_overrides";
+    static final String KEY_DRAWER = "drawer_overrides";
 
     private static volatile PerAppIconOverrideManager sInstance;
 
-    private final SharedPreferences mPrefs;
-    private Map<String, IconOverride> mHomeOverrides;
-    private Map<String, IconOverride> mDrawerOverrides;
+    // Value of getOverridesHash() with no overrides
+    private static final int EMPTY_HASH = 17;
+
+    private final IconOverrideDB mDb;
+    private final LauncherPrefs mPrefs;
+    // Loaded lazily; replaced, never mutated, under the instance lock
+    @Nullable private volatile Snapshot mSnapshot;
 
     /**
      * Represents a per-app icon override: which pack and which drawable to use,
@@ -191,8 +209,10 @@ public class PerAppIconOverrideManager {
     }
 
     private PerAppIconOverrideManager(Context context) {
-        mPrefs = context.getApplicationContext()
-                .getSharedPreferences(PREFS_FILE, Context.MODE_PRIVATE);
+        Context appContext = context.getApplicationContext();
+        mDb = new IconOverrideDB(appContext,
+                appContext.getSharedPreferences(PREFS_FILE, Context.MODE_PRIVATE));
+        mPrefs = LauncherPrefs.get(appContext);
     }
 
     public static PerAppIconOverrideManager getInstance(Context context) {
@@ -208,140 +228,194 @@ public class PerAppIconOverrideManager {
 
     /** Get the home screen override for a component, or null if none set. */
     @Nullable
-    public synchronized IconOverride getHomeOverride(ComponentName cn) {
-        ensureLoaded();
-        return mHomeOverrides.get(cn.flattenToString());
+    public IconOverride getHomeOverride(ComponentName cn) {
+        return getSnapshot().home.get(cn);
     }
 
     /** Get the app drawer override for a component, or null if none set. */
     @Nullable
-    public synchronized IconOverride getDrawerOverride(ComponentName cn) {
-        ensureLoaded();
-        return mDrawerOverrides.get(cn.flattenToString());
+    public IconOverride getDrawerOverride(ComponentName cn) {
+        return getSnapshot().drawer.get(cn);
     }
 
     /** Set or remove the home screen override. Pass null to remove. */
     public synchronized void setHomeOverride(ComponentName cn,
             @Nullable IconOverride override) {
-        ensureLoaded();
+        Snapshot current = getSnapshot();
+        Map<String, IconOverride> home = new HashMap<>(current.homeByKey);
         String key = cn.flattenToString();
         if (override == null) {
-            mHomeOverrides.remove(key);
+            home.remove(key);
         } else {
-            mHomeOverrides.put(key, override);
+            home.put(key, override);
         }
-        persist(KEY_HOME, mHomeOverrides);
+        publish(home, current.drawerByKey);
+        persist(key, IconOverrideDB.SURFACE_HOME, override);
     }
 
     /** Set or remove the app drawer override. Pass null to remove. */
     public synchronized void setDrawerOverride(ComponentName cn,
             @Nullable IconOverride override) {
-        ensureLoaded();
+        Snapshot current = getSnapshot();
+        Map<String, IconOverride> drawer = new HashMap<>(current.drawerByKey);
         String key = cn.flattenToString();
         if (override == null) {
-            mDrawerOverrides.remove(key);
+            drawer.remove(key);
         } else {
-            mDrawerOverrides.put(key, override);
+            drawer.put(key, override);
         }
-        persist(KEY_DRAWER, mDrawerOverrides);
+        publish(current.homeByKey, drawer);
+        persist(key, IconOverrideDB.SURFACE_DRAWER, override);
     }
 
     /** Remove both home and drawer overrides for a component. */
     public synchronized void clearOverrides(ComponentName cn) {
-        ensureLoaded();
-        String key = cn.flattenToString();
-        mHomeOverrides.remove(key);
-        mDrawerOverrides.remove(key);
-        mPrefs.edit()
-                .putString(KEY_HOME, toJson(mHomeOverrides))
-                .putString(KEY_DRAWER, toJson(mDrawerOverrides))
-                .apply();
+        removeKeys(Collections.singletonList(cn.flattenToString()));
+    }
+
+    /**
+     * Removes the overrides of components that no longer exist, on both surfaces.
+     * @return true if any override was removed.
+     */
+    public synchronized boolean removeComponents(Collection<ComponentName> components) {
+        List<String> keys = new ArrayList<>(components.size());
+        for (ComponentName cn : components) {
+            keys.add(cn.flattenToString());
+        }
+        return removeKeys(keys);
+    }
+
+    /**
+     * Removes the overrides of every component of an uninstalled package, on both surfaces.
+     * @return true if any override was removed.
+     */
+    public synchronized boolean removePackage(String packageName) {
+        Snapshot current = getSnapshot();
+        Set<ComponentName> components = new HashSet<>();
+        for (ComponentName cn : current.home.keySet()) {
+            if (cn.getPackageName().equals(packageName)) components.add(cn);
+        }
+        for (ComponentName cn : current.drawer.keySet()) {
+            if (cn.getPackageName().equals(packageName)) components.add(cn);
+        }
+        return !components.isEmpty() && removeComponents(components);
+    }
+
+    /** Removes the given components from both surfaces. Callers hold the instance lock. */
+    private boolean removeKeys(List<String> keys) {
+        Snapshot current = getSnapshot();
+        Map<String, IconOverride> home = new HashMap<>(current.homeByKey);
+        Map<String, IconOverride> drawer = new HashMap<>(current.drawerByKey);
+        boolean changed = false;
+        for (String key : keys) {
+            changed |= home.remove(key) != null;
+            changed |= drawer.remove(key) != null;
+        }
+        if (!changed) {
+            return false;
+        }
+        publish(home, drawer);
+        Executors.ORDERED_BG_EXECUTOR.execute(() -> {
+            mDb.remove(keys, IconOverrideDB.SURFACE_HOME);
+            mDb.remove(keys, IconOverrideDB.SURFACE_DRAWER);
+        });
+        return true;
     }
 
     /** Clear all home screen overrides. */
     public synchronized void clearAllHomeOverrides() {
-        ensureLoaded();
-        mHomeOverrides.clear();
-        persist(KEY_HOME, mHomeOverrides);
+        publish(new HashMap<>(), getSnapshot().drawerByKey);
+        Executors.ORDERED_BG_EXECUTOR.execute(() -> mDb.clear(IconOverrideDB.SURFACE_HOME));
     }
 
     /** Clear all app drawer overrides. */
     public synchronized void clearAllDrawerOverrides() {
-        ensureLoaded();
-        mDrawerOverrides.clear();
-        persist(KEY_DRAWER, mDrawerOverrides);
+        publish(getSnapshot().homeByKey, new HashMap<>());
+        Executors.ORDERED_BG_EXECUTOR.execute(() -> mDb.clear(IconOverrideDB.SURFACE_DRAWER));
     }
 
     /** True if any home screen per-app overrides exist. */
-    public synchronized boolean hasAnyHomeOverrides() {
-        ensureLoaded();
-        return !mHomeOverrides.isEmpty();
+    public boolean hasAnyHomeOverrides() {
+        return !getSnapshot().home.isEmpty();
     }
 
     /** True if any app drawer per-app overrides exist. */
-    public synchronized boolean hasAnyDrawerOverrides() {
-        ensureLoaded();
-        return !mDrawerOverrides.isEmpty();
+    public boolean hasAnyDrawerOverrides() {
+        return !getSnapshot().drawer.isEmpty();
     }
 
     /**
      * Returns a deterministic hash of all overrides for cache invalidation.
-     * Changes when any override is added, removed, or modified.
+     * Changes when any override is added, removed, or modified. Computed once per change,
+     * and stable across restarts since it is part of the persisted icon cache state.
+     *
+     * <p>The icon cache asks for it while the app starts, on the main thread, so until the
+     * snapshot is loaded this returns the hash stored in prefs by the last publish. Only a
+     * start with no stored hash yet (the first after an upgrade) loads the database here.
      */
-    public synchronized int getOverridesHash() {
-        ensureLoaded();
-        int hash = 17;
-        for (Map.Entry<String, IconOverride> e : mHomeOverrides.entrySet()) {
-            hash = 31 * hash + e.getKey().hashCode();
-            hash = 31 * hash + e.getValue().packPackage.hashCode();
-            hash = 31 * hash + e.getValue().drawableName.hashCode();
-            hash = 31 * hash + e.getValue().shapeKey.hashCode();
-            hash = 31 * hash + e.getValue().sizeScale.hashCode();
-            hash = 31 * hash + e.getValue().adaptiveShape.hashCode();
+    public int getOverridesHash() {
+        Snapshot snapshot = mSnapshot;
+        if (snapshot != null) {
+            return snapshot.hash;
         }
-        for (Map.Entry<String, IconOverride> e : mDrawerOverrides.entrySet()) {
-            hash = 31 * hash + e.getKey().hashCode();
-            hash = 31 * hash + e.getValue().packPackage.hashCode();
-            hash = 31 * hash + e.getValue().drawableName.hashCode();
-            hash = 31 * hash + e.getValue().shapeKey.hashCode();
-            hash = 31 * hash + e.getValue().sizeScale.hashCode();
-            hash = 31 * hash + e.getValue().adaptiveShape.hashCode();
+        if (mPrefs.has(LauncherPrefs.PER_APP_ICON_OVERRIDES_HASH)) {
+            return mPrefs.get(LauncherPrefs.PER_APP_ICON_OVERRIDES_HASH);
         }
-        return hash;
+        return getSnapshot().hash;
     }
 
-    private void ensureLoaded() {
-        if (mHomeOverrides == null) {
-            mHomeOverrides = fromJson(mPrefs.getString(KEY_HOME, "{}"));
+    /**
+     * Opens the database and publishes the first snapshot, so the first icon load does not.
+     */
+    @WorkerThread
+    public void preload() {
+        getSnapshot();
+    }
+
+    private Snapshot getSnapshot() {
+        Snapshot snapshot = mSnapshot;
+        if (snapshot != null) {
+            return snapshot;
         }
-        if (mDrawerOverrides == null) {
-            mDrawerOverrides = fromJson(mPrefs.getString(KEY_DRAWER, "{}"));
+        synchronized (this) {
+            if (mSnapshot == null) {
+                Map<String, IconOverride> home = new HashMap<>();
+                Map<String, IconOverride> drawer = new HashMap<>();
+                mDb.loadAll(home, drawer);
+                publish(home, drawer);
+            }
+            return mSnapshot;
         }
     }
 
-    private void persist(String key, Map<String, IconOverride> map) {
-        mPrefs.edit().putString(key, toJson(map)).apply();
+    /**
+     * Replaces the published snapshot and stores its hash for {@link #getOverridesHash}.
+     * Callers hold the instance lock.
+     */
+    private void publish(Map<String, IconOverride> homeByKey,
+            Map<String, IconOverride> drawerByKey) {
+        Snapshot previous = mSnapshot;
+        Snapshot next = new Snapshot(homeByKey, drawerByKey);
+        mSnapshot = next;
+        // The first publish also rewrites it, correcting a hash left stale by a crash
+        if (previous == null || previous.hash != next.hash) {
+            mPrefs.put(LauncherPrefs.PER_APP_ICON_OVERRIDES_HASH, next.hash);
+        }
     }
 
-    private static String toJson(Map<String, IconOverride> map) {
-        JSONObject json = new JSONObject();
-        try {
-            for (Map.Entry<String, IconOverride> entry : map.entrySet()) {
-                JSONObject value = new JSONObject();
-                value.put("pack", entry.getValue().packPackage);
-                value.put("drawable", entry.getValue().drawableName);
-                value.put("shape", entry.getValue().shapeKey);
-                value.put("size", entry.getValue().sizeScale);
-                value.put("adaptive", entry.getValue().adaptiveShape);
-                json.put(entry.getKey(), value);
+    /** Writes or deletes the row of one component in the background, in call order. */
+    private void persist(String key, int surface, @Nullable IconOverride override) {
+        Executors.ORDERED_BG_EXECUTOR.execute(() -> {
+            if (override == null) {
+                mDb.remove(Collections.singletonList(key), surface);
+            } else {
+                mDb.put(key, surface, override);
             }
-        } catch (JSONException e) {
-            Log.e(TAG, "Failed to serialize overrides", e);
-        }
-        return json.toString();
+        });
     }
 
-    private static Map<String, IconOverride> fromJson(String jsonStr) {
+    /** Parses the legacy JSON storage, for the import into {@link IconOverrideDB}. */
+    static Map<String, IconOverride> fromJson(String jsonStr) {
         Map<String, IconOverride> map = new HashMap<>();
         try {
             JSONObject json = new JSONObject(jsonStr);
@@ -375,4 +449,54 @@ public class PerAppIconOverrideManager {
         }
         return map;
     }
+
+    /** Immutable view of all overrides at one point in time. */
+    private static class Snapshot {
+        // Keyed by flattened component, as persisted
+        final Map<String, IconOverride> homeByKey;
+        final Map<String, IconOverride> drawerByKey;
+        // Keyed by component, for lookups without building a key string
+        final Map<ComponentName, IconOverride> home;
+        final Map<ComponentName, IconOverride> drawer;
+        final int hash;
+
+        Snapshot(Map<String, IconOverride> homeByKey, Map<String, IconOverride> drawerByKey) {
+            this.homeByKey = Collections.unmodifiableMap(new HashMap<>(homeByKey));
+            this.drawerByKey = Collections.unmodifiableMap(new HashMap<>(drawerByKey));
+            this.home = byComponent(homeByKey);
+            this.drawer = byComponent(drawerByKey);
+            this.hash = homeByKey.isEmpty() && drawerByKey.isEmpty() ? EMPTY_HASH
+                    : 31 * (31 * EMPTY_HASH + hashEntries(homeByKey)) + hashEntries(drawerByKey);
+        }
+
+        private static Map<ComponentName, IconOverride> byComponent(
+                Map<String, IconOverride> byKey) {
+            Map<ComponentName, IconOverride> map = new HashMap<>(byKey.size() * 2);
+            for (Map.Entry<String, IconOverride> e : byKey.entrySet()) {
+                ComponentName cn = ComponentName.unflattenFromString(e.getKey());
+                if (cn != null) {
+                    map.put(cn, e.getValue());
+                }
+            }
+            return Collections.unmodifiableMap(map);
+        }
+
+        /**
+         * Hashes the entries of {@code byKey} independently of the map's iteration order, which
+         * differs between a map read from prefs and one built up by edits.
+         */
+        private static int hashEntries(Map<String, IconOverride> byKey) {
+            int entries = 0;
+            for (Map.Entry<String, IconOverride> e : byKey.entrySet()) {
+                int entry = e.getKey().hashCode();
+                entry = 31 * entry + e.getValue().packPackage.hashCode();
+                entry = 31 * entry + e.getValue().drawableName.hashCode();
+                entry = 31 * entry + e.getValue().shapeKey.hashCode();
+                entry = 31 * entry + e.getValue().sizeScale.hashCode();
+                entry = 31 * entry + e.getValue().adaptiveShape.hashCode();
+                entries += entry;
+            }
+            return entries;
+        }
+    }
 }
@@ -79,6 +79,8 @@ public class AllAppsList {
     private final AppFilter mAppFilter;
 
     private boolean mDataChanged = false;
+    // Bumped on every change to data or app titles; never reset, unlike mDataChanged
+    private int mModCount = 0;
     private Consumer<AppInfo> mRemoveListener = NO_OP_CONSUMER;
 
     private AlphabeticIndexCompat mIndex;
@@ -111,6 +113,15 @@ public class AllAppsList {
         return result;
     }
 
+    /**
+     * Returns a counter that changes whenever apps are added or removed or their titles change.
+     * Unlike {@link #getAndResetChangeFlag()} it is never reset, so independent readers (such
+     * as the app search index) can each detect changes.
+     */
+    public int getModCount() {
+        return mModCount;
+    }
+
     /**
      * Helper to checking {@link Callbacks#FLAG_HAS_SHORTCUT_PERMISSION}
      */
@@ -128,6 +139,7 @@ public class AllAppsList {
             mFlags &= ~flagMask;
         }
         mDataChanged = true;
+        mModCount++;
     }
 
     /**
@@ -164,6 +176,7 @@ public class AllAppsList {
 
         data.add(info);
         mDataChanged = true;
+        mModCount++;
     }
 
     @Nullable
@@ -190,12 +203,15 @@ public class AllAppsList {
 
         data.add(promiseAppInfo);
         mDataChanged = true;
+        mModCount++;
 
         return promiseAppInfo;
     }
 
     public void updateSectionName(AppInfo appInfo) {
         appInfo.sectionName = mIndex.computeSectionName(appInfo.title);
+        // Called after titles are loaded in bulk
+        mModCount++;
 
     }
 
@@ -243,6 +259,7 @@ public class AllAppsList {
         AppInfo removed = data.remove(index);
         if (removed != null) {
             mDataChanged = true;
+            mModCount++;
             mRemoveListener.accept(removed);
         }
     }
@@ -250,6 +267,7 @@ public class AllAppsList {
     public void clear() {
         data.clear();
         mDataChanged = false;
+        mModCount++;
         // Reset the index as locales might have changed
         mIndex = new AlphabeticIndexCompat(LocaleList.getDefault());
     }
@@ -292,6 +310,7 @@ public class AllAppsList {
             if (matcher.test(info)) {
                 info.runtimeStatusFlags = op.apply(info.runtimeStatusFlags);
                 mDataChanged = true;
+                mModCount++;
             }
         }
     }
@@ -302,6 +321,7 @@ public class AllAppsList {
                 mIconCache.updateTitleAndIcon(info);
                 info.sectionName = mIndex.computeSectionName(info.title);
                 mDataChanged = true;
+                mModCount++;
             }
         }
     }
@@ -349,6 +369,7 @@ public class AllAppsList {
                     AppInfo.updateRuntimeFlagsForActivityTarget(applicationInfo, info,
                             userCache.getUserInfo(user), apiWrapper, pmHelper);
                     mDataChanged = true;
+                    mModCount++;
                 }
             }
         } else {
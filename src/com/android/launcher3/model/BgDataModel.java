@@ -54,6 +54,7 @@ import com.android.launcher3.model.data.CollectionInfo;
 import com.android.launcher3.model.data.ItemInfo;
 import com.android.launcher3.model.data.WorkspaceItemInfo;
 import com.android.launcher3.pm.UserCache;
+import com.android.launcher3.search.ShortcutSearchIndex;
 import com.android.launcher3.shortcuts.ShortcutKey;
 import com.android.launcher3.shortcuts.ShortcutRequest;
 import com.android.launcher3.shortcuts.ShortcutRequest.QueryResult;
@@ -110,6 +111,11 @@ public class BgDataModel {
      */
     public final HashMap<ComponentKey, Integer> deepShortcutMap = new HashMap<>();
 
+    /**
+     * Label index of all deep shortcuts, maintained together with {@link #deepShortcutMap}.
+     */
+    public final ShortcutSearchIndex shortcutSearchIndex = new ShortcutSearchIndex();
+
     /**
      * Entire list of widgets.
      */
@@ -143,6 +149,7 @@ public class BgDataModel {
     public synchronized void clear() {
         itemsIdMap.clear();
         deepShortcutMap.clear();
+        shortcutSearchIndex.clear();
         extraItems.clear();
     }
 
@@ -308,6 +315,7 @@ public class BgDataModel {
 
     /**
      * Clear all the deep shortcut counts for the given package, and re-add the new shortcut counts.
+     * The shortcut search index is updated the same way (a null package replaces the whole user).
      */
     public synchronized void updateDeepShortcutCounts(
             String packageName, UserHandle user, List<ShortcutInfo> shortcuts) {
@@ -322,6 +330,8 @@ public class BgDataModel {
             }
         }
 
+        shortcutSearchIndex.update(packageName, user, shortcuts);
+
         // Now add the new shortcuts to the map.
         for (ShortcutInfo shortcut : shortcuts) {
             boolean shouldShowInContainer = shortcut.isEnabled()
@@ -653,6 +653,7 @@ public class LoaderTask implements Runnable {
             List<IconRequestInfo<WorkspaceItemInfo>> iconRequestInfos) {
         Trace.beginSection("LoadWorkspaceIconsInBulk");
         try {
+            requestHighResForExpandedFolders(iconRequestInfos);
             mIconCache.getTitlesAndIconsInBulk(iconRequestInfos);
             for (IconRequestInfo<WorkspaceItemInfo> iconRequestInfo : iconRequestInfos) {
                 WorkspaceItemInfo wai = iconRequestInfo.itemInfo;
@@ -667,6 +668,39 @@ public class LoaderTask implements Runnable {
         }
     }
 
+    /**
+     * Switches the icon requests of the items that expanded folders show on the workspace to high
+     * res, so they load in the same bulk pass as the rest of the workspace rather than after the
+     * folder is bound.
+     */
+    private void requestHighResForExpandedFolders(
+            List<IconRequestInfo<WorkspaceItemInfo>> iconRequestInfos) {
+        Set<ItemInfo> visibleItems = new HashSet<>();
+        for (ItemInfo itemInfo : mBgDataModel.itemsIdMap) {
+            if (!(itemInfo instanceof FolderInfo folder)) {
+                continue;
+            }
+            int count = folder.getExpandedVisibleItemCount();
+            if (count == 0) {
+                continue;
+            }
+            // Same order processFolderItems() ranks the contents in
+            List<ItemInfo> contents = new ArrayList<>(folder.getContents());
+            contents.sort(Folder.ITEM_POS_COMPARATOR);
+            visibleItems.addAll(contents.subList(0, Math.min(count, contents.size())));
+        }
+        if (visibleItems.isEmpty()) {
+            return;
+        }
+        for (int i = 0; i < iconRequestInfos.size(); i++) {
+            IconRequestInfo<WorkspaceItemInfo> request = iconRequestInfos.get(i);
+            if (request.useLowResIcon && visibleItems.contains(request.itemInfo)) {
+                iconRequestInfos.set(i, new IconRequestInfo<>(request.itemInfo,
+                        request.launcherActivityInfo, request.iconBlob, false));
+            }
+        }
+    }
+
     private void setIgnorePackages(IconCacheUpdateHandler updateHandler) {
         // Ignore packages which have a promise icon.
         synchronized (mBgDataModel) {
@@ -903,6 +937,7 @@ public class LoaderTask implements Runnable {
     private List<ShortcutInfo> loadDeepShortcuts() {
         List<ShortcutInfo> allShortcuts = new ArrayList<>();
         mBgDataModel.deepShortcutMap.clear();
+        mBgDataModel.shortcutSearchIndex.clear();
 
         if (mBgAllAppsList.hasShortcutHostPermission()) {
             for (UserHandle user : mUserCache.getUserProfiles()) {
@@ -41,7 +41,9 @@ import com.android.launcher3.Flags;
 import com.android.launcher3.LauncherModel.ModelUpdateTask;
 import com.android.launcher3.LauncherSettings.Favorites;
 import com.android.launcher3.config.FeatureFlags;
+import com.android.launcher3.icons.DrawerIconResolver;
 import com.android.launcher3.icons.IconCache;
+import com.android.launcher3.icons.pack.PerAppIconOverrideManager;
 import com.android.launcher3.logging.FileLog;
 import com.android.launcher3.model.data.ItemInfo;
 import com.android.launcher3.model.data.LauncherAppWidgetInfo;
@@ -56,6 +58,7 @@ import com.android.launcher3.util.ItemInfoMatcher;
 import com.android.launcher3.util.PackageManagerHelper;
 import com.android.launcher3.util.PackageUserKey;
 import com.android.launcher3.util.SafeCloseable;
+import com.android.launcher3.widget.DatabaseWidgetPreviewLoader;
 
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -64,6 +67,7 @@ import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Objects;
+import java.util.Set;
 import java.util.function.Predicate;
 import java.util.stream.Collectors;
 
@@ -107,6 +111,7 @@ public class PackageUpdatedTask implements ModelUpdateTask {
             @NonNull AllAppsList appsList) {
         final Context context = taskController.getContext();
         final IconCache iconCache = taskController.getIconCache();
+        final DrawerIconResolver drawerIcons = DrawerIconResolver.getInstance();
 
         final String[] packages = mPackages;
         final int packageCount = packages.length;
@@ -126,6 +131,9 @@ public class PackageUpdatedTask implements ModelUpdateTask {
             case OP_ADD: {
                 for (int i = 0; i < packageCount; i++) {
                     iconCache.updateIconsForPkg(packages[i], mUser);
+                    drawerIcons.removeIconsForPkg(context, packages[i], mUser);
+                    DatabaseWidgetPreviewLoader.removePreviewsForPkg(
+                            context, packages[i], mUser);
                     if (FeatureFlags.PROMISE_APPS_IN_ALL_APPS.get()) {
                         if (DEBUG) {
                             Log.d(TAG, "OP_ADD: PROMISE_APPS_IN_ALL_APPS enabled:"
@@ -149,6 +157,9 @@ public class PackageUpdatedTask implements ModelUpdateTask {
                 })) {
                     for (int i = 0; i < packageCount; i++) {
                         iconCache.updateIconsForPkg(packages[i], mUser);
+                        drawerIcons.removeIconsForPkg(context, packages[i], mUser);
+                        DatabaseWidgetPreviewLoader.removePreviewsForPkg(
+                                context, packages[i], mUser);
                         activitiesLists.put(packages[i],
                                 appsList.updatePackage(context, packages[i], mUser));
                     }
@@ -159,6 +170,9 @@ public class PackageUpdatedTask implements ModelUpdateTask {
             case OP_REMOVE: {
                 for (int i = 0; i < packageCount; i++) {
                     iconCache.removeIconsForPkg(packages[i], mUser);
+                    drawerIcons.removeIconsForPkg(context, packages[i], mUser);
+                    DatabaseWidgetPreviewLoader.removePreviewsForPkg(
+                            context, packages[i], mUser);
                 }
                 // Fall through
             }
@@ -425,6 +439,11 @@ public class PackageUpdatedTask implements ModelUpdateTask {
             // Remove any queued items from the install queue
             ItemInstallQueue.INSTANCE.get(context)
                     .removeFromInstallQueue(removedPackages, mUser);
+
+            // Disabled packages keep their overrides, they may be enabled again
+            removeIconOverrides(context,
+                    mOp == OP_REMOVE ? removedPackages : Collections.emptySet(),
+                    removedComponents);
         }
 
         if (mOp == OP_ADD) {
@@ -468,6 +487,29 @@ public class PackageUpdatedTask implements ModelUpdateTask {
                 && itemInfo.itemType == ITEM_TYPE_DEEP_SHORTCUT;
     }
 
+    /**
+     * Drops the per-app icon overrides of uninstalled packages and removed components. Overrides
+     * are shared by all profiles, so they are only dropped once no profile has the app any more.
+     */
+    private void removeIconOverrides(Context context, Set<String> removedPackages,
+            Set<ComponentName> removedComponents) {
+        PerAppIconOverrideManager overrides = PerAppIconOverrideManager.getInstance(context);
+        LauncherApps launcherApps = context.getSystemService(LauncherApps.class);
+        List<UserHandle> profiles = UserCache.INSTANCE.get(context).getUserProfiles();
+        for (String pkg : removedPackages) {
+            if (profiles.stream().noneMatch(u -> launcherApps.isPackageEnabled(pkg, u))) {
+                overrides.removePackage(pkg);
+            }
+        }
+        List<ComponentName> goneComponents = removedComponents.stream()
+                .filter(cn -> cn != null && profiles.stream()
+                        .noneMatch(u -> launcherApps.isActivityEnabled(cn, u)))
+                .collect(Collectors.toList());
+        if (!goneComponents.isEmpty()) {
+            overrides.removeComponents(goneComponents);
+        }
+    }
+
     private String getOpString() {
         return switch (mOp) {
             case OP_NONE -> "NONE";
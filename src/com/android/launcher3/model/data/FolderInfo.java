@@ -145,6 +145,18 @@ public class FolderInfo extends CollectionInfo {
         writer.put(LauncherSettings.Favorites.OPTIONS, options);
     }
 
+    /**
+     * Returns how many items this folder shows directly on the workspace when expanded: every
+     * cell of its square span but the last, which holds the open indicator. Returns 0 if the
+     * folder isn't expanded.
+     */
+    public int getExpandedVisibleItemCount() {
+        if (!hasOption(FLAG_EXPANDED) || spanX <= 1 || spanY <= 1 || spanX != spanY) {
+            return 0;
+        }
+        return spanX * spanY - 1;
+    }
+
     public boolean hasOption(int optionFlag) {
         return (options & optionFlag) != 0;
     }
@@ -0,0 +1,240 @@
+/*
+ * Copyright (C) 2025 DefaultLauncher Contributors
+ *
+ * This file is part of DefaultLauncher.
+ *
+ * DefaultLauncher is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ */
+package com.android.launcher3.search;
+
+import android.util.SparseArray;
+
+import androidx.annotation.WorkerThread;
+
+import com.android.launcher3.model.AllAppsList;
+import com.android.launcher3.model.data.AppInfo;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * In-memory search index over the titles in {@link AllAppsList}.
+ *
+ * <p>Titles are lowercased into {@code char[]} once when an app is indexed. Each title's
+ * characters are posted (with their counts) into per-character postings lists, so a query only
+ * visits apps sharing at least one character with it, and {@link SearchScorer#canMatch} drops
+ * apps that share too few characters to reach the score threshold before any Jaro-Winkler work
+ * is done. Survivors go through a bounded top-K heap whose worst score lets the scorer skip
+ * candidates that cannot place.
+ *
+ * <p>The index is synced against {@link AllAppsList#getModCount()}: nothing happens while the
+ * list is unchanged, and after a package add, remove or update only the apps that were added,
+ * removed or retitled are re-posted.
+ *
+ * <p>Not thread-safe. Owned by the model thread, like {@link AllAppsList} itself.
+ */
+public class AppSearchIndex {
+
+    // Lower score first; on equal scores the later app in AllAppsList order is worse
+    private static final Comparator<Entry> WORST_FIRST = (a, b) -> a.score != b.score
+            ? Float.compare(a.score, b.score) : Integer.compare(b.order, a.order);
+
+    private final IdentityHashMap<AppInfo, Entry> mEntries = new IdentityHashMap<>();
+    private final SparseArray<ArrayList<Posting>> mPostings = new SparseArray<>();
+
+    // Per-query scratch, reused across queries
+    private final ArrayList<Entry> mCandidates = new ArrayList<>();
+    private final PriorityQueue<Entry> mTop = new PriorityQueue<>(WORST_FIRST);
+
+    private int mSyncedModCount = -1;
+    private int mGeneration;
+    private int mQueryStamp;
+
+    /** Brings the index in line with {@code apps} if it changed since the last sync. */
+    @WorkerThread
+    public void sync(AllAppsList apps) {
+        int modCount = apps.getModCount();
+        if (modCount == mSyncedModCount) return;
+        mSyncedModCount = modCount;
+
+        int generation = ++mGeneration;
+        List<AppInfo> data = apps.data;
+        for (int i = 0, n = data.size(); i < n; i++) {
+            AppInfo info = data.get(i);
+            Entry entry = mEntries.get(info);
+            if (entry != null && entry.title != info.title) {
+                unpost(entry);
+                entry = null;
+            }
+            if (entry == null) {
+                entry = new Entry(info);
+                mEntries.put(info, entry);
+                post(entry);
+            }
+            entry.order = i;
+            entry.generation = generation;
+        }
+
+        Iterator<Entry> it = mEntries.values().iterator();
+        while (it.hasNext()) {
+            Entry entry = it.next();
+            if (entry.generation != generation) {
+                unpost(entry);
+                it.remove();
+            }
+        }
+    }
+
+    /**
+     * Returns up to {@code maxResults} apps matching {@code query}, best first. Ties keep the
+     * {@link AllAppsList} order.
+     */
+    @WorkerThread
+    public List<AppInfo> search(String query, int maxResults) {
+        char[] q = query.toLowerCase().toCharArray();
+        int queryLen = q.length;
+        List<AppInfo> result = new ArrayList<>();
+        if (queryLen == 0 || maxResults <= 0) return result;
+
+        // Accumulate, per app, how many query characters its title can match
+        int stamp = ++mQueryStamp;
+        ArrayList<Entry> candidates = mCandidates;
+        candidates.clear();
+        for (int i = 0; i < queryLen; i++) {
+            char c = q[i];
+            if (indexOf(q, c) != i) continue;
+            ArrayList<Posting> postings = mPostings.get(c);
+            if (postings == null) continue;
+
+            int queryCount = countOf(q, c, i);
+            for (int p = 0, n = postings.size(); p < n; p++) {
+                Posting posting = postings.get(p);
+                Entry entry = posting.entry;
+                if (entry.stamp != stamp) {
+                    entry.stamp = stamp;
+                    entry.common = 0;
+                    candidates.add(entry);
+                }
+                entry.common += Math.min(queryCount, posting.count);
+            }
+        }
+
+        // Bounded top-K: the heap head is the worst kept entry; once the heap is full its score
+        // is the bar every remaining candidate's upper bound has to reach.
+        PriorityQueue<Entry> top = mTop;
+        top.clear();
+        for (int i = 0, n = candidates.size(); i < n; i++) {
+            Entry entry = candidates.get(i);
+            if (!SearchScorer.canMatch(entry.common, queryLen, entry.folded.length)) continue;
+            float minScore = top.size() < maxResults ? 0f : top.peek().score;
+            float s = SearchScorer.scoreLowercase(q, entry.folded, minScore);
+            if (s <= 0f) continue;
+            entry.score = s;
+            if (top.size() < maxResults) {
+                top.add(entry);
+            } else if (WORST_FIRST.compare(entry, top.peek()) > 0) {
+                top.poll();
+                top.add(entry);
+            }
+        }
+        candidates.clear();
+
+        Entry[] best = top.toArray(new Entry[top.size()]);
+        top.clear();
+        Arrays.sort(best, Collections.reverseOrder(WORST_FIRST));
+        for (Entry entry : best) {
+            result.add(entry.app);
+        }
+        return result;
+    }
+
+    /** Number of indexed apps. */
+    public int size() {
+        return mEntries.size();
+    }
+
+    private void post(Entry entry) {
+        char[] folded = entry.folded;
+        for (int i = 0; i < folded.length; i++) {
+            char c = folded[i];
+            if (indexOf(folded, c) != i) continue;
+            ArrayList<Posting> postings = mPostings.get(c);
+            if (postings == null) {
+                postings = new ArrayList<>();
+                mPostings.put(c, postings);
+            }
+            postings.add(new Posting(entry, countOf(folded, c, i)));
+        }
+    }
+
+    private void unpost(Entry entry) {
+        char[] folded = entry.folded;
+        for (int i = 0; i < folded.length; i++) {
+            char c = folded[i];
+            if (indexOf(folded, c) != i) continue;
+            ArrayList<Posting> postings = mPostings.get(c);
+            if (postings == null) continue;
+            postings.removeIf(p -> p.entry == entry);
+            if (postings.isEmpty()) {
+                mPostings.remove(c);
+            }
+        }
+    }
+
+    private static int indexOf(char[] s, char c) {
+        for (int i = 0; i < s.length; i++) {
+            if (s[i] == c) return i;
+        }
+        return -1;
+    }
+
+    /** Occurrences of {@code c} in {@code s}, starting from its first occurrence {@code from}. */
+    private static int countOf(char[] s, char c, int from) {
+        int count = 0;
+        for (int i = from; i < s.length; i++) {
+            if (s[i] == c) count++;
+        }
+        return count;
+    }
+
+    private static class Entry {
+        final AppInfo app;
+        // Title instance the entry was built from; a new instance means the app was retitled
+        final CharSequence title;
+        final char[] folded;
+
+        int order;
+        int generation;
+
+        // Per-query scratch, valid while stamp matches the current query
+        int stamp;
+        int common;
+        float score;
+
+        Entry(AppInfo app) {
+            this.app = app;
+            this.title = app.title;
+            this.folded = app.title == null
+                    ? new char[0] : app.title.toString().toLowerCase().toCharArray();
+        }
+    }
+
+    private static class Posting {
+        final Entry entry;
+        final int count;
+
+        Posting(Entry entry, int count) {
+            this.entry = entry;
+            this.count = count;
+        }
+    }
+}
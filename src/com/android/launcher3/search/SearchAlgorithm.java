@@ -34,6 +34,12 @@ public interface SearchAlgorithm<T> {
         doSearch(query, callback);
     }
 
+    /**
+     * Called when the user opens a search session, before the first query, so that slow
+     * sources can start warming up.
+     */
+    default void onSearchOpened() {}
+
     /**
      * Cancels any active request.
      */
@@ -0,0 +1,135 @@
+/*
+ * Copyright (C) 2025 DefaultLauncher Contributors
+ *
+ * This file is part of DefaultLauncher.
+ *
+ * DefaultLauncher is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ */
+package com.android.launcher3.search;
+
+import com.android.launcher3.search.providers.ProviderCategory;
+import com.android.launcher3.util.LatencyHistogram;
+
+import java.io.PrintWriter;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Process-wide counters for {@link UniversalSearchAlgorithm}: per-provider latency histograms,
+ * providers past their time budget, dropped and cancelled provider callbacks, and per-session
+ * time to first INTERMEDIATE and to FINAL delivery.
+ *
+ * <p>Latencies are measured from session dispatch to the provider callback on the main thread,
+ * i.e. what the search UI actually waits for. Exposed via {@code dumpsys activity} on the
+ * launcher and the Debug settings page.
+ */
+public final class SearchMetrics {
+
+    public static final SearchMetrics INSTANCE = new SearchMetrics();
+
+    private final Map<ProviderCategory, ProviderStats> mProviders =
+            new EnumMap<>(ProviderCategory.class);
+    private final LatencyHistogram mTimeToFirstIntermediate = new LatencyHistogram();
+    private final LatencyHistogram mTimeToFinal = new LatencyHistogram();
+    private long mSessions;
+    private long mAbandonedSessions;
+
+    private SearchMetrics() {
+        for (ProviderCategory category : ProviderCategory.values()) {
+            mProviders.put(category, new ProviderStats());
+        }
+    }
+
+    synchronized void onSessionStarted() {
+        mSessions++;
+    }
+
+    /**
+     * A session was superseded or destroyed while {@code pending} providers had not reported
+     * yet. It only counts as abandoned if it never delivered FINAL; stragglers of a session
+     * finalised past their time budget count as cancelled only.
+     */
+    synchronized void onSessionAbandoned(Set<ProviderCategory> pending, boolean finalDelivered) {
+        if (!finalDelivered) {
+            mAbandonedSessions++;
+        }
+        for (ProviderCategory category : pending) {
+            mProviders.get(category).cancelled++;
+        }
+    }
+
+    /** A provider delivered results to the active session. */
+    synchronized void onProviderResult(ProviderCategory category, long latencyMs) {
+        mProviders.get(category).latency.record(latencyMs);
+    }
+
+    /** A provider ran past its time budget and the session stopped waiting for it. */
+    synchronized void onProviderDeadlineMissed(ProviderCategory category) {
+        mProviders.get(category).late++;
+    }
+
+    /** A provider delivered results to a session that was no longer active. */
+    synchronized void onProviderResultDropped(ProviderCategory category) {
+        mProviders.get(category).dropped++;
+    }
+
+    synchronized void onFirstIntermediate(long latencyMs) {
+        mTimeToFirstIntermediate.record(latencyMs);
+    }
+
+    synchronized void onFinal(long latencyMs) {
+        mTimeToFinal.record(latencyMs);
+    }
+
+    /** Clears every counter. */
+    public synchronized void reset() {
+        for (ProviderStats stats : mProviders.values()) {
+            stats.reset();
+        }
+        mTimeToFirstIntermediate.reset();
+        mTimeToFinal.reset();
+        mSessions = 0;
+        mAbandonedSessions = 0;
+    }
+
+    public synchronized void dump(String prefix, PrintWriter writer) {
+        writer.println(prefix + "SearchMetrics:");
+        writer.println(prefix + "  sessions=" + mSessions + " abandoned=" + mAbandonedSessions);
+        writer.println(prefix + "  " + LatencyHistogram.BUCKETS_LEGEND);
+        writer.println(prefix + "  firstIntermediate " + mTimeToFirstIntermediate);
+        writer.println(prefix + "  final " + mTimeToFinal);
+        for (Map.Entry<ProviderCategory, ProviderStats> e : mProviders.entrySet()) {
+            ProviderStats stats = e.getValue();
+            if (stats.latency.getCount() == 0 && stats.dropped == 0 && stats.cancelled == 0
+                    && stats.late == 0) {
+                continue;
+            }
+            writer.println(prefix + "  " + e.getKey() + " " + stats.latency
+                    + " late=" + stats.late + " dropped=" + stats.dropped
+                    + " cancelled=" + stats.cancelled);
+        }
+    }
+
+    /** Returns {@link #dump} output as a string, for display in settings. */
+    public String dumpToString() {
+        return LatencyHistogram.dumpToString(this::dump);
+    }
+
+    private static class ProviderStats {
+        final LatencyHistogram latency = new LatencyHistogram();
+        long late;
+        long dropped;
+        long cancelled;
+
+        void reset() {
+            latency.reset();
+            late = 0;
+            dropped = 0;
+            cancelled = 0;
+        }
+    }
+}
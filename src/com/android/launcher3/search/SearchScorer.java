@@ -10,9 +10,14 @@
  */
 package com.android.launcher3.search;
 
+import java.util.Arrays;
+
 /**
  * Search scoring using Jaro-Winkler similarity with prefix/substring bonuses.
  * Inspired by Kvaesitso's scoring model. Zero external dependencies.
+ *
+ * <p>The {@code char[]} variants work on pre-lowercased input and reuse per-thread match
+ * buffers, so scoring an indexed title allocates nothing.
  */
 public final class SearchScorer {
 
@@ -20,6 +25,13 @@ public final class SearchScorer {
     private static final float SUBSTRING_BONUS = 0.4f;
     private static final float THRESHOLD = 0.8f;
 
+    // Largest possible Winkler prefix boost: 4 chars * 0.1
+    private static final float MAX_WINKLER_BOOST = 0.4f;
+    // Slack on upper bounds so float rounding never drops a pair the scorer would keep
+    private static final float BOUND_SLACK = 1e-4f;
+
+    private static final ThreadLocal<Scratch> SCRATCH = ThreadLocal.withInitial(Scratch::new);
+
     private SearchScorer() {}
 
     /**
@@ -28,16 +40,88 @@ public final class SearchScorer {
     public static float jaroWinklerSimilarity(String s1, String s2) {
         if (s1 == null || s2 == null) return 0f;
         if (s1.equals(s2)) return 1f;
+        return jaroWinkler(s1.toCharArray(), s2.toCharArray());
+    }
+
+    /**
+     * Scores a query against a target string using Jaro-Winkler plus
+     * prefix and substring bonuses (Kvaesitso approach).
+     *
+     * @return Score &gt; 0 if above the minimum threshold, 0 otherwise.
+     *         Not capped at 1.0 so that prefix matches always outrank substring matches.
+     */
+    public static float score(String query, String target) {
+        if (query == null || target == null) return 0f;
+        return scoreLowercase(query.toLowerCase().toCharArray(),
+                target.toLowerCase().toCharArray(), 0f);
+    }
+
+    /**
+     * Same as {@link #score} for inputs that are already lowercased, with early exit.
+     *
+     * @param minScore score the caller needs to beat (e.g. the worst entry of a full top-K);
+     *                 pairs whose upper bound falls below it are rejected without running
+     *                 Jaro-Winkler. Pass 0 to score unconditionally.
+     * @return the score, or 0 if it is below the threshold or cannot reach {@code minScore}
+     */
+    public static float scoreLowercase(char[] queryLower, char[] targetLower, float minScore) {
+        float bonus = 0f;
+        if (startsWith(targetLower, queryLower)) {
+            bonus = PREFIX_BONUS;
+        } else if (contains(targetLower, queryLower)) {
+            bonus = SUBSTRING_BONUS;
+        }
+
+        float floor = Math.max(THRESHOLD, minScore);
+        int common = Math.min(queryLower.length, targetLower.length);
+        if (bonus + jaroWinklerUpperBound(common, queryLower.length, targetLower.length)
+                < floor) {
+            return 0f;
+        }
+
+        float total = jaroWinkler(queryLower, targetLower) + bonus;
+        return total >= THRESHOLD ? total : 0f;
+    }
 
-        int len1 = s1.length();
-        int len2 = s2.length();
+    /**
+     * Returns false only if {@link #scoreLowercase} is guaranteed to reject the pair, given
+     * that they share at most {@code common} characters (multiset intersection of their
+     * characters). Lets an index skip candidates without computing Jaro-Winkler.
+     *
+     * <p>Prefix and substring bonuses need every query character to be present, i.e.
+     * {@code common == queryLen}; otherwise only the Jaro-Winkler term counts.
+     */
+    public static boolean canMatch(int common, int queryLen, int targetLen) {
+        if (common <= 0 || targetLen == 0) return false;
+        if (common >= queryLen) return true;
+        return jaroWinklerUpperBound(common, queryLen, targetLen) >= THRESHOLD;
+    }
+
+    /**
+     * Upper bound of the Jaro-Winkler similarity of two strings sharing at most {@code common}
+     * characters. Jaro matches never exceed {@code common} and the transposition term is at
+     * most 1, so Jaro is bounded by {@code (common/len1 + common/len2 + 1) / 3}; the Winkler
+     * prefix boost adds at most {@code 0.4 * (1 - jaro)}.
+     */
+    private static float jaroWinklerUpperBound(int common, int len1, int len2) {
+        if (common <= 0 || len1 == 0 || len2 == 0) return 0f;
+        float jaro = ((float) common / len1 + (float) common / len2 + 1f) / 3f;
+        return Math.min(1f, jaro + MAX_WINKLER_BOOST * (1f - jaro)) + BOUND_SLACK;
+    }
+
+    private static float jaroWinkler(char[] s1, char[] s2) {
+        if (Arrays.equals(s1, s2)) return 1f;
+
+        int len1 = s1.length;
+        int len2 = s2.length;
         if (len1 == 0 || len2 == 0) return 0f;
 
         int matchWindow = Math.max(len1, len2) / 2 - 1;
         if (matchWindow < 0) matchWindow = 0;
 
-        boolean[] matched1 = new boolean[len1];
-        boolean[] matched2 = new boolean[len2];
+        Scratch scratch = SCRATCH.get();
+        boolean[] matched1 = scratch.matched1(len1);
+        boolean[] matched2 = scratch.matched2(len2);
 
         int matches = 0;
         int transpositions = 0;
@@ -47,7 +131,7 @@ public final class SearchScorer {
             int start = Math.max(0, i - matchWindow);
             int end = Math.min(i + matchWindow + 1, len2);
             for (int j = start; j < end; j++) {
-                if (matched2[j] || s1.charAt(i) != s2.charAt(j)) continue;
+                if (matched2[j] || s1[i] != s2[j]) continue;
                 matched1[i] = true;
                 matched2[j] = true;
                 matches++;
@@ -62,7 +146,7 @@ public final class SearchScorer {
         for (int i = 0; i < len1; i++) {
             if (!matched1[i]) continue;
             while (!matched2[k]) k++;
-            if (s1.charAt(i) != s2.charAt(k)) transpositions++;
+            if (s1[i] != s2[k]) transpositions++;
             k++;
         }
 
@@ -74,7 +158,7 @@ public final class SearchScorer {
         int prefixLen = 0;
         int maxPrefix = Math.min(4, Math.min(len1, len2));
         for (int i = 0; i < maxPrefix; i++) {
-            if (s1.charAt(i) == s2.charAt(i)) {
+            if (s1[i] == s2[i]) {
                 prefixLen++;
             } else {
                 break;
@@ -84,29 +168,41 @@ public final class SearchScorer {
         return jaro + prefixLen * 0.1f * (1f - jaro);
     }
 
-    /**
-     * Scores a query against a target string using Jaro-Winkler plus
-     * prefix and substring bonuses (Kvaesitso approach).
-     *
-     * @return Score &gt; 0 if above the minimum threshold, 0 otherwise.
-     *         Not capped at 1.0 so that prefix matches always outrank substring matches.
-     */
-    public static float score(String query, String target) {
-        if (query == null || target == null) return 0f;
+    private static boolean startsWith(char[] s, char[] prefix) {
+        if (prefix.length > s.length) return false;
+        for (int i = 0; i < prefix.length; i++) {
+            if (s[i] != prefix[i]) return false;
+        }
+        return true;
+    }
 
-        String queryLower = query.toLowerCase();
-        String targetLower = target.toLowerCase();
+    private static boolean contains(char[] s, char[] part) {
+        int last = s.length - part.length;
+        outer:
+        for (int i = 0; i <= last; i++) {
+            for (int j = 0; j < part.length; j++) {
+                if (s[i + j] != part[j]) continue outer;
+            }
+            return true;
+        }
+        return false;
+    }
 
-        float jw = jaroWinklerSimilarity(queryLower, targetLower);
+    /** Per-thread Jaro-Winkler match flags, grown on demand and cleared before each use. */
+    private static class Scratch {
+        private boolean[] mMatched1 = new boolean[32];
+        private boolean[] mMatched2 = new boolean[32];
 
-        float bonus = 0f;
-        if (targetLower.startsWith(queryLower)) {
-            bonus = PREFIX_BONUS;
-        } else if (targetLower.contains(queryLower)) {
-            bonus = SUBSTRING_BONUS;
+        boolean[] matched1(int len) {
+            if (mMatched1.length < len) mMatched1 = new boolean[len];
+            Arrays.fill(mMatched1, 0, len, false);
+            return mMatched1;
         }
 
-        float total = jw + bonus;
-        return total >= THRESHOLD ? total : 0f;
+        boolean[] matched2(int len) {
+            if (mMatched2.length < len) mMatched2 = new boolean[len];
+            Arrays.fill(mMatched2, 0, len, false);
+            return mMatched2;
+        }
     }
 }
@@ -10,6 +10,8 @@
  */
 package com.android.launcher3.search;
 
+import android.os.SystemClock;
+
 import com.android.launcher3.allapps.BaseAllAppsAdapter.AdapterItem;
 import com.android.launcher3.search.providers.ProviderCategory;
 
@@ -50,7 +52,7 @@ final class SearchSession {
     /** Mutable accumulator written by provider callbacks; guarded by {@code synchronized(accumulator)}. */
     final SearchResult accumulator;
 
-    /** Remaining providers expected to complete. Reaches 0 → FINAL delivery. */
+    /** Remaining providers the session waits for. Reaches 0 → FINAL delivery. */
     final AtomicInteger pendingProviders;
 
     /**
@@ -59,6 +61,25 @@ final class SearchSession {
      */
     volatile boolean abandoned;
 
+    /** {@link SystemClock#uptimeMillis()} at session creation; latencies are measured from it. */
+    final long startTime;
+
+    /**
+     * Providers dispatched but not yet reported, for {@link SearchMetrics}. Main thread only,
+     * like every provider callback.
+     */
+    final EnumSet<ProviderCategory> pendingCategories;
+
+    /**
+     * Providers that ran past their time budget and were finalised without; their results are
+     * spliced in with another FINAL when they arrive. Main thread only.
+     */
+    final EnumSet<ProviderCategory> lateCategories;
+
+    /** Whether an INTERMEDIATE / FINAL delivery was already recorded. Main thread only. */
+    boolean intermediateRecorded;
+    boolean finalRecorded;
+
     SearchSession(long version, String query, EnumSet<ProviderCategory> enabledProviders,
             SearchCallback<AdapterItem> callback) {
         this.version = version;
@@ -68,5 +89,8 @@ final class SearchSession {
         this.accumulator = new SearchResult();
         this.pendingProviders = new AtomicInteger(0);
         this.abandoned = false;
+        this.startTime = SystemClock.uptimeMillis();
+        this.pendingCategories = EnumSet.noneOf(ProviderCategory.class);
+        this.lateCategories = EnumSet.noneOf(ProviderCategory.class);
     }
 }
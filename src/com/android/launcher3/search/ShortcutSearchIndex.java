@@ -0,0 +1,99 @@
+/*
+ * Copyright (C) 2025 DefaultLauncher Contributors
+ *
+ * This file is part of DefaultLauncher.
+ *
+ * DefaultLauncher is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ */
+package com.android.launcher3.search;
+
+import android.content.pm.ShortcutInfo;
+import android.os.UserHandle;
+
+import androidx.annotation.Nullable;
+
+import com.android.launcher3.util.PackageUserKey;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Label index of the deep shortcuts known to the model, used by shortcut search.
+ *
+ * <p>Maintained next to {@code BgDataModel.deepShortcutMap}: the loader fills it per user and
+ * {@code ShortcutsChangedTask} replaces a package's entries, so searching never has to query
+ * {@link android.content.pm.LauncherApps} across the binder. Labels are lowercased once.
+ */
+public class ShortcutSearchIndex {
+
+    private final Map<PackageUserKey, List<Entry>> mEntries = new LinkedHashMap<>();
+
+    /**
+     * Replaces the shortcuts of {@code packageName} for {@code user} with {@code shortcuts}, or
+     * of every package of the user if {@code packageName} is null.
+     */
+    public synchronized void update(@Nullable String packageName, UserHandle user,
+            List<ShortcutInfo> shortcuts) {
+        if (packageName != null) {
+            mEntries.remove(new PackageUserKey(packageName, user));
+        } else {
+            Iterator<PackageUserKey> keys = mEntries.keySet().iterator();
+            while (keys.hasNext()) {
+                if (keys.next().mUser.equals(user)) {
+                    keys.remove();
+                }
+            }
+        }
+
+        for (ShortcutInfo shortcut : shortcuts) {
+            CharSequence label = shortcut.getShortLabel();
+            if (label == null) label = shortcut.getLongLabel();
+            if (label == null) continue;
+
+            mEntries.computeIfAbsent(
+                    new PackageUserKey(shortcut.getPackage(), shortcut.getUserHandle()),
+                    k -> new ArrayList<>())
+                    .add(new Entry(shortcut, label.toString().toLowerCase()));
+        }
+    }
+
+    /** Removes every shortcut. */
+    public synchronized void clear() {
+        mEntries.clear();
+    }
+
+    /**
+     * Returns up to {@code maxResults} shortcuts of {@code user} whose label contains
+     * {@code queryLower}.
+     */
+    public synchronized List<ShortcutInfo> search(String queryLower, UserHandle user,
+            int maxResults) {
+        List<ShortcutInfo> results = new ArrayList<>();
+        for (Map.Entry<PackageUserKey, List<Entry>> e : mEntries.entrySet()) {
+            if (!e.getKey().mUser.equals(user)) continue;
+            for (Entry entry : e.getValue()) {
+                if (entry.labelLower.contains(queryLower)) {
+                    results.add(entry.shortcut);
+                    if (results.size() >= maxResults) return results;
+                }
+            }
+        }
+        return results;
+    }
+
+    private static class Entry {
+        final ShortcutInfo shortcut;
+        final String labelLower;
+
+        Entry(ShortcutInfo shortcut, String labelLower) {
+            this.shortcut = shortcut;
+            this.labelLower = labelLower;
+        }
+    }
+}
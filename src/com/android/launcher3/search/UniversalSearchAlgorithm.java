@@ -14,9 +14,11 @@ import static com.android.launcher3.util.Executors.MAIN_EXECUTOR;
 
 import android.content.Context;
 import android.os.Handler;
+import android.os.SystemClock;
 
 import com.android.launcher3.LauncherPrefs;
 import com.android.launcher3.allapps.BaseAllAppsAdapter.AdapterItem;
+import com.android.launcher3.model.data.AppInfo;
 import com.android.launcher3.search.providers.AppSearchProvider;
 import com.android.launcher3.search.providers.CalendarSearchProvider;
 import com.android.launcher3.search.providers.CalculatorProvider;
@@ -38,6 +40,7 @@ import com.android.launcher3.search.result.TimezoneResult;
 import com.android.launcher3.search.result.UnitConversion;
 
 import java.util.ArrayList;
+import java.util.EnumMap;
 import java.util.EnumSet;
 import java.util.List;
 import java.util.concurrent.atomic.AtomicLong;
@@ -54,9 +57,26 @@ import java.util.concurrent.atomic.AtomicLong;
  * {@code s.abandoned || s != mActiveSession} before mutating the accumulator,
  * so late-arriving I/O results from a superseded query cannot corrupt the
  * active state.
+ *
+ * <p>Latency model: each provider has a time budget (see
+ * {@link #getProviderTimeBudget}). Once every provider has either reported or
+ * run past its budget, the session delivers FINAL; a straggler's results are
+ * spliced in afterwards with another FINAL delivery. Providers may also stream
+ * partial results through {@link SearchProvider#searchProgressive}, which are
+ * painted as they arrive.
  */
 public class UniversalSearchAlgorithm implements SearchAlgorithm<AdapterItem> {
 
+    // Budgets for providers that answer from memory and for those that may hit IPC or disk
+    private static final long FAST_PROVIDER_TIME_BUDGET_MS = 100;
+    private static final long IO_PROVIDER_TIME_BUDGET_MS = 250;
+
+    // Per-category budgets set through setProviderTimeBudget. Main thread only.
+    private final EnumMap<ProviderCategory, Long> mTimeBudgetOverrides =
+            new EnumMap<>(ProviderCategory.class);
+    // Budget from the Debug settings page for every category but APPS, or -1. Read per session.
+    private long mDebugTimeBudgetMs = -1;
+
     private final Context mContext;
     private final Handler mResultHandler;
     private final SearchFilters mFilters;
@@ -84,7 +104,7 @@ public class UniversalSearchAlgorithm implements SearchAlgorithm<AdapterItem> {
         mExtraProviders.add(new TimezoneProvider());
         mExtraProviders.add(new ContactSearchProvider(context));
         mExtraProviders.add(new CalendarSearchProvider(context));
-        mExtraProviders.add(new FileSearchProvider());
+        mExtraProviders.add(new FileSearchProvider(context));
 
         mFilters.setOnFilterChangedListener(() -> {
             // Re-render the active session's accumulator with the new filter
@@ -128,17 +148,27 @@ public class UniversalSearchAlgorithm implements SearchAlgorithm<AdapterItem> {
         return enabled;
     }
 
+    /** Lets enabled providers warm up while the user starts typing. */
+    @Override
+    public void onSearchOpened() {
+        EnumSet<ProviderCategory> enabledProviders = snapshotEnabledProviders();
+        for (SearchProvider<?> provider : mExtraProviders) {
+            if (enabledProviders.contains(provider.category())) {
+                provider.onSearchOpened();
+            }
+        }
+    }
+
     @Override
     public void doSearch(String query, SearchCallback<AdapterItem> callback) {
         // Abandon the previous session (if any) so its in-flight provider
         // callbacks short-circuit before mutating any shared state.
-        SearchSession previous = mActiveSession;
-        if (previous != null) {
-            previous.abandoned = true;
-        }
+        abandonActiveSession();
         cancel(true);
 
         EnumSet<ProviderCategory> enabledProviders = snapshotEnabledProviders();
+        mDebugTimeBudgetMs = LauncherPrefs.get(mContext).get(
+                LauncherPrefs.SEARCH_PROVIDER_BUDGET_OVERRIDE);
         SearchSession s = new SearchSession(
                 mNextVersion.incrementAndGet(), query, enabledProviders, callback);
         mActiveSession = s;
@@ -147,105 +177,212 @@ public class UniversalSearchAlgorithm implements SearchAlgorithm<AdapterItem> {
             callback.onSearchResult(query, new ArrayList<>());
             return;
         }
+        SearchMetrics.INSTANCE.onSessionStarted();
 
-        // Count how many providers will run under this session's snapshot.
-        int providerCount = enabledProviders.contains(ProviderCategory.APPS) ? 1 : 0;
+        // Collect the providers that will run under this session's snapshot.
+        List<SearchProvider<?>> providers = new ArrayList<>();
+        if (enabledProviders.contains(ProviderCategory.APPS)) {
+            providers.add(mAppProvider);
+        }
         for (SearchProvider<?> provider : mExtraProviders) {
             if (query.length() >= provider.minQueryLength()
                     && enabledProviders.contains(provider.category())) {
-                providerCount++;
+                providers.add(provider);
             }
         }
-        if (providerCount == 0) {
+        if (providers.isEmpty()) {
             // No providers enabled — emit an empty FINAL.
             deliverResults(s, SearchCallback.FINAL);
             return;
         }
-        s.pendingProviders.set(providerCount);
+        s.pendingProviders.set(providers.size());
+        for (SearchProvider<?> provider : providers) {
+            s.pendingCategories.add(provider.category());
+        }
 
-        // Dispatch app search — INTERMEDIATE delivery so app results paint
-        // before slower I/O providers complete.
-        if (enabledProviders.contains(ProviderCategory.APPS)) {
-            mAppProvider.search(query, apps -> {
-                if (s.abandoned || s != mActiveSession) return;
-                synchronized (s.accumulator) {
-                    s.accumulator.apps.clear();
-                    s.accumulator.apps.addAll(apps);
-                }
-                int remaining = s.pendingProviders.decrementAndGet();
-                deliverResults(s, remaining <= 0 ? SearchCallback.FINAL : SearchCallback.INTERMEDIATE);
-            });
+        for (SearchProvider<?> provider : providers) {
+            dispatchProvider(s, provider);
         }
+    }
 
-        // Dispatch extra providers under the session's snapshotted enabled-set.
-        for (SearchProvider<?> provider : mExtraProviders) {
-            if (query.length() >= provider.minQueryLength()
-                    && enabledProviders.contains(provider.category())) {
-                dispatchProvider(s, provider);
-            }
+    /**
+     * Returns how long a session waits for {@code category} before delivering FINAL without it.
+     * Results arriving after the budget are spliced in with another FINAL delivery. 0 means the
+     * session always waits for the provider.
+     *
+     * <p>A budget set through {@link #setProviderTimeBudget} wins, then the one chosen on the
+     * Debug settings page, then the per-category default.
+     */
+    public long getProviderTimeBudget(ProviderCategory category) {
+        Long override = mTimeBudgetOverrides.get(category);
+        if (override != null) {
+            return override;
+        }
+        if (mDebugTimeBudgetMs >= 0 && category != ProviderCategory.APPS) {
+            return mDebugTimeBudgetMs;
         }
+        return getDefaultProviderTimeBudget(category);
     }
 
-    @SuppressWarnings("unchecked")
-    private void dispatchProvider(SearchSession s, SearchProvider<?> provider) {
+    /**
+     * Overrides the time budget of {@code category} for sessions started after this call.
+     * A negative {@code budgetMs} restores the default. Must be called on the main thread.
+     */
+    public void setProviderTimeBudget(ProviderCategory category, long budgetMs) {
+        if (budgetMs < 0) {
+            mTimeBudgetOverrides.remove(category);
+        } else {
+            mTimeBudgetOverrides.put(category, budgetMs);
+        }
+    }
+
+    private static long getDefaultProviderTimeBudget(ProviderCategory category) {
+        switch (category) {
+            case APPS:
+                // Top of the list; splicing it in late would reflow everything below
+                return 0;
+            case CALCULATOR:
+            case UNIT_CONVERTER:
+            case TIMEZONE:
+            case QUICK_ACTIONS:
+                return FAST_PROVIDER_TIME_BUDGET_MS;
+            case SHORTCUTS:
+            case CONTACTS:
+            case CALENDAR:
+            case FILES:
+            default:
+                return IO_PROVIDER_TIME_BUDGET_MS;
+        }
+    }
+
+    private <T> void dispatchProvider(SearchSession s, SearchProvider<T> provider) {
         ProviderCategory cat = provider.category();
-        provider.search(s.query, results -> {
-            if (s.abandoned || s != mActiveSession) return;
-            synchronized (s.accumulator) {
-                switch (cat) {
-                    case SHORTCUTS:
-                        s.accumulator.shortcuts.clear();
-                        s.accumulator.shortcuts.addAll((List<ShortcutResult>) (List<?>) results);
-                        break;
-                    case CONTACTS:
-                        s.accumulator.contacts.clear();
-                        s.accumulator.contacts.addAll((List<ContactResult>) (List<?>) results);
-                        break;
-                    case CALENDAR:
-                        s.accumulator.calendarEvents.clear();
-                        s.accumulator.calendarEvents.addAll(
-                                (List<CalendarResult>) (List<?>) results);
-                        break;
-                    case FILES:
-                        s.accumulator.files.clear();
-                        s.accumulator.files.addAll((List<FileResult>) (List<?>) results);
-                        break;
-                    case QUICK_ACTIONS:
-                        s.accumulator.quickActions.clear();
-                        s.accumulator.quickActions.addAll((List<QuickAction>) (List<?>) results);
-                        break;
-                    case CALCULATOR:
-                        if (!results.isEmpty()) {
-                            s.accumulator.calculator = (CalculatorResult) results.get(0);
-                        }
-                        break;
-                    case UNIT_CONVERTER:
-                        if (!results.isEmpty()) {
-                            s.accumulator.unitConversion = (UnitConversion) results.get(0);
-                        }
-                        break;
-                    case TIMEZONE:
-                        if (!results.isEmpty()) {
-                            s.accumulator.timezone = (TimezoneResult) results.get(0);
-                        }
-                        break;
-                    case APPS:
-                        // AppSearchProvider has its own dedicated dispatch path
-                        // in doSearch() with progressive INTERMEDIATE delivery —
-                        // never routed here.
-                        break;
+        long budget = getProviderTimeBudget(cat);
+        if (budget > 0) {
+            mResultHandler.postDelayed(() -> onProviderDeadline(s, cat), budget);
+        }
+        provider.searchProgressive(s.query, new SearchProvider.ResultSink<T>() {
+            @Override
+            public void onPartialResults(List<T> results) {
+                if (s.abandoned || s != mActiveSession
+                        || !s.pendingCategories.contains(cat)) {
+                    return;
                 }
+                applyResults(s, cat, results);
+                deliverResults(s, s.pendingProviders.get() <= 0
+                        ? SearchCallback.FINAL : SearchCallback.INTERMEDIATE);
             }
-            int remaining = s.pendingProviders.decrementAndGet();
-            if (remaining <= 0) {
-                deliverResults(s, SearchCallback.FINAL);
+
+            @Override
+            public void onResults(List<T> results) {
+                if (!recordProviderResult(s, cat)) return;
+                applyResults(s, cat, results);
+                if (s.lateCategories.remove(cat)) {
+                    // Straggler: the session already went FINAL without it
+                    deliverResults(s, SearchCallback.FINAL);
+                    return;
+                }
+                int remaining = s.pendingProviders.decrementAndGet();
+                if (remaining <= 0) {
+                    deliverResults(s, SearchCallback.FINAL);
+                } else if (cat == ProviderCategory.APPS) {
+                    // INTERMEDIATE delivery so app results paint before slower
+                    // I/O providers complete.
+                    deliverResults(s, SearchCallback.INTERMEDIATE);
+                }
             }
         });
     }
 
+    /** Stops waiting for {@code cat} if it has not reported within its time budget. */
+    private void onProviderDeadline(SearchSession s, ProviderCategory cat) {
+        if (s.abandoned || s != mActiveSession || !s.pendingCategories.contains(cat)) return;
+        s.lateCategories.add(cat);
+        SearchMetrics.INSTANCE.onProviderDeadlineMissed(cat);
+        if (s.pendingProviders.decrementAndGet() <= 0) {
+            deliverResults(s, SearchCallback.FINAL);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static void applyResults(SearchSession s, ProviderCategory cat, List<?> results) {
+        synchronized (s.accumulator) {
+            switch (cat) {
+                case APPS:
+                    s.accumulator.apps.clear();
+                    s.accumulator.apps.addAll((List<AppInfo>) results);
+                    break;
+                case SHORTCUTS:
+                    s.accumulator.shortcuts.clear();
+                    s.accumulator.shortcuts.addAll((List<ShortcutResult>) results);
+                    break;
+                case CONTACTS:
+                    s.accumulator.contacts.clear();
+                    s.accumulator.contacts.addAll((List<ContactResult>) results);
+                    break;
+                case CALENDAR:
+                    s.accumulator.calendarEvents.clear();
+                    s.accumulator.calendarEvents.addAll((List<CalendarResult>) results);
+                    break;
+                case FILES:
+                    s.accumulator.files.clear();
+                    s.accumulator.files.addAll((List<FileResult>) results);
+                    break;
+                case QUICK_ACTIONS:
+                    s.accumulator.quickActions.clear();
+                    s.accumulator.quickActions.addAll((List<QuickAction>) results);
+                    break;
+                case CALCULATOR:
+                    s.accumulator.calculator =
+                            results.isEmpty() ? null : (CalculatorResult) results.get(0);
+                    break;
+                case UNIT_CONVERTER:
+                    s.accumulator.unitConversion =
+                            results.isEmpty() ? null : (UnitConversion) results.get(0);
+                    break;
+                case TIMEZONE:
+                    s.accumulator.timezone =
+                            results.isEmpty() ? null : (TimezoneResult) results.get(0);
+                    break;
+            }
+        }
+    }
+
+    /**
+     * Records a provider callback in {@link SearchMetrics}. Returns false if the session is no
+     * longer active, in which case the result is dropped.
+     */
+    private boolean recordProviderResult(SearchSession s, ProviderCategory category) {
+        if (s.abandoned || s != mActiveSession) {
+            SearchMetrics.INSTANCE.onProviderResultDropped(category);
+            return false;
+        }
+        s.pendingCategories.remove(category);
+        SearchMetrics.INSTANCE.onProviderResult(
+                category, SystemClock.uptimeMillis() - s.startTime);
+        return true;
+    }
+
+    /** Marks the active session abandoned, recording the providers it was still waiting on. */
+    private void abandonActiveSession() {
+        SearchSession s = mActiveSession;
+        if (s == null) return;
+        s.abandoned = true;
+        if (!s.pendingCategories.isEmpty()) {
+            SearchMetrics.INSTANCE.onSessionAbandoned(s.pendingCategories, s.finalRecorded);
+        }
+    }
+
     /** Converts the session's SearchResult into adapter items and dispatches via the callback. */
     private void deliverResults(SearchSession s, int resultCode) {
         if (s.abandoned || s != mActiveSession) return;
+        if (resultCode == SearchCallback.INTERMEDIATE && !s.intermediateRecorded) {
+            s.intermediateRecorded = true;
+            SearchMetrics.INSTANCE.onFirstIntermediate(SystemClock.uptimeMillis() - s.startTime);
+        } else if (resultCode == SearchCallback.FINAL && !s.finalRecorded) {
+            s.finalRecorded = true;
+            SearchMetrics.INSTANCE.onFinal(SystemClock.uptimeMillis() - s.startTime);
+        }
         ArrayList<AdapterItem> items = UniversalSearchAdapterProvider.convertResults(
                 mContext, s.accumulator, mFilters, s.query, resultCode);
         s.callback.onSearchResult(s.query, items, resultCode);
@@ -265,10 +402,10 @@ public class UniversalSearchAlgorithm implements SearchAlgorithm<AdapterItem> {
     @Override
     public void destroy() {
         cancel(true);
-        SearchSession s = mActiveSession;
-        if (s != null) {
-            s.abandoned = true;
+        for (SearchProvider<?> provider : mExtraProviders) {
+            provider.destroy();
         }
+        abandonActiveSession();
         mActiveSession = null;
     }
 }
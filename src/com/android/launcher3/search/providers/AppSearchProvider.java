@@ -17,14 +17,18 @@ import android.os.Handler;
 
 import com.android.launcher3.LauncherAppState;
 import com.android.launcher3.model.data.AppInfo;
-import com.android.launcher3.search.SearchScorer;
+import com.android.launcher3.search.AppSearchIndex;
 
-import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Consumer;
 
 /**
  * Searches installed apps by title. Universal-search apps provider.
+ *
+ * <p>Matching runs against an {@link AppSearchIndex} that is synced incrementally from
+ * {@link com.android.launcher3.model.AllAppsList} on the model thread. Queries superseded
+ * before their model task runs are skipped, so fast typing does not queue up stale scans.
  */
 public class AppSearchProvider implements SearchProvider<AppInfo> {
 
@@ -33,6 +37,10 @@ public class AppSearchProvider implements SearchProvider<AppInfo> {
     private final LauncherAppState mAppState;
     private final Handler mResultHandler;
 
+    // Only accessed on the model thread
+    private final AppSearchIndex mIndex = new AppSearchIndex();
+    private final AtomicInteger mQueryVersion = new AtomicInteger();
+
     public AppSearchProvider(Context context) {
         mAppState = LauncherAppState.getInstance(context);
         mResultHandler = new Handler(MAIN_EXECUTOR.getLooper());
@@ -40,14 +48,18 @@ public class AppSearchProvider implements SearchProvider<AppInfo> {
 
     @Override
     public void search(String query, Consumer<List<AppInfo>> callback) {
+        int version = mQueryVersion.incrementAndGet();
         mAppState.getModel().enqueueModelUpdateTask((taskController, dataModel, apps) -> {
-            List<AppInfo> result = getTitleMatchResult(apps.data, query);
+            if (version != mQueryVersion.get()) return;
+            mIndex.sync(apps);
+            List<AppInfo> result = mIndex.search(query, MAX_RESULTS);
             mResultHandler.post(() -> callback.accept(result));
         });
     }
 
     @Override
     public void cancel() {
+        mQueryVersion.incrementAndGet();
         mResultHandler.removeCallbacksAndMessages(null);
     }
 
@@ -55,37 +67,4 @@ public class AppSearchProvider implements SearchProvider<AppInfo> {
     public ProviderCategory category() {
         return ProviderCategory.APPS;
     }
-
-    private static List<AppInfo> getTitleMatchResult(List<AppInfo> apps, String query) {
-        // Score every app using Jaro-Winkler with prefix/substring bonuses
-        List<ScoredApp> scored = new ArrayList<>();
-        int total = apps.size();
-        for (int i = 0; i < total; i++) {
-            AppInfo info = apps.get(i);
-            float s = SearchScorer.score(query, info.title.toString());
-            if (s > 0f) {
-                scored.add(new ScoredApp(info, s));
-            }
-        }
-
-        // Sort by score descending (best match first)
-        scored.sort((a, b) -> Float.compare(b.score, a.score));
-
-        List<AppInfo> result = new ArrayList<>();
-        int cap = Math.min(scored.size(), MAX_RESULTS);
-        for (int i = 0; i < cap; i++) {
-            result.add(scored.get(i).app);
-        }
-        return result;
-    }
-
-    private static class ScoredApp {
-        final AppInfo app;
-        final float score;
-
-        ScoredApp(AppInfo app, float score) {
-            this.app = app;
-            this.score = score;
-        }
-    }
 }
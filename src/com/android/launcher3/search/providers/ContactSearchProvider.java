@@ -16,49 +16,91 @@ import android.Manifest;
 import android.content.ContentResolver;
 import android.content.Context;
 import android.content.pm.PackageManager;
+import android.database.ContentObserver;
 import android.database.Cursor;
 import android.net.Uri;
 import android.os.Handler;
 import android.provider.ContactsContract;
+import android.provider.ContactsContract.CommonDataKinds.Email;
+import android.provider.ContactsContract.CommonDataKinds.Phone;
+import android.provider.ContactsContract.CommonDataKinds.StructuredName;
+import android.provider.ContactsContract.Data;
 import android.util.Log;
 
+import com.android.launcher3.search.SearchScorer;
 import com.android.launcher3.search.result.ContactResult;
 import com.android.launcher3.util.Executors;
 
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.function.Consumer;
 
 /**
  * Searches contacts via ContentResolver and ContactsContract.
  * Requires READ_CONTACTS permission (requested in Search Settings).
+ *
+ * <p>Contacts are loaded into an in-memory snapshot with a single {@link Data} query (names,
+ * phones and emails together) and matched with {@link SearchScorer}, like apps. The snapshot
+ * is kept warm and reloaded in the background when the contacts provider reports a change.
  */
 public class ContactSearchProvider implements SearchProvider<ContactResult> {
 
     private static final String TAG = "ContactSearchProvider";
     private static final int MAX_RESULTS = 3;
+    private static final int MAX_VALUES_PER_KIND = 3;
+
+    private static final String[] DATA_PROJECTION = {
+            Data.CONTACT_ID,
+            Data.LOOKUP_KEY,
+            Data.DISPLAY_NAME_PRIMARY,
+            Data.PHOTO_URI,
+            Data.MIMETYPE,
+            Data.DATA1,
+    };
 
     private final Context mContext;
     private final Handler mResultHandler;
     private volatile boolean mCancelled;
 
+    private final Object mLoadLock = new Object();
+    private final AtomicBoolean mReloadQueued = new AtomicBoolean();
+    // Guards mObserverRegistered and mDestroyed, so a load still running after destroy()
+    // cannot register the observer again
+    private final Object mObserverLock = new Object();
+    private boolean mObserverRegistered;
+    private boolean mDestroyed;
+    private final ContentObserver mObserver = new ContentObserver(null) {
+        @Override
+        public void onChange(boolean selfChange) {
+            scheduleReload();
+        }
+    };
+    // Null until the first load
+    private volatile List<ContactEntry> mSnapshot;
+
     public ContactSearchProvider(Context context) {
         mContext = context.getApplicationContext();
         mResultHandler = new Handler(MAIN_EXECUTOR.getLooper());
+        if (hasPermission()) {
+            // Warm the snapshot before the first keystroke
+            scheduleReload();
+        }
     }
 
     @Override
     public void search(String query, Consumer<List<ContactResult>> callback) {
-        if (mContext.checkSelfPermission(Manifest.permission.READ_CONTACTS)
-                != PackageManager.PERMISSION_GRANTED) {
+        if (!hasPermission()) {
             mResultHandler.post(() -> callback.accept(Collections.emptyList()));
             return;
         }
 
         mCancelled = false;
         Executors.THREAD_POOL_EXECUTOR.execute(() -> {
-            List<ContactResult> results = queryContacts(query);
+            List<ContactResult> results = match(getSnapshot(), query);
             if (!mCancelled) {
                 mResultHandler.post(() -> callback.accept(results));
             }
@@ -71,6 +113,17 @@ public class ContactSearchProvider implements SearchProvider<ContactResult> {
         mResultHandler.removeCallbacksAndMessages(null);
     }
 
+    @Override
+    public void destroy() {
+        synchronized (mObserverLock) {
+            mDestroyed = true;
+            if (mObserverRegistered) {
+                mObserverRegistered = false;
+                mContext.getContentResolver().unregisterContentObserver(mObserver);
+            }
+        }
+    }
+
     @Override
     public ProviderCategory category() {
         return ProviderCategory.CONTACTS;
@@ -81,88 +134,159 @@ public class ContactSearchProvider implements SearchProvider<ContactResult> {
         return 2;
     }
 
-    private List<ContactResult> queryContacts(String query) {
-        List<ContactResult> results = new ArrayList<>();
+    private boolean hasPermission() {
+        return mContext.checkSelfPermission(Manifest.permission.READ_CONTACTS)
+                == PackageManager.PERMISSION_GRANTED;
+    }
+
+    private List<ContactEntry> getSnapshot() {
+        List<ContactEntry> snapshot = mSnapshot;
+        if (snapshot != null) return snapshot;
+        synchronized (mLoadLock) {
+            if (mSnapshot == null) {
+                mSnapshot = loadContacts();
+            }
+            return mSnapshot;
+        }
+    }
+
+    private void scheduleReload() {
+        if (!mReloadQueued.compareAndSet(false, true)) return;
+        Executors.THREAD_POOL_EXECUTOR.execute(() -> {
+            // Cleared before loading so a change during the load queues another one
+            mReloadQueued.set(false);
+            synchronized (mLoadLock) {
+                mSnapshot = loadContacts();
+            }
+        });
+    }
+
+    private List<ContactResult> match(List<ContactEntry> contacts, String query) {
+        char[] queryLower = query.toLowerCase().toCharArray();
+
+        // Small bounded top-K, best first; ties keep display-name order
+        ContactEntry[] top = new ContactEntry[MAX_RESULTS];
+        float[] topScores = new float[MAX_RESULTS];
+        int count = 0;
+        for (int i = 0, n = contacts.size(); i < n; i++) {
+            if (mCancelled) break;
+            ContactEntry entry = contacts.get(i);
+            float minScore = count < MAX_RESULTS ? 0f : topScores[MAX_RESULTS - 1];
+            float score = SearchScorer.scoreLowercase(queryLower, entry.nameLower, minScore);
+            if (score <= 0f || (count == MAX_RESULTS && score <= minScore)) continue;
+
+            int pos = count < MAX_RESULTS ? count++ : MAX_RESULTS - 1;
+            while (pos > 0 && topScores[pos - 1] < score) {
+                top[pos] = top[pos - 1];
+                topScores[pos] = topScores[pos - 1];
+                pos--;
+            }
+            top[pos] = entry;
+            topScores[pos] = score;
+        }
+
+        List<ContactResult> results = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            results.add(top[i].result);
+        }
+        return results;
+    }
+
+    /** Loads every named contact with up to three phones and emails in one query. */
+    private List<ContactEntry> loadContacts() {
         ContentResolver resolver = mContext.getContentResolver();
+        synchronized (mObserverLock) {
+            if (!mObserverRegistered && !mDestroyed) {
+                mObserverRegistered = true;
+                resolver.registerContentObserver(
+                        ContactsContract.Contacts.CONTENT_URI, true, mObserver);
+            }
+        }
 
+        Map<Long, ContactBuilder> builders = new LinkedHashMap<>();
         try (Cursor cursor = resolver.query(
-                ContactsContract.Contacts.CONTENT_URI,
+                Data.CONTENT_URI,
+                DATA_PROJECTION,
+                Data.MIMETYPE + " IN (?, ?, ?)",
                 new String[]{
-                        ContactsContract.Contacts._ID,
-                        ContactsContract.Contacts.LOOKUP_KEY,
-                        ContactsContract.Contacts.DISPLAY_NAME_PRIMARY,
-                        ContactsContract.Contacts.PHOTO_URI,
-                        ContactsContract.Contacts.HAS_PHONE_NUMBER
+                        StructuredName.CONTENT_ITEM_TYPE,
+                        Phone.CONTENT_ITEM_TYPE,
+                        Email.CONTENT_ITEM_TYPE
                 },
-                ContactsContract.Contacts.DISPLAY_NAME_PRIMARY + " LIKE ?",
-                new String[]{"%" + query + "%"},
-                ContactsContract.Contacts.DISPLAY_NAME_PRIMARY + " ASC")) {
+                Data.DISPLAY_NAME_PRIMARY + " ASC, " + Data.CONTACT_ID + " ASC")) {
 
-            if (cursor == null) return results;
+            if (cursor == null) return Collections.emptyList();
 
-            while (cursor.moveToNext() && results.size() < MAX_RESULTS) {
-                if (mCancelled) break;
-
-                long contactId = cursor.getLong(0);
-                String lookupKey = cursor.getString(1);
+            while (cursor.moveToNext()) {
                 String displayName = cursor.getString(2);
-                String photoUriStr = cursor.getString(3);
-                int hasPhone = cursor.getInt(4);
-
-                Uri photoUri = photoUriStr != null ? Uri.parse(photoUriStr) : null;
+                if (displayName == null) continue;
 
-                // Get phone numbers
-                String[] phones = hasPhone > 0
-                        ? getPhoneNumbers(resolver, contactId) : new String[0];
-
-                // Get email addresses
-                String[] emails = getEmailAddresses(resolver, contactId);
+                long contactId = cursor.getLong(0);
+                ContactBuilder builder = builders.get(contactId);
+                if (builder == null) {
+                    builder = new ContactBuilder(contactId, cursor.getString(1), displayName,
+                            cursor.getString(3));
+                    builders.put(contactId, builder);
+                }
 
-                results.add(new ContactResult(
-                        contactId, lookupKey, displayName, photoUri, phones, emails));
+                String mimeType = cursor.getString(4);
+                String value = cursor.getString(5);
+                if (Phone.CONTENT_ITEM_TYPE.equals(mimeType)) {
+                    addValue(builder.phones, value);
+                } else if (Email.CONTENT_ITEM_TYPE.equals(mimeType)) {
+                    addValue(builder.emails, value);
+                }
             }
         } catch (Exception e) {
-            Log.w(TAG, "Error searching contacts", e);
+            Log.w(TAG, "Error loading contacts", e);
+            // Keep serving the previous snapshot, if any
+            List<ContactEntry> previous = mSnapshot;
+            return previous != null ? previous : Collections.emptyList();
         }
 
-        return results;
+        List<ContactEntry> contacts = new ArrayList<>(builders.size());
+        for (ContactBuilder builder : builders.values()) {
+            contacts.add(builder.build());
+        }
+        return Collections.unmodifiableList(contacts);
     }
 
-    private String[] getPhoneNumbers(ContentResolver resolver, long contactId) {
-        List<String> phones = new ArrayList<>();
-        try (Cursor cursor = resolver.query(
-                ContactsContract.CommonDataKinds.Phone.CONTENT_URI,
-                new String[]{ContactsContract.CommonDataKinds.Phone.NUMBER},
-                ContactsContract.CommonDataKinds.Phone.CONTACT_ID + " = ?",
-                new String[]{String.valueOf(contactId)},
-                null)) {
-            if (cursor != null) {
-                while (cursor.moveToNext() && phones.size() < 3) {
-                    phones.add(cursor.getString(0));
-                }
-            }
-        } catch (Exception e) {
-            Log.w(TAG, "Error getting phone numbers", e);
+    private static void addValue(List<String> values, String value) {
+        // The same number or address often comes from several linked raw contacts
+        if (value != null && values.size() < MAX_VALUES_PER_KIND && !values.contains(value)) {
+            values.add(value);
         }
-        return phones.toArray(new String[0]);
     }
 
-    private String[] getEmailAddresses(ContentResolver resolver, long contactId) {
-        List<String> emails = new ArrayList<>();
-        try (Cursor cursor = resolver.query(
-                ContactsContract.CommonDataKinds.Email.CONTENT_URI,
-                new String[]{ContactsContract.CommonDataKinds.Email.ADDRESS},
-                ContactsContract.CommonDataKinds.Email.CONTACT_ID + " = ?",
-                new String[]{String.valueOf(contactId)},
-                null)) {
-            if (cursor != null) {
-                while (cursor.moveToNext() && emails.size() < 3) {
-                    emails.add(cursor.getString(0));
-                }
-            }
-        } catch (Exception e) {
-            Log.w(TAG, "Error getting email addresses", e);
+    private static class ContactEntry {
+        final ContactResult result;
+        final char[] nameLower;
+
+        ContactEntry(ContactResult result) {
+            this.result = result;
+            this.nameLower = result.displayName.toLowerCase().toCharArray();
+        }
+    }
+
+    private static class ContactBuilder {
+        final long contactId;
+        final String lookupKey;
+        final String displayName;
+        final String photoUri;
+        final List<String> phones = new ArrayList<>(MAX_VALUES_PER_KIND);
+        final List<String> emails = new ArrayList<>(MAX_VALUES_PER_KIND);
+
+        ContactBuilder(long contactId, String lookupKey, String displayName, String photoUri) {
+            this.contactId = contactId;
+            this.lookupKey = lookupKey;
+            this.displayName = displayName;
+            this.photoUri = photoUri;
+        }
+
+        ContactEntry build() {
+            return new ContactEntry(new ContactResult(contactId, lookupKey, displayName,
+                    photoUri != null ? Uri.parse(photoUri) : null,
+                    phones.toArray(new String[0]), emails.toArray(new String[0])));
         }
-        return emails.toArray(new String[0]);
     }
 }
@@ -0,0 +1,354 @@
+/*
+ * Copyright (C) 2025 DefaultLauncher Contributors
+ *
+ * This file is part of DefaultLauncher.
+ *
+ * DefaultLauncher is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ */
+package com.android.launcher3.search.providers;
+
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.annotation.Nullable;
+import androidx.annotation.WorkerThread;
+
+import com.android.launcher3.search.result.FileResult;
+import com.android.launcher3.util.Executors;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+
+/**
+ * Persistent file-name index for {@link FileSearchProvider}.
+ *
+ * <p>The index maps each searched directory to an immutable listing of it (files with
+ * lowercase name, size and mtime, plus non-hidden subdirectories). Listings are
+ * published together as a volatile snapshot, so queries are answered in memory without locks
+ * or disk I/O.
+ *
+ * <p>A refresh stats every indexed directory and re-lists only those whose mtime changed.
+ * Adding, removing or renaming an entry updates its parent directory's mtime, so an unchanged
+ * tree costs one stat per directory. Editing a file in place does not touch its directory; the
+ * size and mtime of such a file catch up the next time its directory changes.
+ *
+ * <p>Refreshes run in the background when a search session opens (see {@link #refreshAsync}),
+ * so typing never waits on storage. Snapshots are persisted to the app cache; after a restart,
+ * queries are answered from the previous listing until the first refresh lands.
+ */
+class FileSearchIndex {
+
+    private static final String TAG = "FileSearchIndex";
+
+    private static final int FORMAT = 1;
+
+    private final File mStoreFile;
+    private final String mRootPath;
+    private final String[] mRootPaths;
+    private final int mMaxDepth;
+
+    // Serialises loading and refreshing; queries never take it once a snapshot exists
+    private final Object mRefreshLock = new Object();
+    private final AtomicBoolean mRefreshQueued = new AtomicBoolean();
+
+    private volatile Map<String, DirNode> mDirs;
+    private volatile long mLastRefreshTime;
+
+    /**
+     * @param storeFile file the index is persisted to
+     * @param root      storage root the searched directories live in
+     * @param dirNames  top-level directories to index, in search order
+     * @param maxDepth  deepest directory level to index, the top-level directories being 0
+     */
+    FileSearchIndex(File storeFile, File root, String[] dirNames, int maxDepth) {
+        mStoreFile = storeFile;
+        mRootPath = root.getPath();
+        mRootPaths = new String[dirNames.length];
+        for (int i = 0; i < dirNames.length; i++) {
+            mRootPaths[i] = new File(root, dirNames[i]).getPath();
+        }
+        mMaxDepth = maxDepth;
+    }
+
+    /**
+     * Returns up to {@code maxResults} files whose lowercase name contains {@code queryLower}.
+     * Prefix matches come before other substring matches; within each group, results follow
+     * directory order.
+     *
+     * <p>Blocks on disk only the very first time, when there is neither a snapshot in memory
+     * nor a persisted one. A stale snapshot is answered from as-is; only a snapshot that was
+     * never refreshed in this process schedules a refresh from here.
+     *
+     * @param onPartial if not null, receives the results so far (in the same order) after each
+     *                  top-level directory that added matches, while more directories remain
+     */
+    @WorkerThread
+    List<FileResult> query(String queryLower, int maxResults, BooleanSupplier cancelled,
+            @Nullable Consumer<List<FileResult>> onPartial) {
+        Map<String, DirNode> dirs = ensureLoaded();
+        if (mLastRefreshTime == 0) {
+            refreshAsync();
+        }
+
+        List<FileResult> prefixMatches = new ArrayList<>();
+        List<FileResult> substringMatches = new ArrayList<>();
+        for (int r = 0; r < mRootPaths.length; r++) {
+            int found = prefixMatches.size() + substringMatches.size();
+            if (!collect(dirs, mRootPaths[r], queryLower, maxResults, prefixMatches,
+                    substringMatches, cancelled)) {
+                break;
+            }
+            if (onPartial != null && r < mRootPaths.length - 1
+                    && prefixMatches.size() + substringMatches.size() > found) {
+                onPartial.accept(merge(prefixMatches, substringMatches, maxResults));
+            }
+        }
+        return merge(prefixMatches, substringMatches, maxResults);
+    }
+
+    /** Returns a new list of the prefix matches followed by substring matches, capped. */
+    private static List<FileResult> merge(List<FileResult> prefixMatches,
+            List<FileResult> substringMatches, int maxResults) {
+        List<FileResult> merged = new ArrayList<>(prefixMatches);
+        for (int i = 0; i < substringMatches.size() && merged.size() < maxResults; i++) {
+            merged.add(substringMatches.get(i));
+        }
+        return merged;
+    }
+
+    /** Depth-first walk of the snapshot. Returns false once the search can stop. */
+    private boolean collect(Map<String, DirNode> dirs, String path, String queryLower,
+            int maxResults, List<FileResult> prefixMatches, List<FileResult> substringMatches,
+            BooleanSupplier cancelled) {
+        if (cancelled.getAsBoolean() || prefixMatches.size() >= maxResults) return false;
+        DirNode node = dirs.get(path);
+        if (node == null) return true;
+
+        for (FileEntry file : node.files) {
+            if (file.nameLower.startsWith(queryLower)) {
+                prefixMatches.add(file.toResult(node.path));
+                if (prefixMatches.size() >= maxResults) return false;
+            } else if (substringMatches.size() < maxResults
+                    && file.nameLower.contains(queryLower)) {
+                substringMatches.add(file.toResult(node.path));
+            }
+        }
+        for (String subdir : node.subdirPaths) {
+            if (!collect(dirs, subdir, queryLower, maxResults, prefixMatches,
+                    substringMatches, cancelled)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private Map<String, DirNode> ensureLoaded() {
+        Map<String, DirNode> dirs = mDirs;
+        if (dirs != null) return dirs;
+        synchronized (mRefreshLock) {
+            if (mDirs == null) {
+                Map<String, DirNode> persisted = read();
+                if (persisted != null) {
+                    // Leaves mLastRefreshTime at 0 so the caller schedules a refresh
+                    mDirs = persisted;
+                } else {
+                    refreshLocked();
+                }
+            }
+            return mDirs;
+        }
+    }
+
+    /**
+     * Loads the persisted snapshot if needed and re-lists changed directories on a background
+     * thread. Calls made while a refresh is already queued are dropped.
+     */
+    void refreshAsync() {
+        if (!mRefreshQueued.compareAndSet(false, true)) return;
+        Executors.THREAD_POOL_EXECUTOR.execute(() -> {
+            try {
+                synchronized (mRefreshLock) {
+                    if (mDirs == null) mDirs = read();
+                    refreshLocked();
+                }
+            } finally {
+                mRefreshQueued.set(false);
+            }
+        });
+    }
+
+    private void refreshLocked() {
+        Map<String, DirNode> old = mDirs != null ? mDirs : Collections.emptyMap();
+        Map<String, DirNode> next = new HashMap<>(Math.max(16, old.size() * 2));
+        int relisted = 0;
+        for (String rootPath : mRootPaths) {
+            relisted += refreshDir(new File(rootPath), 0, old, next);
+        }
+
+        mDirs = next;
+        mLastRefreshTime = SystemClock.elapsedRealtime();
+        if (relisted > 0 || next.size() != old.size()) {
+            write(next);
+        }
+    }
+
+    /** Adds the listing of {@code dir} and its subtree to {@code next}; returns dirs re-listed. */
+    private int refreshDir(File dir, int depth, Map<String, DirNode> old,
+            Map<String, DirNode> next) {
+        long mtime = dir.lastModified();
+        if (mtime == 0) return 0;
+
+        String path = dir.getPath();
+        int relisted = 0;
+        DirNode node = old.get(path);
+        if (node == null || node.mtime != mtime) {
+            node = list(dir, mtime);
+            if (node == null) return 0;
+            relisted++;
+        }
+        next.put(path, node);
+
+        if (depth < mMaxDepth) {
+            for (String subdir : node.subdirPaths) {
+                relisted += refreshDir(new File(subdir), depth + 1, old, next);
+            }
+        }
+        return relisted;
+    }
+
+    @Nullable
+    private static DirNode list(File dir, long mtime) {
+        File[] children = dir.listFiles();
+        if (children == null) return null;
+
+        List<FileEntry> files = new ArrayList<>();
+        List<String> subdirs = new ArrayList<>();
+        for (File child : children) {
+            String name = child.getName();
+            if (child.isDirectory()) {
+                // Skip hidden directories
+                if (!name.startsWith(".")) {
+                    subdirs.add(child.getPath());
+                }
+            } else {
+                files.add(new FileEntry(name, child.length(), child.lastModified()));
+            }
+        }
+        return new DirNode(dir.getPath(), mtime,
+                files.toArray(new FileEntry[0]), subdirs.toArray(new String[0]));
+    }
+
+    @Nullable
+    private Map<String, DirNode> read() {
+        if (!mStoreFile.isFile()) return null;
+        try (DataInputStream in = new DataInputStream(
+                new BufferedInputStream(new FileInputStream(mStoreFile)))) {
+            if (in.readInt() != FORMAT || !mRootPath.equals(in.readUTF())) return null;
+
+            int dirCount = in.readInt();
+            Map<String, DirNode> dirs = new HashMap<>(Math.max(16, dirCount * 2));
+            for (int d = 0; d < dirCount; d++) {
+                String path = in.readUTF();
+                long mtime = in.readLong();
+                FileEntry[] files = new FileEntry[in.readInt()];
+                for (int i = 0; i < files.length; i++) {
+                    files[i] = new FileEntry(in.readUTF(), in.readLong(), in.readLong());
+                }
+                String[] subdirs = new String[in.readInt()];
+                for (int i = 0; i < subdirs.length; i++) {
+                    subdirs[i] = in.readUTF();
+                }
+                dirs.put(path, new DirNode(path, mtime, files, subdirs));
+            }
+            return dirs;
+        } catch (IOException | RuntimeException e) {
+            Log.w(TAG, "Discarding unreadable file search index", e);
+            mStoreFile.delete();
+            return null;
+        }
+    }
+
+    private void write(Map<String, DirNode> dirs) {
+        File tmp = new File(mStoreFile.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(tmp)))) {
+            out.writeInt(FORMAT);
+            out.writeUTF(mRootPath);
+            out.writeInt(dirs.size());
+            for (DirNode node : dirs.values()) {
+                out.writeUTF(node.path);
+                out.writeLong(node.mtime);
+                out.writeInt(node.files.length);
+                for (FileEntry file : node.files) {
+                    out.writeUTF(file.name);
+                    out.writeLong(file.size);
+                    out.writeLong(file.lastModified);
+                }
+                out.writeInt(node.subdirPaths.length);
+                for (String subdir : node.subdirPaths) {
+                    out.writeUTF(subdir);
+                }
+            }
+        } catch (IOException e) {
+            Log.w(TAG, "Failed to persist file search index", e);
+            tmp.delete();
+            return;
+        }
+        if (!tmp.renameTo(mStoreFile)) {
+            Log.w(TAG, "Failed to replace file search index");
+            tmp.delete();
+        }
+    }
+
+    /** Immutable listing of one directory. */
+    private static class DirNode {
+        final String path;
+        final long mtime;
+        final FileEntry[] files;
+        final String[] subdirPaths;
+
+        DirNode(String path, long mtime, FileEntry[] files, String[] subdirPaths) {
+            this.path = path;
+            this.mtime = mtime;
+            this.files = files;
+            this.subdirPaths = subdirPaths;
+        }
+    }
+
+    private static class FileEntry {
+        final String name;
+        final String nameLower;
+        final long size;
+        final long lastModified;
+
+        FileEntry(String name, long size, long lastModified) {
+            this.name = name;
+            this.nameLower = name.toLowerCase();
+            this.size = size;
+            this.lastModified = lastModified;
+        }
+
+        FileResult toResult(String dirPath) {
+            // Mime type is resolved for matches only; it is derived from the name anyway
+            return new FileResult(name, dirPath + File.separator + name, size,
+                    FileResult.guessMimeType(name), lastModified);
+        }
+    }
+}
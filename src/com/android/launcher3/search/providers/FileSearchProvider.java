@@ -12,58 +12,86 @@ package com.android.launcher3.search.providers;
 
 import static com.android.launcher3.util.Executors.MAIN_EXECUTOR;
 
+import android.content.Context;
 import android.os.Environment;
 import android.os.Handler;
-import android.util.Log;
 
 import com.android.launcher3.search.result.FileResult;
 import com.android.launcher3.util.Executors;
 
 import java.io.File;
-import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.function.Consumer;
 
 /**
- * Searches files on external storage via java.io.File walk.
+ * Searches files on external storage by name.
  * Requires MANAGE_EXTERNAL_STORAGE permission (requested in Search Settings).
- * Walks common directories to limit scope.
+ * Indexes common directories to limit scope; queries are answered from a
+ * {@link FileSearchIndex} instead of walking storage per keystroke.
  */
 public class FileSearchProvider implements SearchProvider<FileResult> {
 
-    private static final String TAG = "FileSearchProvider";
     private static final int MAX_RESULTS = 5;
     private static final int MAX_DEPTH = 4;
 
+    private static final String INDEX_FILE = "file_search_index";
+
     private static final String[] SEARCH_DIRS = {
             "Download", "Downloads", "Documents", "DCIM", "Pictures",
             "Music", "Movies", "Ringtones", "Podcasts"
     };
 
     private final Handler mResultHandler;
+    private final FileSearchIndex mIndex;
     private volatile boolean mCancelled;
 
-    public FileSearchProvider() {
+    public FileSearchProvider(Context context) {
         mResultHandler = new Handler(MAIN_EXECUTOR.getLooper());
+        mIndex = new FileSearchIndex(new File(context.getCacheDir(), INDEX_FILE),
+                Environment.getExternalStorageDirectory(), SEARCH_DIRS, MAX_DEPTH);
     }
 
     @Override
     public void search(String query, Consumer<List<FileResult>> callback) {
+        searchProgressive(query, new ResultSink<FileResult>() {
+            @Override
+            public void onPartialResults(List<FileResult> results) { }
+
+            @Override
+            public void onResults(List<FileResult> results) {
+                callback.accept(results);
+            }
+        });
+    }
+
+    /** Streams the matches of each searched top-level directory as it is walked. */
+    @Override
+    public void searchProgressive(String query, ResultSink<FileResult> sink) {
         if (!Environment.isExternalStorageManager()) {
-            mResultHandler.post(() -> callback.accept(Collections.emptyList()));
+            mResultHandler.post(() -> sink.onResults(Collections.emptyList()));
             return;
         }
 
         mCancelled = false;
         Executors.THREAD_POOL_EXECUTOR.execute(() -> {
-            List<FileResult> results = searchFiles(query);
+            List<FileResult> results = mIndex.query(query.toLowerCase(), MAX_RESULTS,
+                    () -> mCancelled,
+                    partial -> mResultHandler.post(() -> sink.onPartialResults(partial)));
             if (!mCancelled) {
-                mResultHandler.post(() -> callback.accept(results));
+                mResultHandler.post(() -> sink.onResults(results));
             }
         });
     }
 
+    /** Brings the index up to date in the background while the user starts typing. */
+    @Override
+    public void onSearchOpened() {
+        if (Environment.isExternalStorageManager()) {
+            mIndex.refreshAsync();
+        }
+    }
+
     @Override
     public void cancel() {
         mCancelled = true;
@@ -79,49 +107,4 @@ public class FileSearchProvider implements SearchProvider<FileResult> {
     public int minQueryLength() {
         return 3;
     }
-
-    private List<FileResult> searchFiles(String query) {
-        List<FileResult> results = new ArrayList<>();
-        String queryLower = query.toLowerCase();
-        File storage = Environment.getExternalStorageDirectory();
-
-        for (String dirName : SEARCH_DIRS) {
-            if (mCancelled || results.size() >= MAX_RESULTS) break;
-            File dir = new File(storage, dirName);
-            if (dir.exists() && dir.isDirectory()) {
-                searchDirectory(dir, queryLower, results, 0);
-            }
-        }
-
-        return results;
-    }
-
-    private void searchDirectory(File dir, String queryLower,
-            List<FileResult> results, int depth) {
-        if (mCancelled || results.size() >= MAX_RESULTS || depth > MAX_DEPTH) return;
-
-        File[] files = dir.listFiles();
-        if (files == null) return;
-
-        for (File file : files) {
-            if (mCancelled || results.size() >= MAX_RESULTS) break;
-
-            if (file.isDirectory()) {
-                // Skip hidden directories
-                if (!file.getName().startsWith(".")) {
-                    searchDirectory(file, queryLower, results, depth + 1);
-                }
-            } else {
-                if (file.getName().toLowerCase().contains(queryLower)) {
-                    String mimeType = FileResult.guessMimeType(file.getName());
-                    results.add(new FileResult(
-                            file.getName(),
-                            file.getAbsolutePath(),
-                            file.length(),
-                            mimeType,
-                            file.lastModified()));
-                }
-            }
-        }
-    }
 }
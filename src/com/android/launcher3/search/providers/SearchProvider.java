@@ -29,9 +29,30 @@ public interface SearchProvider<T> {
      */
     void search(String query, Consumer<List<T>> callback);
 
+    /**
+     * Progressive variant of {@link #search} for providers that can report results before they
+     * are done, e.g. after each directory of a file walk. By default delivers everything in
+     * one {@link ResultSink#onResults} call.
+     *
+     * @param query The search query string.
+     * @param sink  Receives partial and final results; called on the main thread.
+     */
+    default void searchProgressive(String query, ResultSink<T> sink) {
+        search(query, sink::onResults);
+    }
+
+    /**
+     * Called on the main thread when a search session opens, before the first query. Providers
+     * backed by an index can start refreshing it here instead of on the query path.
+     */
+    default void onSearchOpened() { }
+
     /** Cancels any in-progress search. */
     void cancel();
 
+    /** Releases long-lived resources such as content observers. */
+    default void destroy() { }
+
     /** Returns the category identity for this provider. */
     ProviderCategory category();
 
@@ -39,4 +60,17 @@ public interface SearchProvider<T> {
     default int minQueryLength() {
         return 1;
     }
+
+    /**
+     * Receives the results of one {@link #searchProgressive} call. Each call replaces the
+     * results the provider delivered before for the same query.
+     */
+    interface ResultSink<T> {
+
+        /** Results found so far; more calls follow. */
+        void onPartialResults(List<T> results);
+
+        /** Complete results; no further calls follow. */
+        void onResults(List<T> results);
+    }
 }
@@ -12,55 +12,58 @@ package com.android.launcher3.search.providers;
 
 import static com.android.launcher3.util.Executors.MAIN_EXECUTOR;
 
+import android.content.ComponentName;
 import android.content.Context;
-import android.content.pm.LauncherApps;
-import android.content.pm.PackageManager;
 import android.content.pm.ShortcutInfo;
 import android.os.Handler;
 import android.os.Process;
-import android.util.Log;
+import android.text.TextUtils;
 
+import com.android.launcher3.LauncherAppState;
+import com.android.launcher3.model.AllAppsList;
+import com.android.launcher3.model.BgDataModel;
+import com.android.launcher3.model.data.AppInfo;
 import com.android.launcher3.search.result.ShortcutResult;
-import com.android.launcher3.util.Executors;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Consumer;
 
 /**
- * Searches app shortcuts via LauncherApps.ShortcutQuery.
+ * Searches app shortcuts by label.
  * Requires the app to be the default launcher (HOME category).
+ *
+ * <p>Queries run on the model thread against {@link BgDataModel#shortcutSearchIndex}, which the
+ * loader and {@code ShortcutsChangedTask} keep up to date, and take app names from
+ * {@link AllAppsList}, so no query crosses the binder.
  */
 public class ShortcutSearchProvider implements SearchProvider<ShortcutResult> {
 
-    private static final String TAG = "ShortcutSearchProvider";
     private static final int MAX_RESULTS = 5;
 
-    private final Context mContext;
-    private final LauncherApps mLauncherApps;
+    private final LauncherAppState mAppState;
     private final Handler mResultHandler;
-    private volatile boolean mCancelled;
+    private final AtomicInteger mQueryVersion = new AtomicInteger();
 
     public ShortcutSearchProvider(Context context) {
-        mContext = context.getApplicationContext();
-        mLauncherApps = context.getSystemService(LauncherApps.class);
+        mAppState = LauncherAppState.getInstance(context);
         mResultHandler = new Handler(MAIN_EXECUTOR.getLooper());
     }
 
     @Override
     public void search(String query, Consumer<List<ShortcutResult>> callback) {
-        mCancelled = false;
-        Executors.THREAD_POOL_EXECUTOR.execute(() -> {
-            List<ShortcutResult> results = searchShortcuts(query);
-            if (!mCancelled) {
-                mResultHandler.post(() -> callback.accept(results));
-            }
+        int version = mQueryVersion.incrementAndGet();
+        mAppState.getModel().enqueueModelUpdateTask((taskController, dataModel, apps) -> {
+            if (version != mQueryVersion.get()) return;
+            List<ShortcutResult> results = searchShortcuts(dataModel, apps, query);
+            mResultHandler.post(() -> callback.accept(results));
         });
     }
 
     @Override
     public void cancel() {
-        mCancelled = true;
+        mQueryVersion.incrementAndGet();
         mResultHandler.removeCallbacksAndMessages(null);
     }
 
@@ -74,49 +77,38 @@ public class ShortcutSearchProvider implements SearchProvider<ShortcutResult> {
         return 3;
     }
 
-    private List<ShortcutResult> searchShortcuts(String query) {
+    private static List<ShortcutResult> searchShortcuts(
+            BgDataModel dataModel, AllAppsList apps, String query) {
         List<ShortcutResult> results = new ArrayList<>();
-
-        if (!mLauncherApps.hasShortcutHostPermission()) {
+        if (!apps.hasShortcutHostPermission()) {
             return results;
         }
 
-        try {
-            String queryLower = query.toLowerCase();
-            LauncherApps.ShortcutQuery shortcutQuery = new LauncherApps.ShortcutQuery();
-            shortcutQuery.setQueryFlags(
-                    LauncherApps.ShortcutQuery.FLAG_MATCH_DYNAMIC
-                    | LauncherApps.ShortcutQuery.FLAG_MATCH_MANIFEST
-                    | LauncherApps.ShortcutQuery.FLAG_MATCH_PINNED);
-
-            List<ShortcutInfo> shortcuts = mLauncherApps.getShortcuts(
-                    shortcutQuery, Process.myUserHandle());
-            if (shortcuts == null) return results;
-
-            PackageManager pm = mContext.getPackageManager();
-
-            for (ShortcutInfo shortcut : shortcuts) {
-                if (mCancelled || results.size() >= MAX_RESULTS) break;
-
-                CharSequence label = shortcut.getShortLabel();
-                if (label == null) label = shortcut.getLongLabel();
-                if (label == null) continue;
+        List<ShortcutInfo> shortcuts = dataModel.shortcutSearchIndex.search(
+                query.toLowerCase(), Process.myUserHandle(), MAX_RESULTS);
+        for (ShortcutInfo shortcut : shortcuts) {
+            results.add(new ShortcutResult(shortcut, getAppName(apps, shortcut)));
+        }
+        return results;
+    }
 
-                if (label.toString().toLowerCase().contains(queryLower)) {
-                    String appName;
-                    try {
-                        appName = pm.getApplicationLabel(
-                                pm.getApplicationInfo(shortcut.getPackage(), 0)).toString();
-                    } catch (PackageManager.NameNotFoundException e) {
-                        appName = shortcut.getPackage();
-                    }
-                    results.add(new ShortcutResult(shortcut, appName));
-                }
+    /** Label of the app publishing {@code shortcut}, preferring its target activity. */
+    private static String getAppName(AllAppsList apps, ShortcutInfo shortcut) {
+        ComponentName activity = shortcut.getActivity();
+        if (activity != null) {
+            AppInfo app = apps.findAppInfo(activity, shortcut.getUserHandle());
+            if (app != null && !TextUtils.isEmpty(app.title)) {
+                return app.title.toString();
             }
-        } catch (Exception e) {
-            Log.w(TAG, "Error searching shortcuts", e);
         }
-
-        return results;
+        String packageName = shortcut.getPackage();
+        for (AppInfo app : apps.data) {
+            if (packageName.equals(app.componentName.getPackageName())
+                    && app.user.equals(shortcut.getUserHandle())
+                    && !TextUtils.isEmpty(app.title)) {
+                return app.title.toString();
+            }
+        }
+        return packageName;
     }
 }
@@ -19,19 +19,33 @@
 package com.android.launcher3.settings;
 
 import android.os.Bundle;
+import android.widget.Toast;
 
 import androidx.preference.Preference;
 
 import com.android.launcher3.BuildConfig;
 import com.android.launcher3.LauncherFiles;
+import com.android.launcher3.LauncherPrefs;
 import com.android.launcher3.R;
+import com.android.launcher3.icons.cache.IconCacheUpdateHandler;
+import com.android.launcher3.search.SearchMetrics;
+import com.android.launcher3.widget.picker.WidgetPickerMetrics;
 
 /**
  * Fragment for the Debug settings sub-page.
- * Contains: theme color debug swatches.
+ * Contains: app version, restart, search, widget picker and icon cache refresh metrics, the
+ * search provider time budget and theme color debug swatches.
  */
 public class DebugFragment extends SettingsBaseFragment {
 
+    // Search provider budgets (ms) cycled through on tap; -1 restores the per-category defaults
+    private static final int[] SEARCH_PROVIDER_BUDGETS = {-1, 0, 50, 100, 250, 500, 1000};
+
+    private Preference mSearchMetricsPref;
+    private Preference mWidgetPickerMetricsPref;
+    private Preference mIconCacheStatsPref;
+    private Preference mSearchProviderBudgetPref;
+
     @Override
     public void onCreatePreferences(Bundle savedInstanceState, String rootKey) {
         getPreferenceManager().setSharedPreferencesName(LauncherFiles.SHARED_PREFERENCES_KEY);
@@ -50,5 +64,101 @@ public class DebugFragment extends SettingsBaseFragment {
                 return true;
             });
         }
+
+        mSearchMetricsPref = findPreference("pref_search_metrics");
+        if (mSearchMetricsPref != null) {
+            // Tap to reset, e.g. before measuring a specific scenario
+            mSearchMetricsPref.setOnPreferenceClickListener(pref -> {
+                SearchMetrics.INSTANCE.reset();
+                updateSearchMetrics();
+                Toast.makeText(getContext(), R.string.search_metrics_reset,
+                        Toast.LENGTH_SHORT).show();
+                return true;
+            });
+        }
+
+        mWidgetPickerMetricsPref = findPreference("pref_widget_picker_metrics");
+        if (mWidgetPickerMetricsPref != null) {
+            mWidgetPickerMetricsPref.setOnPreferenceClickListener(pref -> {
+                WidgetPickerMetrics.INSTANCE.reset();
+                updateWidgetPickerMetrics();
+                Toast.makeText(getContext(), R.string.widget_picker_metrics_reset,
+                        Toast.LENGTH_SHORT).show();
+                return true;
+            });
+        }
+
+        mIconCacheStatsPref = findPreference("pref_icon_cache_refresh_stats");
+        if (mIconCacheStatsPref != null) {
+            mIconCacheStatsPref.setOnPreferenceClickListener(pref -> {
+                IconCacheUpdateHandler.TOTAL_STATS.reset();
+                updateIconCacheStats();
+                Toast.makeText(getContext(), R.string.icon_cache_refresh_stats_reset,
+                        Toast.LENGTH_SHORT).show();
+                return true;
+            });
+        }
+
+        mSearchProviderBudgetPref = findPreference("pref_search_provider_budget");
+        if (mSearchProviderBudgetPref != null) {
+            // Applies from the next search session
+            mSearchProviderBudgetPref.setOnPreferenceClickListener(pref -> {
+                LauncherPrefs prefs = LauncherPrefs.get(requireContext());
+                int current = prefs.get(LauncherPrefs.SEARCH_PROVIDER_BUDGET_OVERRIDE);
+                int next = SEARCH_PROVIDER_BUDGETS[0];
+                for (int i = 0; i < SEARCH_PROVIDER_BUDGETS.length - 1; i++) {
+                    if (SEARCH_PROVIDER_BUDGETS[i] == current) {
+                        next = SEARCH_PROVIDER_BUDGETS[i + 1];
+                        break;
+                    }
+                }
+                prefs.put(LauncherPrefs.SEARCH_PROVIDER_BUDGET_OVERRIDE, next);
+                updateSearchProviderBudget();
+                return true;
+            });
+        }
+    }
+
+    @Override
+    public void onResume() {
+        super.onResume();
+        updateSearchMetrics();
+        updateWidgetPickerMetrics();
+        updateIconCacheStats();
+        updateSearchProviderBudget();
+    }
+
+    private void updateSearchMetrics() {
+        if (mSearchMetricsPref != null) {
+            mSearchMetricsPref.setSummary(SearchMetrics.INSTANCE.dumpToString());
+        }
+    }
+
+    private void updateWidgetPickerMetrics() {
+        if (mWidgetPickerMetricsPref != null) {
+            mWidgetPickerMetricsPref.setSummary(WidgetPickerMetrics.INSTANCE.dumpToString());
+        }
+    }
+
+    private void updateIconCacheStats() {
+        if (mIconCacheStatsPref != null) {
+            mIconCacheStatsPref.setSummary(IconCacheUpdateHandler.TOTAL_STATS.toString());
+        }
+    }
+
+    private void updateSearchProviderBudget() {
+        if (mSearchProviderBudgetPref == null) {
+            return;
+        }
+        int budget = LauncherPrefs.get(requireContext())
+                .get(LauncherPrefs.SEARCH_PROVIDER_BUDGET_OVERRIDE);
+        if (budget < 0) {
+            mSearchProviderBudgetPref.setSummary(R.string.search_provider_budget_default);
+        } else if (budget == 0) {
+            mSearchProviderBudgetPref.setSummary(R.string.search_provider_budget_wait);
+        } else {
+            mSearchProviderBudgetPref.setSummary(
+                    getString(R.string.search_provider_budget_value, budget));
+        }
     }
 }
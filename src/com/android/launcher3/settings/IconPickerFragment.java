@@ -22,6 +22,7 @@ import android.content.ComponentName;
 import android.content.pm.PackageManager;
 import android.content.res.Resources;
 import android.content.res.ColorStateList;
+import android.graphics.Bitmap;
 import android.graphics.drawable.Drawable;
 import android.os.Bundle;
 import android.os.Handler;
@@ -38,6 +39,7 @@ import android.widget.TextView;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import androidx.fragment.app.Fragment;
+import androidx.recyclerview.widget.DiffUtil;
 import androidx.recyclerview.widget.GridLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
 
@@ -45,6 +47,7 @@ import com.android.launcher3.LauncherAppState;
 import com.android.launcher3.R;
 import com.android.launcher3.icons.DrawerIconResolver;
 import com.android.launcher3.icons.LauncherIcons;
+import com.android.launcher3.icons.pack.IconEntryIndex;
 import com.android.launcher3.icons.pack.IconPack;
 import com.android.launcher3.icons.pack.IconPackManager;
 import com.android.launcher3.icons.pack.PerAppIconOverrideManager;
@@ -54,10 +57,18 @@ import com.android.launcher3.util.Executors;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.Future;
 
 /**
  * Searchable grid browser for all icons in an icon pack.
  * Step 2 of the per-app icon customization flow.
+ *
+ * Categories are turned into grid items a page at a time as the user scrolls, and icons are
+ * shown as cell-sized thumbnails from {@link IconThumbnailCache}. Packs with thousands of icons
+ * therefore bind the first screen immediately, and flinging never decodes full-size drawables.
+ *
+ * Search queries go to the pack's {@link IconEntryIndex}, which is persisted per pack version.
+ * They are answered in the background, and the results are applied to the grid through a diff.
  */
 public class IconPickerFragment extends Fragment {
 
@@ -68,6 +79,12 @@ public class IconPickerFragment extends Fragment {
     private static final int VIEW_TYPE_HEADER = 0;
     private static final int VIEW_TYPE_ICON = 1;
     private static final long SEARCH_DEBOUNCE_MS = 300;
+    // Icons added to the grid per page
+    private static final int PAGE_SIZE = 240;
+    // The next page is added once a cell this close to the end of the grid is bound
+    private static final int PAGE_PREFETCH_DISTANCE = 60;
+    // Beyond this many shown items a query result replaces the grid without a diff
+    private static final int MAX_DIFF_ITEMS = 4 * PAGE_SIZE;
 
     private String mPackPackage;
     private ComponentName mComponentName;
@@ -78,8 +95,19 @@ public class IconPickerFragment extends Fragment {
     private final Handler mMainHandler = new Handler(Looper.getMainLooper());
     private Runnable mPendingSearch;
 
-    private List<ListItem> mAllItems = new ArrayList<>();
+    private IconPack mPack;
+    private int mThumbnailSizePx;
+
+    // Built in the background when the pack is loaded; null until then
+    private IconEntryIndex mIndex;
+    // Categories matching the current query, paged into mFilteredItems on demand
+    private ItemPager mPager = new ItemPager(new ArrayList<>());
+    private boolean mPageQueued;
     private List<ListItem> mFilteredItems = new ArrayList<>();
+    // Bumped whenever mFilteredItems changes, so stale diffs are not applied
+    private int mItemsVersion;
+    // Bumped per query, so only the latest query's result is applied
+    private int mQueryGeneration;
 
     @Override
     public void onCreate(@Nullable Bundle savedInstanceState) {
@@ -128,6 +156,7 @@ public class IconPickerFragment extends Fragment {
         // Calculate span count based on available width
         mRecyclerView.post(() -> {
             int cellSizePx = res.getDimensionPixelSize(R.dimen.settings_icon_cell_size);
+            mThumbnailSizePx = cellSizePx;
             int width = mRecyclerView.getWidth();
             int spanCount = Math.max(4, width / cellSizePx);
 
@@ -170,27 +199,24 @@ public class IconPickerFragment extends Fragment {
     }
 
     private void loadIcons() {
-        Executors.MODEL_EXECUTOR.execute(() -> {
-            IconPackManager mgr = LauncherComponentProvider.get(requireContext())
-                    .getIconPackManager();
+        IconPackManager mgr = LauncherComponentProvider.get(requireContext())
+                .getIconPackManager();
+        PackageManager pm = requireContext().getPackageManager();
+        Executors.ICON_PICKER_EXECUTOR.execute(() -> {
             IconPack pack = mgr.getPack(mPackPackage);
             if (pack == null) return;
-
-            PackageManager pm = requireContext().getPackageManager();
-            List<IconPack.IconCategory> categories = pack.getAllIcons(pm);
-
-            List<ListItem> items = new ArrayList<>();
-            for (IconPack.IconCategory cat : categories) {
-                items.add(new ListItem(cat.title));
-                for (IconPack.IconEntry entry : cat.items) {
-                    items.add(new ListItem(entry));
-                }
-            }
+            IconEntryIndex index = pack.getIconIndex(pm);
+            ItemPager pager = new ItemPager(index.query(""));
+            List<ListItem> firstPage = new ArrayList<>();
+            pager.appendPage(firstPage);
 
             mMainHandler.post(() -> {
                 if (!isAdded()) return;
-                mAllItems = items;
-                mFilteredItems = new ArrayList<>(items);
+                mPack = pack;
+                mIndex = index;
+                mPager = pager;
+                mFilteredItems = firstPage;
+                mItemsVersion++;
                 if (mAdapter != null) {
                     mAdapter.notifyDataSetChanged();
                 }
@@ -198,41 +224,61 @@ public class IconPickerFragment extends Fragment {
         });
     }
 
+    /**
+     * Answers {@code query} from the index in the background, then swaps in the first page of
+     * results through a diff against the items currently shown.
+     */
     private void filterItems(String query) {
-        if (query == null || query.trim().isEmpty()) {
-            mFilteredItems = new ArrayList<>(mAllItems);
-        } else {
-            String lowerQuery = query.toLowerCase();
-            mFilteredItems = new ArrayList<>();
-            String lastHeader = null;
-            List<ListItem> pendingIcons = new ArrayList<>();
-
-            for (ListItem item : mAllItems) {
-                if (item.type == VIEW_TYPE_HEADER) {
-                    if (lastHeader != null && !pendingIcons.isEmpty()) {
-                        mFilteredItems.add(new ListItem(lastHeader));
-                        mFilteredItems.addAll(pendingIcons);
-                    }
-                    lastHeader = item.headerTitle;
-                    pendingIcons = new ArrayList<>();
+        IconEntryIndex index = mIndex;
+        if (index == null) return;
+        int generation = ++mQueryGeneration;
+        int version = mItemsVersion;
+        List<ListItem> oldItems = mFilteredItems.size() <= MAX_DIFF_ITEMS
+                ? new ArrayList<>(mFilteredItems) : null;
+        // Not ICON_PICKER_EXECUTOR, where the query could queue behind thumbnail decodes
+        Executors.UI_HELPER_EXECUTOR.execute(() -> {
+            ItemPager pager = new ItemPager(index.query(query));
+            List<ListItem> firstPage = new ArrayList<>();
+            pager.appendPage(firstPage);
+            DiffUtil.DiffResult diff = oldItems != null
+                    ? DiffUtil.calculateDiff(new ItemDiffCallback(oldItems, firstPage), false)
+                    : null;
+
+            mMainHandler.post(() -> {
+                if (!isAdded() || generation != mQueryGeneration) return;
+                boolean diffValid = version == mItemsVersion;
+                mPager = pager;
+                mFilteredItems = firstPage;
+                mItemsVersion++;
+                if (mAdapter == null) return;
+                if (diff != null && diffValid) {
+                    diff.dispatchUpdatesTo(mAdapter);
                 } else {
-                    String matchText = item.entry.label.toLowerCase();
-                    String matchDrawable = item.entry.drawableName.toLowerCase();
-                    if (matchText.contains(lowerQuery)
-                            || matchDrawable.contains(lowerQuery)) {
-                        pendingIcons.add(item);
-                    }
+                    // Too many items to diff, or a page was appended meanwhile
+                    mAdapter.notifyDataSetChanged();
                 }
-            }
-            // Flush last category
-            if (lastHeader != null && !pendingIcons.isEmpty()) {
-                mFilteredItems.add(new ListItem(lastHeader));
-                mFilteredItems.addAll(pendingIcons);
-            }
-        }
-        if (mAdapter != null) {
-            mAdapter.notifyDataSetChanged();
+            });
+        });
+    }
+
+    /** Queues the next page once binding gets close to the end of the loaded items. */
+    private void maybeQueueNextPage(int boundPosition) {
+        if (mPageQueued || !mPager.hasMore()
+                || boundPosition < mFilteredItems.size() - PAGE_PREFETCH_DISTANCE) {
+            return;
         }
+        // The adapter must not change while RecyclerView is binding
+        mPageQueued = true;
+        mMainHandler.post(() -> {
+            mPageQueued = false;
+            if (!isAdded() || !mPager.hasMore()) return;
+            int start = mFilteredItems.size();
+            int added = mPager.appendPage(mFilteredItems);
+            mItemsVersion++;
+            if (mAdapter != null) {
+                mAdapter.notifyItemRangeInserted(start, added);
+            }
+        });
     }
 
     private void onIconSelected(IconPack.IconEntry entry) {
@@ -293,6 +339,90 @@ public class IconPickerFragment extends Fragment {
         }
     }
 
+    /**
+     * Turns categories into grid items a page at a time, with a header wherever a category
+     * starts. Large categories span several pages.
+     */
+    private static class ItemPager {
+        private final List<IconPack.IconCategory> mCategories;
+        private int mNextCategory;
+        private int mNextEntry;
+
+        ItemPager(List<IconPack.IconCategory> categories) {
+            mCategories = categories;
+        }
+
+        boolean hasMore() {
+            return mNextCategory < mCategories.size();
+        }
+
+        /**
+         * Adds up to {@link #PAGE_SIZE} more icons to {@code out}.
+         *
+         * @return the number of items added, headers included
+         */
+        int appendPage(List<ListItem> out) {
+            int added = 0;
+            int icons = 0;
+            while (icons < PAGE_SIZE && mNextCategory < mCategories.size()) {
+                IconPack.IconCategory cat = mCategories.get(mNextCategory);
+                if (mNextEntry == 0) {
+                    out.add(new ListItem(cat.title));
+                    added++;
+                }
+                int end = Math.min(cat.items.size(), mNextEntry + PAGE_SIZE - icons);
+                for (int i = mNextEntry; i < end; i++) {
+                    out.add(new ListItem(cat.items.get(i)));
+                }
+                added += end - mNextEntry;
+                icons += end - mNextEntry;
+                if (end < cat.items.size()) {
+                    mNextEntry = end;
+                } else {
+                    mNextCategory++;
+                    mNextEntry = 0;
+                }
+            }
+            return added;
+        }
+    }
+
+    private static class ItemDiffCallback extends DiffUtil.Callback {
+        private final List<ListItem> mOld;
+        private final List<ListItem> mNew;
+
+        ItemDiffCallback(List<ListItem> oldItems, List<ListItem> newItems) {
+            mOld = oldItems;
+            mNew = newItems;
+        }
+
+        @Override
+        public int getOldListSize() {
+            return mOld.size();
+        }
+
+        @Override
+        public int getNewListSize() {
+            return mNew.size();
+        }
+
+        @Override
+        public boolean areItemsTheSame(int oldPosition, int newPosition) {
+            ListItem a = mOld.get(oldPosition);
+            ListItem b = mNew.get(newPosition);
+            if (a.type != b.type) return false;
+            return a.type == VIEW_TYPE_HEADER
+                    ? a.headerTitle.equals(b.headerTitle)
+                    : a.entry.drawableName.equals(b.entry.drawableName);
+        }
+
+        @Override
+        public boolean areContentsTheSame(int oldPosition, int newPosition) {
+            // Headers only show their title and icons their drawable, both compared above
+            return true;
+        }
+    }
+
     // ---- Adapter ----
 
     private class IconGridAdapter extends RecyclerView.Adapter<RecyclerView.ViewHolder> {
@@ -324,33 +454,35 @@ public class IconPickerFragment extends Fragment {
         @Override
         public void onBindViewHolder(@NonNull RecyclerView.ViewHolder holder, int position) {
             ListItem item = mFilteredItems.get(position);
+            maybeQueueNextPage(position);
             if (holder instanceof HeaderHolder) {
                 ((HeaderHolder) holder).title.setText(item.headerTitle);
             } else if (holder instanceof IconHolder) {
                 IconHolder iconHolder = (IconHolder) holder;
-                iconHolder.image.setImageDrawable(null);
-                iconHolder.image.setTag(item.entry.drawableName);
-
+                iconHolder.cancelLoad();
                 iconHolder.itemView.setOnClickListener(v -> onIconSelected(item.entry));
                 iconHolder.itemView.setContentDescription(item.entry.label);
 
-                // Load icon async
                 String drawableName = item.entry.drawableName;
-                Executors.MODEL_EXECUTOR.execute(() -> {
-                    IconPackManager mgr = LauncherComponentProvider.get(requireContext())
-                            .getIconPackManager();
-                    IconPack pack = mgr.getPack(mPackPackage);
-                    if (pack == null) return;
-
-                    Drawable d = pack.getDrawableForEntry(drawableName,
-                            requireContext().getPackageManager());
-                    mMainHandler.post(() -> {
-                        // Tag-based cancellation: only set if still the same item
-                        if (drawableName.equals(iconHolder.image.getTag())) {
-                            iconHolder.image.setImageDrawable(d);
-                        }
-                    });
-                });
+                IconThumbnailCache thumbnails = IconThumbnailCache.getInstance();
+                Bitmap cached = thumbnails.get(mPack, drawableName, mThumbnailSizePx);
+                if (cached != null) {
+                    iconHolder.image.setImageBitmap(cached);
+                    return;
+                }
+                iconHolder.image.setImageDrawable(null);
+                iconHolder.load = thumbnails.load(mPack, requireContext().getPackageManager(),
+                        drawableName, mThumbnailSizePx, bitmap -> {
+                            iconHolder.load = null;
+                            iconHolder.image.setImageBitmap(bitmap);
+                        });
+            }
+        }
+
+        @Override
+        public void onViewRecycled(@NonNull RecyclerView.ViewHolder holder) {
+            if (holder instanceof IconHolder) {
+                ((IconHolder) holder).cancelLoad();
             }
         }
     }
@@ -366,10 +498,19 @@ public class IconPickerFragment extends Fragment {
 
     private static class IconHolder extends RecyclerView.ViewHolder {
         final ImageView image;
+        // Pending thumbnail load for the bound entry, cancelled on rebind and recycle
+        @Nullable Future<?> load;
 
         IconHolder(@NonNull View itemView) {
             super(itemView);
             image = itemView.findViewById(R.id.icon_image);
         }
+
+        void cancelLoad() {
+            if (load != null) {
+                load.cancel(false);
+                load = null;
+            }
+        }
     }
 }
@@ -503,7 +503,7 @@ public class IconSettingsHelper {
                 if (appIcon == null && pack.hasFallbackMask()) {
                     try {
                         Drawable original = pm.getActivityIcon(appCn);
-                        appIcon = pack.applyFallbackMask(original, previewSize);
+                        appIcon = pack.applyFallbackMask(original, previewSize, appCn);
                     } catch (PackageManager.NameNotFoundException ignored) { }
                 }
                 final Drawable finalIcon = appIcon;
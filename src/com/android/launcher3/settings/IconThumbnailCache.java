@@ -0,0 +1,111 @@
+/*
+ * Copyright (C) 2025 DefaultLauncher Contributors
+ *
+ * This file is part of DefaultLauncher.
+ *
+ * DefaultLauncher is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * DefaultLauncher is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with DefaultLauncher. If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.android.launcher3.settings;
+
+import android.content.pm.PackageManager;
+import android.graphics.Bitmap;
+import android.util.LruCache;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.android.launcher3.icons.pack.IconPack;
+import com.android.launcher3.util.Executors;
+
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+
+/**
+ * Icon pack thumbnails decoded at picker cell size, shared across icon picker sessions.
+ *
+ * <p>Bounded by bitmap bytes rather than entry count, since pack drawables vary widely in size.
+ * Loads run on {@link Executors#ICON_PICKER_EXECUTOR} and are cancelled by the caller when the
+ * cell that asked for them is rebound or recycled.
+ */
+public final class IconThumbnailCache {
+
+    private static final int MAX_CACHE_BYTES = 16 * 1024 * 1024;
+
+    private static IconThumbnailCache sInstance;
+
+    private final LruCache<String, Bitmap> mCache;
+
+    private IconThumbnailCache() {
+        int maxBytes = (int) Math.min(MAX_CACHE_BYTES, Runtime.getRuntime().maxMemory() / 8);
+        mCache = new LruCache<String, Bitmap>(maxBytes) {
+            @Override
+            protected int sizeOf(String key, Bitmap value) {
+                return value.getAllocationByteCount();
+            }
+        };
+    }
+
+    public static synchronized IconThumbnailCache getInstance() {
+        if (sInstance == null) {
+            sInstance = new IconThumbnailCache();
+        }
+        return sInstance;
+    }
+
+    @Nullable
+    Bitmap get(IconPack pack, String drawableName, int sizePx) {
+        return mCache.get(getKey(pack, drawableName, sizePx));
+    }
+
+    /**
+     * Decodes a thumbnail in the background and delivers it to {@code callback} on the main
+     * thread, unless the returned future was cancelled first. Delivers null if the drawable
+     * cannot be loaded. Must be called on the main thread.
+     */
+    Future<?> load(IconPack pack, PackageManager pm, String drawableName, int sizePx,
+            @NonNull Consumer<Bitmap> callback) {
+        String key = getKey(pack, drawableName, sizePx);
+        Future<?>[] self = new Future<?>[1];
+        self[0] = Executors.ICON_PICKER_EXECUTOR.submit(() -> {
+            Bitmap bitmap = mCache.get(key);
+            if (bitmap == null) {
+                bitmap = pack.loadThumbnail(pm, drawableName, sizePx);
+                if (bitmap != null) {
+                    mCache.put(key, bitmap);
+                }
+            }
+            Bitmap result = bitmap;
+            Executors.MAIN_EXECUTOR.execute(() -> {
+                if (!self[0].isCancelled()) {
+                    callback.accept(result);
+                }
+            });
+        });
+        return self[0];
+    }
+
+    /** Drops the thumbnails of a pack that was updated or removed. */
+    public void removePack(String packPackage) {
+        String prefix = packPackage + '/';
+        for (String key : mCache.snapshot().keySet()) {
+            if (key.startsWith(prefix)) {
+                mCache.remove(key);
+            }
+        }
+    }
+
+    private static String getKey(IconPack pack, String drawableName, int sizePx) {
+        return pack.packageName + '/' + drawableName + '@' + sizePx;
+    }
+}
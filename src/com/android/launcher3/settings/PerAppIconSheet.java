@@ -48,6 +48,7 @@ import com.google.android.material.bottomsheet.BottomSheetDialog;
 
 import com.android.launcher3.R;
 import com.android.launcher3.anim.M3Durations;
+import com.android.launcher3.icons.pack.IconEntryIndex;
 import com.android.launcher3.icons.pack.IconPack;
 import com.android.launcher3.icons.pack.IconPackManager;
 import com.android.launcher3.util.Executors;
@@ -240,7 +241,7 @@ public class PerAppIconSheet {
                 if (appIcon == null && pack.hasFallbackMask()) {
                     try {
                         Drawable original = pm.getActivityIcon(appCn);
-                        appIcon = pack.applyFallbackMask(original, previewSize);
+                        appIcon = pack.applyFallbackMask(original, previewSize, appCn);
                     } catch (PackageManager.NameNotFoundException ignored) { }
                 }
                 final Drawable finalIcon = appIcon;
@@ -468,7 +469,8 @@ public class PerAppIconSheet {
             // Get a simple name for variant matching (e.g., "chrome" from package)
             String appSimpleName = getSimpleName(appCn);
 
-            List<IconPack.IconCategory> categories = pack.getAllIcons(pm);
+            IconEntryIndex index = pack.getIconIndex(pm);
+            List<IconPack.IconCategory> categories = index.getCategories();
 
             List<CategoryGridAdapter.ListItem<IconPack.IconEntry>> items = new ArrayList<>();
 
@@ -483,16 +485,12 @@ public class PerAppIconSheet {
                 suggestedNames.add(matchedDrawable);
             }
 
-            // Find variants: drawables whose name contains the app's simple name
-            if (appSimpleName != null && appSimpleName.length() >= 3) {
-                String lowerName = appSimpleName.toLowerCase();
-                for (IconPack.IconCategory cat : categories) {
-                    for (IconPack.IconEntry entry : cat.items) {
-                        if (!suggestedNames.contains(entry.drawableName)
-                                && entry.drawableName.toLowerCase().contains(lowerName)) {
-                            suggestedEntries.add(entry);
-                            suggestedNames.add(entry.drawableName);
-                        }
+            // Find variants: drawables with a name containing the app's simple name, including
+            // unseparated ones such as "googlechrome"; answered from the index
+            if (appSimpleName != null) {
+                for (IconPack.IconEntry entry : index.findContaining(appSimpleName)) {
+                    if (suggestedNames.add(entry.drawableName)) {
+                        suggestedEntries.add(entry);
                     }
                 }
             }
@@ -67,6 +67,19 @@ public class Executors {
             new LooperExecutor("UiThreadHelper", Process.THREAD_PRIORITY_FOREGROUND);
 
 
+    /**
+     * A background executor for rendering drawer and per-app icon overrides that are bound
+     * asynchronously while the user is scrolling.
+     */
+    public static final LooperExecutor ICON_OVERRIDE_EXECUTOR =
+            new LooperExecutor("IconOverrideLoader", Process.THREAD_PRIORITY_DEFAULT);
+
+    /**
+     * A background executor for decoding icon pack thumbnails in the icon picker. Kept apart
+     * from {@link #MODEL_EXECUTOR} so flinging through a large pack never delays model work.
+     */
+    public static final ThreadPoolExecutor ICON_PICKER_EXECUTOR = newIconPickerExecutor();
+
     /** A background executor to preinflate views. */
     public static final ExecutorService VIEW_PREINFLATION_EXECUTOR =
             java.util.concurrent.Executors.newSingleThreadExecutor(
@@ -87,6 +100,14 @@ public class Executors {
         return PACKAGE_EXECUTORS.computeIfAbsent(packageName, LooperExecutor::new);
     }
 
+    private static ThreadPoolExecutor newIconPickerExecutor() {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(2, 2, KEEP_ALIVE, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(),
+                new SimpleThreadFactory("icon-picker-", THREAD_PRIORITY_BACKGROUND));
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
     /**
      * A simple ThreadFactory to set the thread name and priority when used with executors.
      */
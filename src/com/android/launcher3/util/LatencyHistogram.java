@@ -0,0 +1,91 @@
+/*
+ * Copyright (C) 2025 DefaultLauncher Contributors
+ *
+ * This file is part of DefaultLauncher.
+ *
+ * DefaultLauncher is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ */
+package com.android.launcher3.util;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.Arrays;
+import java.util.function.BiConsumer;
+
+/**
+ * Millisecond latency histogram with fixed power-of-two buckets, shared by the metrics that
+ * the launcher exposes via {@code dumpsys activity} and the Debug settings page.
+ *
+ * <p>Not thread-safe: owners record, reset and print under their own lock.
+ */
+public final class LatencyHistogram {
+
+    // Upper bounds (exclusive, ms) of the buckets; the last bucket is open-ended
+    private static final long[] BUCKET_BOUNDS = {8, 16, 32, 64, 128, 256, 512, 1024};
+
+    /** Legend for the bucket counts printed by {@link #toString}, once per dump. */
+    public static final String BUCKETS_LEGEND = createLegend();
+
+    private final long[] mBuckets = new long[BUCKET_BOUNDS.length + 1];
+    private long mCount;
+    private long mSum;
+    private long mMax;
+
+    public void record(long ms) {
+        int bucket = 0;
+        while (bucket < BUCKET_BOUNDS.length && ms >= BUCKET_BOUNDS[bucket]) bucket++;
+        mBuckets[bucket]++;
+        mCount++;
+        mSum += ms;
+        mMax = Math.max(mMax, ms);
+    }
+
+    public void reset() {
+        Arrays.fill(mBuckets, 0);
+        mCount = 0;
+        mSum = 0;
+        mMax = 0;
+    }
+
+    /** Number of recorded latencies. */
+    public long getCount() {
+        return mCount;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder()
+                .append("n=").append(mCount)
+                .append(" avg=").append(mCount == 0 ? 0 : mSum / mCount)
+                .append(" max=").append(mMax)
+                .append(" [");
+        for (int i = 0; i < mBuckets.length; i++) {
+            if (i > 0) sb.append(' ');
+            sb.append(mBuckets[i]);
+        }
+        return sb.append(']').toString();
+    }
+
+    /**
+     * Returns what a metrics {@code dump(prefix, writer)} method prints with an empty prefix,
+     * for display in settings.
+     */
+    public static String dumpToString(BiConsumer<String, PrintWriter> dump) {
+        StringWriter out = new StringWriter();
+        try (PrintWriter writer = new PrintWriter(out)) {
+            dump.accept("", writer);
+        }
+        return out.toString().trim();
+    }
+
+    private static String createLegend() {
+        StringBuilder sb = new StringBuilder("bucket upper bounds (ms):");
+        for (long bound : BUCKET_BOUNDS) {
+            sb.append(' ').append(bound);
+        }
+        return sb.append(" +").toString();
+    }
+}
@@ -22,6 +22,8 @@ import static com.android.launcher3.widget.LauncherAppWidgetProviderInfo.fromPro
 
 import android.appwidget.AppWidgetProviderInfo;
 import android.content.Context;
+import android.content.pm.ApplicationInfo;
+import android.content.res.Configuration;
 import android.content.res.Resources;
 import android.graphics.Bitmap;
 import android.graphics.Color;
@@ -31,12 +33,16 @@ import android.graphics.PorterDuffXfermode;
 import android.graphics.RectF;
 import android.graphics.drawable.Drawable;
 import android.os.Handler;
+import android.os.UserHandle;
 import android.util.Log;
+import android.util.LruCache;
 import android.util.Size;
 import android.widget.RemoteViews;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 import androidx.annotation.VisibleForTesting;
+import androidx.annotation.WorkerThread;
 import androidx.core.os.BuildCompat;
 
 import com.android.launcher3.DeviceProfile;
@@ -48,10 +54,13 @@ import com.android.launcher3.icons.BitmapRenderer;
 import com.android.launcher3.icons.LauncherIcons;
 import com.android.launcher3.model.WidgetItem;
 import com.android.launcher3.pm.ShortcutConfigActivityInfo;
+import com.android.launcher3.pm.UserCache;
 import com.android.launcher3.util.CancellableTask;
 import com.android.launcher3.util.Executors;
 import com.android.launcher3.util.LooperExecutor;
 import com.android.launcher3.views.ActivityContext;
+import com.android.launcher3.widget.WidgetPreviewDB.PreviewKey;
+import com.android.launcher3.widget.picker.WidgetPickerMetrics;
 import com.android.launcher3.widget.util.WidgetSizes;
 
 import java.util.concurrent.ExecutionException;
@@ -60,12 +69,28 @@ import java.util.function.Consumer;
 /**
  * Utility class to generate widget previews
  *
- * Note that it no longer uses database, all previews are freshly generated
+ * Bitmap previews (a provider's preview image, or a shortcut icon) are cached in memory and in
+ * {@link WidgetPreviewDB}, keyed by provider, user and preview size, and validated against the
+ * provider package install and icon state. Previews rendered from RemoteViews and placeholder
+ * previews are always generated fresh.
  */
 public class DatabaseWidgetPreviewLoader {
 
     private static final String TAG = "WidgetPreviewLoader";
 
+    // Upper bound of the in-memory preview cache, in bitmap bytes
+    private static final int MEMORY_CACHE_BYTES = 8 * 1024 * 1024;
+
+    private static final LruCache<String, Bitmap> sPreviewCache =
+            new LruCache<String, Bitmap>(MEMORY_CACHE_BYTES) {
+                @Override
+                protected int sizeOf(String key, Bitmap value) {
+                    return value.getAllocationByteCount();
+                }
+            };
+
+    private static WidgetPreviewDB sPreviewDb;
+
     private final Context mContext;
 
     public DatabaseWidgetPreviewLoader(Context context) {
@@ -82,6 +107,18 @@ public class DatabaseWidgetPreviewLoader {
             @NonNull WidgetItem item,
             @NonNull Size previewSize,
             @NonNull Consumer<WidgetPreviewInfo> callback) {
+        Bitmap cached = getCachedPreview(item, previewSize);
+        if (cached != null) {
+            // Still delivered asynchronously, after the cell has been laid out
+            WidgetPickerMetrics.INSTANCE.onPreviewMemoryHit();
+            WidgetPreviewInfo info = new WidgetPreviewInfo();
+            info.previewBitmap = cached;
+            CancellableTask<WidgetPreviewInfo> request =
+                    new CancellableTask<>(() -> info, MAIN_EXECUTOR, callback);
+            MAIN_EXECUTOR.post(request);
+            return request;
+        }
+
         Handler handler = getLoaderExecutor().getHandler();
         CancellableTask<WidgetPreviewInfo> request = new CancellableTask<>(
                 () -> generatePreviewInfoBg(item, previewSize.getWidth(), previewSize.getHeight()),
@@ -91,6 +128,41 @@ public class DatabaseWidgetPreviewLoader {
         return request;
     }
 
+    /**
+     * Returns whether the preview of {@code item} is a bitmap kept by the preview cache, i.e.
+     * whether generating it ahead of time saves work when its cell is bound.
+     */
+    public static boolean hasCacheablePreview(@NonNull WidgetItem item) {
+        AppWidgetProviderInfo widgetInfo = item.widgetInfo;
+        if (widgetInfo == null) {
+            return item.activityInfo != null;
+        }
+        if (BuildCompat.isAtLeastV() && Flags.enableGeneratedPreviews()
+                && ((widgetInfo.generatedPreviewCategories & WIDGET_CATEGORY_HOME_SCREEN) != 0)) {
+            return false;
+        }
+        return widgetInfo.previewLayout == Resources.ID_NULL && widgetInfo.previewImage != 0;
+    }
+
+    /** Returns the preview of {@code item} if it is in the in-memory cache. */
+    @Nullable
+    public Bitmap getCachedPreview(@NonNull WidgetItem item, @NonNull Size previewSize) {
+        if (!hasCacheablePreview(item)) return null;
+        PreviewKey key = getPreviewKey(item, previewSize.getWidth(), previewSize.getHeight());
+        return key == null ? null : sPreviewCache.get(key.toMemoryKey());
+    }
+
+    /**
+     * Generates the preview of {@code item} into the cache without delivering it, so that a cell
+     * bound later gets it from memory.
+     */
+    @WorkerThread
+    public void prefetchPreview(@NonNull WidgetItem item, @NonNull Size previewSize) {
+        if (hasCacheablePreview(item)) {
+            generatePreview(item, previewSize.getWidth(), previewSize.getHeight());
+        }
+    }
+
     @VisibleForTesting
     @NonNull
     public static LooperExecutor getLoaderExecutor() {
@@ -131,15 +203,98 @@ public class DatabaseWidgetPreviewLoader {
     }
 
     /**
-     * Returns a generated preview for a widget and if the preview should be saved in persistent
-     * storage.
+     * Returns the bitmap preview for a widget or shortcut, from the memory or disk cache when
+     * possible.
      */
     private Bitmap generatePreview(WidgetItem item, int previewWidth, int previewHeight) {
+        PreviewKey key = getPreviewKey(item, previewWidth, previewHeight);
+        if (key != null) {
+            String memoryKey = key.toMemoryKey();
+            Bitmap cached = sPreviewCache.get(memoryKey);
+            if (cached == null) {
+                cached = getPreviewDb(mContext).load(key);
+                if (cached != null) {
+                    sPreviewCache.put(memoryKey, cached);
+                }
+            }
+            if (cached != null) return cached;
+        }
+
+        Bitmap preview;
+        boolean[] fromPreviewImage = new boolean[1];
+        if (item.widgetInfo != null) {
+            preview = generateWidgetPreview(item.widgetInfo, previewWidth, null,
+                    fromPreviewImage);
+        } else {
+            preview = generateShortcutPreview(item.activityInfo, previewWidth, previewHeight);
+        }
+
+        // Placeholders depend on the grid and are cheap to draw, so only cache real previews
+        if (key != null && preview != null
+                && (item.widgetInfo == null || fromPreviewImage[0])) {
+            sPreviewCache.put(key.toMemoryKey(), preview);
+            WidgetPreviewDB db = getPreviewDb(mContext);
+            Executors.ORDERED_BG_EXECUTOR.execute(() -> db.save(key, preview));
+        }
+        return preview;
+    }
+
+    /**
+     * Returns the cache key of the bitmap preview of {@code item}, or null if it should not be
+     * cached: widgets without a preview image are drawn as a placeholder.
+     */
+    @Nullable
+    private PreviewKey getPreviewKey(WidgetItem item, int previewWidth, int previewHeight) {
+        ApplicationInfo appInfo;
+        String extraState = "";
         if (item.widgetInfo != null) {
-            return generateWidgetPreview(item.widgetInfo, previewWidth, null);
+            if (item.widgetInfo.previewImage == 0) return null;
+            appInfo = item.widgetInfo.providerInfo.applicationInfo;
+        } else if (item.activityInfo != null) {
+            appInfo = item.activityInfo.getApplicationInfo();
+            // Shortcut previews are sized by the icon size rather than the requested size
+            extraState = " " + ActivityContext.lookupContext(mContext)
+                    .getDeviceProfile().allAppsIconSizePx;
         } else {
-            return generateShortcutPreview(item.activityInfo, previewWidth, previewHeight);
+            return null;
+        }
+        if (appInfo == null) return null;
+
+        // The icon provider state covers the package install and the icon theme. Previews are
+        // loaded from resources, which resolve per night mode and density.
+        Configuration config = mContext.getResources().getConfiguration();
+        String freshnessId = LauncherAppState.getInstance(mContext).getIconProvider()
+                .getStateForApp(appInfo) + extraState
+                + " " + (config.uiMode & Configuration.UI_MODE_NIGHT_MASK)
+                + " " + config.densityDpi;
+        long userSerial = UserCache.INSTANCE.get(mContext).getSerialNumberForUser(item.user);
+        return new PreviewKey(item.componentName.flattenToString(), userSerial,
+                previewWidth, previewHeight, freshnessId);
+    }
+
+    private static synchronized WidgetPreviewDB getPreviewDb(Context context) {
+        if (sPreviewDb == null) {
+            sPreviewDb = new WidgetPreviewDB(context.getApplicationContext());
+        }
+        return sPreviewDb;
+    }
+
+    /**
+     * Drops cached previews of a package that was added, updated or removed. Must be called on
+     * {@link Executors#MODEL_EXECUTOR}.
+     */
+    @WorkerThread
+    public static void removePreviewsForPkg(Context context, String packageName,
+            UserHandle user) {
+        String prefix = packageName + '/';
+        long userSerial = UserCache.INSTANCE.get(context).getSerialNumberForUser(user);
+        String serialPart = "#" + userSerial + "#";
+        for (String key : sPreviewCache.snapshot().keySet()) {
+            if (key.startsWith(prefix) && key.contains(serialPart)) {
+                sPreviewCache.remove(key);
+            }
         }
+        getPreviewDb(context).removePackage(packageName, userSerial);
     }
 
     /**
@@ -152,6 +307,15 @@ public class DatabaseWidgetPreviewLoader {
      */
     public Bitmap generateWidgetPreview(LauncherAppWidgetProviderInfo info,
             int maxPreviewWidth, int[] preScaledWidthOut) {
+        return generateWidgetPreview(info, maxPreviewWidth, preScaledWidthOut, null);
+    }
+
+    /**
+     * @param fromPreviewImageOut if not null, set to whether the preview was drawn from the
+     *                            provider's preview image rather than as a placeholder
+     */
+    private Bitmap generateWidgetPreview(LauncherAppWidgetProviderInfo info,
+            int maxPreviewWidth, int[] preScaledWidthOut, boolean[] fromPreviewImageOut) {
         // Load the preview image if possible
         if (maxPreviewWidth < 0) maxPreviewWidth = Integer.MAX_VALUE;
 
@@ -176,6 +340,9 @@ public class DatabaseWidgetPreviewLoader {
         }
 
         final boolean widgetPreviewExists = (drawable != null);
+        if (fromPreviewImageOut != null) {
+            fromPreviewImageOut[0] = widgetPreviewExists;
+        }
         final int spanX = info.spanX;
         final int spanY = info.spanY;
 
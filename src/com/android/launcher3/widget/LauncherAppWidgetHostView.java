@@ -18,6 +18,7 @@ package com.android.launcher3.widget;
 
 import android.appwidget.AppWidgetProviderInfo;
 import android.content.Context;
+import android.graphics.Bitmap;
 import android.graphics.Rect;
 import android.os.Handler;
 import android.os.Parcelable;
@@ -37,10 +38,12 @@ import android.widget.RemoteViews;
 
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
+import androidx.annotation.UiThread;
 
 import com.android.launcher3.CheckLongPressHelper;
 import com.android.launcher3.Flags;
 import com.android.launcher3.R;
+import com.android.launcher3.icons.BitmapRenderer;
 import com.android.launcher3.model.data.ItemInfo;
 import com.android.launcher3.util.Themes;
 import com.android.launcher3.views.ActivityContext;
@@ -70,6 +73,9 @@ public class LauncherAppWidgetHostView extends BaseLauncherAppWidgetHostView
 
     private static final Integer NO_LAYOUT_ID = Integer.valueOf(0);
 
+    // Scale of the snapshot shown in place of a dormant widget's views
+    private static final float DORMANT_SNAPSHOT_SCALE = 0.5f;
+
     private final CheckLongPressHelper mLongPressHelper;
     protected final ActivityContext mActivityContext;
 
@@ -81,6 +87,7 @@ public class LauncherAppWidgetHostView extends BaseLauncherAppWidgetHostView
     private long mDeferUpdatesUntilMillis = 0;
     private RemoteViews mLastRemoteViews;
     private boolean mReapplyOnResumeUpdates = false;
+    private boolean mDormant = false;
 
     private boolean mTrackingWidgetUpdate = false;
 
@@ -141,7 +148,7 @@ public class LauncherAppWidgetHostView extends BaseLauncherAppWidgetHostView
         }
         mLastRemoteViews = remoteViews;
         mReapplyOnResumeUpdates = isDeferringUpdates();
-        if (mReapplyOnResumeUpdates) {
+        if (mReapplyOnResumeUpdates || mDormant) {
             return;
         }
 
@@ -218,11 +225,73 @@ public class LauncherAppWidgetHostView extends BaseLauncherAppWidgetHostView
      */
     public void endDeferringUpdates() {
         mDeferUpdatesUntilMillis = 0;
-        if (mReapplyOnResumeUpdates) {
+        if (mDormant) {
+            applyDormantPlaceholder();
+        } else if (mReapplyOnResumeUpdates) {
+            updateAppWidget(mLastRemoteViews);
+        }
+    }
+
+    /**
+     * Makes this widget dormant or wakes it up. A dormant widget replaces its views with a
+     * snapshot of their last drawn state, and only records the {@link RemoteViews} updates it
+     * receives. Waking it up applies the latest of them.
+     *
+     * The widget stays bound to the widget host while dormant, so no update is lost.
+     */
+    @UiThread
+    public void setDormant(boolean dormant) {
+        if (mDormant == dormant) {
+            return;
+        }
+        mDormant = dormant;
+        if (mLastRemoteViews == null) {
+            // Nothing applied yet, the first update will be recorded or applied as usual
+            return;
+        }
+        if (dormant) {
+            if (!isDeferringUpdates()) {
+                applyDormantPlaceholder();
+            }
+        } else {
             updateAppWidget(mLastRemoteViews);
         }
     }
 
+    /** Returns true if this widget is showing a snapshot instead of its views. */
+    public boolean isDormant() {
+        return mDormant;
+    }
+
+    private void applyDormantPlaceholder() {
+        if (mLastRemoteViews == null) {
+            return;
+        }
+        RemoteViews placeholder = new RemoteViews(
+                getContext().getPackageName(), R.layout.widget_dormant_snapshot);
+        Bitmap snapshot = createSnapshot();
+        if (snapshot != null) {
+            placeholder.setImageViewBitmap(R.id.widget_dormant_snapshot, snapshot);
+        }
+        super.updateAppWidget(placeholder);
+        // Drops the auto-advance registration of the replaced views
+        checkIfAutoAdvance();
+    }
+
+    @Nullable
+    private Bitmap createSnapshot() {
+        View content = getChildCount() > 0 ? getChildAt(0) : null;
+        if (content == null || content.getWidth() <= 0 || content.getHeight() <= 0) {
+            return null;
+        }
+        int width = Math.max(1, (int) (content.getWidth() * DORMANT_SNAPSHOT_SCALE));
+        int height = Math.max(1, (int) (content.getHeight() * DORMANT_SNAPSHOT_SCALE));
+        return BitmapRenderer.createHardwareBitmap(width, height, c -> {
+            c.scale(DORMANT_SNAPSHOT_SCALE, DORMANT_SNAPSHOT_SCALE);
+            content.draw(c);
+        });
+    }
+
     @Override
     public boolean onInterceptTouchEvent(MotionEvent ev) {
         if (ev.getAction() == MotionEvent.ACTION_DOWN) {
@@ -30,6 +30,7 @@ import android.content.Context;
 import android.graphics.Bitmap;
 import android.graphics.Rect;
 import android.graphics.drawable.Drawable;
+import android.os.SystemClock;
 import android.text.TextUtils;
 import android.util.AttributeSet;
 import android.util.Log;
@@ -61,6 +62,7 @@ import com.android.launcher3.model.data.PackageItemInfo;
 import com.android.launcher3.util.CancellableTask;
 import com.android.launcher3.views.ActivityContext;
 import com.android.launcher3.widget.DatabaseWidgetPreviewLoader.WidgetPreviewInfo;
+import com.android.launcher3.widget.picker.WidgetPickerMetrics;
 import com.android.launcher3.widget.picker.util.WidgetPreviewContainerSize;
 import com.android.launcher3.widget.util.WidgetSizes;
 
@@ -210,6 +212,7 @@ public class WidgetCell extends LinearLayout {
         hideAddButton(/* animate= */ false);
 
         if (mActiveRequest != null) {
+            WidgetPickerMetrics.INSTANCE.onPreviewCancelled();
             mActiveRequest.cancel();
             mActiveRequest = null;
         }
@@ -270,8 +273,13 @@ public class WidgetCell extends LinearLayout {
             applyPreview(previewInfo);
         } else {
             if (mActiveRequest == null) {
+                long requestTime = SystemClock.uptimeMillis();
                 mActiveRequest = mWidgetPreviewLoader.loadPreview(
-                        mItem, mWidgetSize, this::applyPreview);
+                        mItem, mWidgetSize, previewInfo -> {
+                            WidgetPickerMetrics.INSTANCE.onPreviewApplied(
+                                    SystemClock.uptimeMillis() - requestTime);
+                            applyPreview(previewInfo);
+                        });
             }
         }
     }
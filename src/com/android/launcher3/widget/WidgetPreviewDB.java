@@ -0,0 +1,146 @@
+/*
+ * Copyright (C) 2025 DefaultLauncher Contributors
+ *
+ * This file is part of DefaultLauncher.
+ *
+ * DefaultLauncher is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * DefaultLauncher is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with DefaultLauncher. If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.android.launcher3.widget;
+
+import static android.graphics.Bitmap.Config.HARDWARE;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteException;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.WorkerThread;
+
+import com.android.launcher3.LauncherFiles;
+import com.android.launcher3.icons.GraphicsUtils;
+import com.android.launcher3.util.SQLiteCacheHelper;
+
+/**
+ * Persistent store for bitmap widget and shortcut previews generated by
+ * {@link DatabaseWidgetPreviewLoader}.
+ *
+ * Rows are keyed by provider component, user serial and preview size. The freshness column
+ * captures the provider package install and the icon state; a row with a stale freshness id is
+ * ignored on read and overwritten on the next write.
+ */
+public class WidgetPreviewDB extends SQLiteCacheHelper {
+
+    private static final String TAG = "WidgetPreviewDB";
+
+    // Bump to drop all persisted previews after a rendering change.
+    private static final int RELEASE_VERSION = 1;
+
+    public static final String TABLE_NAME = "widget_previews";
+    public static final String COLUMN_COMPONENT = "componentName";
+    public static final String COLUMN_USER = "profileId";
+    public static final String COLUMN_SIZE = "size";
+    public static final String COLUMN_FRESHNESS_ID = "freshnessId";
+    public static final String COLUMN_PREVIEW = "preview";
+
+    private static final String[] READ_COLUMNS = { COLUMN_PREVIEW };
+
+    public WidgetPreviewDB(Context context) {
+        super(context, LauncherFiles.WIDGET_PREVIEWS_DB, RELEASE_VERSION, TABLE_NAME);
+    }
+
+    @Override
+    protected void onCreateTable(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE IF NOT EXISTS " + TABLE_NAME + " ("
+                + COLUMN_COMPONENT + " TEXT NOT NULL, "
+                + COLUMN_USER + " INTEGER NOT NULL, "
+                + COLUMN_SIZE + " TEXT NOT NULL, "
+                + COLUMN_FRESHNESS_ID + " TEXT, "
+                + COLUMN_PREVIEW + " BLOB, "
+                + "PRIMARY KEY (" + COLUMN_COMPONENT + ", " + COLUMN_USER + ", "
+                + COLUMN_SIZE + "));");
+    }
+
+    /** Returns the persisted preview for {@code key}, or null if missing or stale. */
+    @WorkerThread
+    @Nullable
+    public Bitmap load(@NonNull PreviewKey key) {
+        try (Cursor c = query(READ_COLUMNS,
+                COLUMN_COMPONENT + " = ? AND " + COLUMN_USER + " = ? AND "
+                        + COLUMN_SIZE + " = ? AND " + COLUMN_FRESHNESS_ID + " = ?",
+                new String[] { key.component, Long.toString(key.userSerial), key.size,
+                        key.freshnessId })) {
+            if (!c.moveToNext()) return null;
+            byte[] data = c.getBlob(0);
+            if (data == null) return null;
+
+            BitmapFactory.Options opts = new BitmapFactory.Options();
+            opts.inPreferredConfig = HARDWARE;
+            return BitmapFactory.decodeByteArray(data, 0, data.length, opts);
+        } catch (SQLiteException e) {
+            Log.d(TAG, "Error reading widget preview cache", e);
+            return null;
+        }
+    }
+
+    /** Persists {@code preview} for {@code key}, replacing any previous row. */
+    @WorkerThread
+    public void save(@NonNull PreviewKey key, @NonNull Bitmap preview) {
+        byte[] data = GraphicsUtils.flattenBitmap(preview);
+        if (data == null) return;
+
+        ContentValues cv = new ContentValues();
+        cv.put(COLUMN_COMPONENT, key.component);
+        cv.put(COLUMN_USER, key.userSerial);
+        cv.put(COLUMN_SIZE, key.size);
+        cv.put(COLUMN_FRESHNESS_ID, key.freshnessId);
+        cv.put(COLUMN_PREVIEW, data);
+        insertOrReplace(cv);
+    }
+
+    /** Removes every persisted preview of the given package for the given user. */
+    @WorkerThread
+    public void removePackage(@NonNull String packageName, long userSerial) {
+        // Exact prefix compare: LIKE would treat '_' in package names as a wildcard
+        String prefix = packageName + "/";
+        delete("substr(" + COLUMN_COMPONENT + ", 1, " + prefix.length() + ") = ? AND "
+                + COLUMN_USER + " = ?", new String[] { prefix, Long.toString(userSerial) });
+    }
+
+    /** Identity of one generated preview. */
+    public static class PreviewKey {
+        final String component;
+        final long userSerial;
+        final String size;
+        final String freshnessId;
+
+        public PreviewKey(String component, long userSerial, int width, int height,
+                String freshnessId) {
+            this.component = component;
+            this.userSerial = userSerial;
+            this.size = width + "x" + height;
+            this.freshnessId = freshnessId;
+        }
+
+        /** Key for the in-memory cache, covering every column. */
+        String toMemoryKey() {
+            return component + '#' + userSerial + '#' + size + '#' + freshnessId;
+        }
+    }
+}
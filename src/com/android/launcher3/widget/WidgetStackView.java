@@ -28,6 +28,7 @@ import android.graphics.Outline;
 import android.graphics.Paint;
 import android.graphics.Rect;
 import android.util.AttributeSet;
+import android.util.Log;
 import android.view.MotionEvent;
 import android.view.VelocityTracker;
 import android.view.View;
@@ -42,8 +43,11 @@ import androidx.core.content.ContextCompat;
 
 import com.android.app.animation.Interpolators;
 import com.android.launcher3.celllayout.CellLayoutLayoutParams;
+import com.android.launcher3.BuildConfig;
 import com.android.launcher3.CheckLongPressHelper;
 import com.android.launcher3.Launcher;
+import com.android.launcher3.LauncherPrefs;
+import com.android.launcher3.PrefSubscriber;
 import com.android.launcher3.R;
 import com.android.launcher3.Reorderable;
 import com.android.launcher3.dragndrop.DragOptions;
@@ -73,6 +77,7 @@ import java.util.function.Consumer;
 public class WidgetStackView extends FrameLayout implements DraggableView, Reorderable {
 
     private static final String TAG = "WidgetStackView";
+    private static final boolean DEBUG = BuildConfig.DEBUG;
     private static final int FLING_THRESHOLD_VELOCITY = 500; // dp/s
     private static final float SNAP_THRESHOLD = 0.5f;
 
@@ -125,6 +130,16 @@ public class WidgetStackView extends FrameLayout implements DraggableView, Reord
     private static final long ACTIVE_INDEX_SAVE_DELAY_MS = 1500;
     private Runnable mPendingActiveIndexSave;
 
+    // Lazy children: widgets further than this from the active one are kept dormant
+    private static final int LIVE_NEIGHBOUR_DISTANCE = 1;
+    private boolean mLazyChildren;
+    private final Runnable mUpdateDormancy = this::updateChildDormancy;
+    private final PrefSubscriber mPrefSubscriber = changed -> {
+        mLazyChildren = LauncherPrefs.get(getContext()).get(LauncherPrefs.LAZY_WIDGET_STACKS);
+        updateChildDormancy();
+    };
+    @Nullable private AutoCloseable mPrefSubscription;
+
     /** Functional interface for accumulating a value from provider info across all children. */
     @FunctionalInterface
     private interface ProviderInfoAccumulator {
@@ -175,6 +190,10 @@ public class WidgetStackView extends FrameLayout implements DraggableView, Reord
     @Override
     protected void onAttachedToWindow() {
         super.onAttachedToWindow();
+        LauncherPrefs prefs = LauncherPrefs.get(getContext());
+        mLazyChildren = prefs.get(LauncherPrefs.LAZY_WIDGET_STACKS);
+        mPrefSubscription = prefs.getPrefChanges()
+                .subscribe(mPrefSubscriber, LauncherPrefs.LAZY_WIDGET_STACKS);
         updateChildVisibility();
     }
 
@@ -186,6 +205,15 @@ public class WidgetStackView extends FrameLayout implements DraggableView, Reord
         recycleVelocityTracker();
         cancelDotHide();
         cancelActiveIndexSave();
+        removeCallbacks(mUpdateDormancy);
+        if (mPrefSubscription != null) {
+            try {
+                mPrefSubscription.close();
+            } catch (Exception e) {
+                if (DEBUG) Log.w(TAG, "Failed to close pref subscription", e);
+            }
+            mPrefSubscription = null;
+        }
         if (mDotFadeAnimator != null) {
             mDotFadeAnimator.cancel();
             mDotFadeAnimator = null;
@@ -544,6 +572,35 @@ public class WidgetStackView extends FrameLayout implements DraggableView, Reord
         for (int i = 0; i < mWidgetViews.size(); i++) {
             mWidgetViews.get(i).setVisibility(i == mActiveIndex ? VISIBLE : INVISIBLE);
         }
+        // The active widget must be live right away; the rest can wait for the next frame
+        if (mActiveIndex >= 0 && mActiveIndex < mWidgetViews.size()
+                && mWidgetViews.get(mActiveIndex) instanceof LauncherAppWidgetHostView lv) {
+            lv.setDormant(false);
+        }
+        removeCallbacks(mUpdateDormancy);
+        post(mUpdateDormancy);
+    }
+
+    /**
+     * Keeps the active widget and its direct neighbours live, so a swipe always reveals live
+     * content, and makes the others dormant when lazy stacks are enabled.
+     */
+    private void updateChildDormancy() {
+        for (int i = 0; i < mWidgetViews.size(); i++) {
+            if (mWidgetViews.get(i) instanceof LauncherAppWidgetHostView lv) {
+                lv.setDormant(mLazyChildren
+                        && Math.abs(i - mActiveIndex) > LIVE_NEIGHBOUR_DISTANCE);
+            }
+        }
+    }
+
+    @Override
+    public void onViewRemoved(View child) {
+        super.onViewRemoved(child);
+        // A widget leaving the stack (unstacked, dragged out or replaced) must be live again
+        if (child instanceof LauncherAppWidgetHostView lv) {
+            lv.setDormant(false);
+        }
     }
 
     /**
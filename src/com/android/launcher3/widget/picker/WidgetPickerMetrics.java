@@ -0,0 +1,106 @@
+/*
+ * Copyright (C) 2025 DefaultLauncher Contributors
+ *
+ * This file is part of DefaultLauncher.
+ *
+ * DefaultLauncher is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ */
+package com.android.launcher3.widget.picker;
+
+import com.android.launcher3.util.LatencyHistogram;
+
+import java.io.PrintWriter;
+
+/**
+ * Process-wide counters for the widget picker: frame intervals while the list scrolls, the
+ * latency from binding a widget cell to its preview being applied, and what the preview
+ * prefetcher did.
+ *
+ * <p>Frame intervals are the time between consecutive frames drawn while a
+ * {@link WidgetsRecyclerView} is scrolling, so a dropped frame shows up as a long interval.
+ * Exposed via {@code dumpsys activity} on the launcher and the Debug settings page.
+ */
+public final class WidgetPickerMetrics {
+
+    public static final WidgetPickerMetrics INSTANCE = new WidgetPickerMetrics();
+
+    private final LatencyHistogram mFrameIntervals = new LatencyHistogram();
+    private final LatencyHistogram mPreviewLatency = new LatencyHistogram();
+    private final LatencyHistogram mPrefetchDuration = new LatencyHistogram();
+    private long mJankyFrames;
+    private long mPreviewMemoryHits;
+    private long mPreviewsCancelled;
+    private long mPrefetchQueued;
+    private long mPrefetchDropped;
+
+    private WidgetPickerMetrics() { }
+
+    /**
+     * A frame was drawn {@code intervalMs} after the previous one while scrolling. It counts as
+     * janky if it took longer than one and a half display refresh periods.
+     */
+    synchronized void onScrollFrame(long intervalMs, boolean janky) {
+        mFrameIntervals.record(intervalMs);
+        if (janky) {
+            mJankyFrames++;
+        }
+    }
+
+    /** A widget cell received its preview {@code latencyMs} after it was bound. */
+    public synchronized void onPreviewApplied(long latencyMs) {
+        mPreviewLatency.record(latencyMs);
+    }
+
+    /** A widget cell was cleared or rebound before its preview arrived. */
+    public synchronized void onPreviewCancelled() {
+        mPreviewsCancelled++;
+    }
+
+    /** A preview request was answered from the in-memory preview cache. */
+    public synchronized void onPreviewMemoryHit() {
+        mPreviewMemoryHits++;
+    }
+
+    synchronized void onPrefetchQueued(int count) {
+        mPrefetchQueued += count;
+    }
+
+    /** Queued prefetches left the prefetch window before they ran. */
+    synchronized void onPrefetchDropped(int count) {
+        mPrefetchDropped += count;
+    }
+
+    synchronized void onPrefetchCompleted(long durationMs) {
+        mPrefetchDuration.record(durationMs);
+    }
+
+    /** Clears every counter. */
+    public synchronized void reset() {
+        mFrameIntervals.reset();
+        mPreviewLatency.reset();
+        mPrefetchDuration.reset();
+        mJankyFrames = 0;
+        mPreviewMemoryHits = 0;
+        mPreviewsCancelled = 0;
+        mPrefetchQueued = 0;
+        mPrefetchDropped = 0;
+    }
+
+    public synchronized void dump(String prefix, PrintWriter writer) {
+        writer.println(prefix + "WidgetPickerMetrics:");
+        writer.println(prefix + "  " + LatencyHistogram.BUCKETS_LEGEND);
+        writer.println(prefix + "  scrollFrames " + mFrameIntervals + " janky=" + mJankyFrames);
+        writer.println(prefix + "  previewLatency " + mPreviewLatency
+                + " memoryHits=" + mPreviewMemoryHits + " cancelled=" + mPreviewsCancelled);
+        writer.println(prefix + "  prefetch " + mPrefetchDuration
+                + " queued=" + mPrefetchQueued + " dropped=" + mPrefetchDropped);
+    }
+
+    /** Returns {@link #dump} output as a string, for display in settings. */
+    public String dumpToString() {
+        return LatencyHistogram.dumpToString(this::dump);
+    }
+}
@@ -0,0 +1,160 @@
+/*
+ * Copyright (C) 2025 DefaultLauncher Contributors
+ *
+ * This file is part of DefaultLauncher.
+ *
+ * DefaultLauncher is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * DefaultLauncher is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with DefaultLauncher. If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.android.launcher3.widget.picker;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.MessageQueue;
+import android.os.SystemClock;
+import android.util.Size;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.UiThread;
+import androidx.annotation.WorkerThread;
+
+import com.android.launcher3.DeviceProfile;
+import com.android.launcher3.model.WidgetItem;
+import com.android.launcher3.views.ActivityContext;
+import com.android.launcher3.widget.DatabaseWidgetPreviewLoader;
+import com.android.launcher3.widget.util.WidgetSizes;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Generates widget previews into the preview cache before their cells are bound.
+ *
+ * The caller sets the window of items predicted to come on screen next, nearest first; items
+ * that leave the window before they ran are dropped. Prefetches run one at a time on the
+ * preview loader thread, and only while it has nothing else queued, so previews requested by
+ * bound cells always go first.
+ */
+final class WidgetPreviewPrefetcher {
+
+    private final Context mContext;
+    private final DatabaseWidgetPreviewLoader mLoader;
+    private final Handler mHandler;
+    private final MessageQueue mQueue;
+    private final Runnable mRunNext = this::runNext;
+
+    // Guarded by this
+    private final ArrayDeque<Request> mPending = new ArrayDeque<>();
+    private boolean mScheduled;
+
+    WidgetPreviewPrefetcher(Context context) {
+        mContext = context;
+        mLoader = new DatabaseWidgetPreviewLoader(context);
+        mHandler = DatabaseWidgetPreviewLoader.getLoaderExecutor().getHandler();
+        mQueue = mHandler.getLooper().getQueue();
+    }
+
+    /**
+     * Replaces the prefetch window with {@code items}, nearest first. Items whose preview is
+     * already cached, or is not a cacheable bitmap, are skipped.
+     */
+    @UiThread
+    void setWindow(@NonNull List<WidgetItem> items) {
+        DeviceProfile dp = ActivityContext.lookupContext(mContext).getDeviceProfile();
+        List<Request> requests = new ArrayList<>(items.size());
+        for (WidgetItem item : items) {
+            if (!DatabaseWidgetPreviewLoader.hasCacheablePreview(item)) continue;
+            Size size = WidgetSizes.getWidgetItemSizePx(mContext, dp, item);
+            if (mLoader.getCachedPreview(item, size) != null) continue;
+            Request request = new Request(item, size);
+            if (!requests.contains(request)) {
+                requests.add(request);
+            }
+        }
+
+        int queued = 0;
+        int dropped = 0;
+        synchronized (this) {
+            for (Request request : mPending) {
+                if (!requests.contains(request)) dropped++;
+            }
+            for (Request request : requests) {
+                if (!mPending.contains(request)) queued++;
+            }
+            mPending.clear();
+            mPending.addAll(requests);
+            if (!mPending.isEmpty() && !mScheduled) {
+                mScheduled = true;
+                mHandler.post(mRunNext);
+            }
+        }
+        WidgetPickerMetrics.INSTANCE.onPrefetchQueued(queued);
+        WidgetPickerMetrics.INSTANCE.onPrefetchDropped(dropped);
+    }
+
+    /** Drops every pending prefetch. */
+    @UiThread
+    void cancel() {
+        int dropped;
+        synchronized (this) {
+            dropped = mPending.size();
+            mPending.clear();
+        }
+        WidgetPickerMetrics.INSTANCE.onPrefetchDropped(dropped);
+    }
+
+    @WorkerThread
+    private void runNext() {
+        if (!mQueue.isIdle()) {
+            // Let the preview requests of bound cells run first
+            mHandler.post(mRunNext);
+            return;
+        }
+        Request request;
+        synchronized (this) {
+            request = mPending.poll();
+            if (request == null) {
+                mScheduled = false;
+                return;
+            }
+        }
+        long start = SystemClock.uptimeMillis();
+        mLoader.prefetchPreview(request.item, request.size);
+        WidgetPickerMetrics.INSTANCE.onPrefetchCompleted(SystemClock.uptimeMillis() - start);
+        mHandler.post(mRunNext);
+    }
+
+    private static class Request {
+        final WidgetItem item;
+        final Size size;
+
+        Request(WidgetItem item, Size size) {
+            this.item = item;
+            this.size = size;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Request)) return false;
+            Request other = (Request) o;
+            return item.equals(other.item) && size.equals(other.size);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(item, size);
+        }
+    }
+}
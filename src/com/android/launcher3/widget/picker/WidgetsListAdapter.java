@@ -457,6 +457,12 @@ public class WidgetsListAdapter extends Adapter<ViewHolder> implements OnHeaderC
         updateVisibleEntries();
     }
 
+    /** Returns the max horizontal span in pixels of a table row. */
+    @Px
+    int getMaxHorizontalSpansPxPerRow() {
+        return mMaxHorizontalSpan;
+    }
+
     /**
      * Returns the widget content {@link WidgetsListContentEntry} for a selected header.
      */
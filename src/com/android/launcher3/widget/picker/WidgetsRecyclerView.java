@@ -16,27 +16,72 @@
 
 package com.android.launcher3.widget.picker;
 
+import static com.android.launcher3.widget.util.WidgetsTableUtils.groupWidgetItemsUsingRowPxWithReordering;
+
 import android.content.Context;
 import android.graphics.Point;
+import android.os.SystemClock;
 import android.util.AttributeSet;
+import android.view.Choreographer;
+import android.view.Display;
 import android.view.MotionEvent;
 
 import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
 import androidx.recyclerview.widget.RecyclerView.OnItemTouchListener;
 
+import com.android.launcher3.DeviceProfile;
 import com.android.launcher3.FastScrollRecyclerView;
 import com.android.launcher3.R;
+import com.android.launcher3.Utilities;
+import com.android.launcher3.model.WidgetItem;
 import com.android.launcher3.util.ScrollableLayoutManager;
+import com.android.launcher3.views.ActivityContext;
+import com.android.launcher3.widget.model.WidgetsListBaseEntry;
+import com.android.launcher3.widget.model.WidgetsListContentEntry;
+import com.android.launcher3.widget.model.WidgetsListHeaderEntry;
+
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * The widgets recycler view.
+ *
+ * While the list moves, previews of the headers and rows about to scroll in are prefetched: the
+ * window extends past the visible edge in the scroll direction, further the faster the list
+ * moves. Frame intervals during scrolling are recorded in {@link WidgetPickerMetrics}.
  */
 public class WidgetsRecyclerView extends FastScrollRecyclerView implements OnItemTouchListener {
 
+    // How far ahead to prefetch, as time at the current scroll speed
+    private static final int PREFETCH_LOOKAHEAD_MS = 300;
+    // Bounds of the prefetch window, in screens past the visible edge
+    private static final float MIN_PREFETCH_SCREENS = 0.5f;
+    private static final float MAX_PREFETCH_SCREENS = 3f;
+    // Weight of the newest sample in the smoothed scroll velocity
+    private static final float VELOCITY_SMOOTHING = 0.3f;
+    // Scroll samples further apart than this start a new velocity estimate
+    private static final int VELOCITY_SAMPLE_MAX_GAP_MS = 100;
+
     private WidgetsListAdapter mAdapter;
 
     private final int mScrollbarTop;
+    private final int mCellPadding;
+    private final WidgetPreviewPrefetcher mPrefetcher;
+
+    private int mScrollDirection = 1;
+    // Smoothed scroll speed, in px per ms
+    private float mScrollVelocity;
+    private long mLastScrollTime;
+    // Last prefetch window, to skip recomputing it while it is unchanged
+    private int mPrefetchStart = NO_POSITION;
+    private int mPrefetchEnd = NO_POSITION;
+    private int mPrefetchItemCount;
+
+    private final Choreographer.FrameCallback mFrameCallback = this::onScrollFrame;
+    private boolean mTrackingFrames;
+    private long mLastFrameNanos;
+    private long mFrameIntervalNanos;
 
     private final Point mFastScrollerOffset = new Point();
     private boolean mTouchDownOnScroller;
@@ -54,6 +99,9 @@ public class WidgetsRecyclerView extends FastScrollRecyclerView implements OnIte
         // API 21 and below only support 3 parameter ctor.
         super(context, attrs, defStyleAttr);
         mScrollbarTop = getResources().getDimensionPixelSize(R.dimen.dynamic_grid_edge_margin);
+        mCellPadding = getResources().getDimensionPixelSize(
+                R.dimen.widget_cell_horizontal_padding);
+        mPrefetcher = new WidgetPreviewPrefetcher(context);
         addOnItemTouchListener(this);
     }
 
@@ -113,6 +161,130 @@ public class WidgetsRecyclerView extends FastScrollRecyclerView implements OnIte
         synchronizeScrollBarThumbOffsetToViewScroll(scrollY, getAvailableScrollHeight());
     }
 
+    @Override
+    public void onScrolled(int dx, int dy) {
+        super.onScrolled(dx, dy);
+        if (dy != 0) {
+            mScrollDirection = dy > 0 ? 1 : -1;
+            long now = SystemClock.uptimeMillis();
+            long elapsed = now - mLastScrollTime;
+            if (elapsed > 0 && elapsed < VELOCITY_SAMPLE_MAX_GAP_MS) {
+                float velocity = Math.abs(dy) / (float) elapsed;
+                mScrollVelocity += VELOCITY_SMOOTHING * (velocity - mScrollVelocity);
+            }
+            mLastScrollTime = now;
+        }
+        updatePrefetchWindow();
+    }
+
+    @Override
+    public void onScrollStateChanged(int state) {
+        super.onScrollStateChanged(state);
+        if (state == SCROLL_STATE_IDLE) {
+            stopFrameTracking();
+            mScrollVelocity = 0;
+            updatePrefetchWindow();
+        } else {
+            startFrameTracking();
+        }
+    }
+
+    @Override
+    protected void onDetachedFromWindow() {
+        super.onDetachedFromWindow();
+        stopFrameTracking();
+        mPrefetcher.cancel();
+        mPrefetchStart = NO_POSITION;
+        mPrefetchEnd = NO_POSITION;
+    }
+
+    /**
+     * Sets the prefetch window to the entries past the visible edge in the scroll direction,
+     * covering {@link #PREFETCH_LOOKAHEAD_MS} at the current scroll speed.
+     */
+    private void updatePrefetchWindow() {
+        if (mAdapter == null || getHeight() == 0
+                || !(getLayoutManager() instanceof LinearLayoutManager)) {
+            return;
+        }
+        LinearLayoutManager layoutManager = (LinearLayoutManager) getLayoutManager();
+        int first = layoutManager.findFirstVisibleItemPosition();
+        int last = layoutManager.findLastVisibleItemPosition();
+        if (first == NO_POSITION || last == NO_POSITION) return;
+
+        float screens = Utilities.boundToRange(
+                mScrollVelocity * PREFETCH_LOOKAHEAD_MS / getHeight(),
+                MIN_PREFETCH_SCREENS, MAX_PREFETCH_SCREENS);
+        int lookahead = Math.max(1, Math.round((last - first + 1) * screens));
+        List<WidgetsListBaseEntry> entries = mAdapter.getItems();
+        int start;
+        int end;
+        if (mScrollDirection > 0) {
+            start = last + 1;
+            end = Math.min(entries.size() - 1, last + lookahead);
+        } else {
+            start = first - 1;
+            end = Math.max(0, first - lookahead);
+        }
+        if (start == mPrefetchStart && end == mPrefetchEnd
+                && entries.size() == mPrefetchItemCount) {
+            return;
+        }
+        mPrefetchStart = start;
+        mPrefetchEnd = end;
+        mPrefetchItemCount = entries.size();
+
+        DeviceProfile dp = ActivityContext.lookupContext(getContext()).getDeviceProfile();
+        List<WidgetItem> items = new ArrayList<>();
+        for (int pos = start; mScrollDirection > 0 ? pos <= end : pos >= end;
+                pos += mScrollDirection) {
+            WidgetsListBaseEntry entry = entries.get(pos);
+            if (entry instanceof WidgetsListContentEntry) {
+                WidgetsListContentEntry content = (WidgetsListContentEntry) entry;
+                for (List<WidgetItem> row : groupWidgetItemsUsingRowPxWithReordering(
+                        content.mWidgets, getContext(), dp, content.getMaxSpanSize(),
+                        mCellPadding)) {
+                    items.addAll(row);
+                }
+            } else if (entry instanceof WidgetsListHeaderEntry) {
+                // Only the first row of a header is on screen right after expanding it
+                List<ArrayList<WidgetItem>> rows = groupWidgetItemsUsingRowPxWithReordering(
+                        entry.mWidgets, getContext(), dp,
+                        mAdapter.getMaxHorizontalSpansPxPerRow(), mCellPadding);
+                if (!rows.isEmpty()) {
+                    items.addAll(rows.get(0));
+                }
+            }
+        }
+        mPrefetcher.setWindow(items);
+    }
+
+    private void startFrameTracking() {
+        if (mTrackingFrames) return;
+        mTrackingFrames = true;
+        mLastFrameNanos = 0;
+        Display display = getDisplay();
+        float refreshRate = display != null ? display.getRefreshRate() : 60f;
+        mFrameIntervalNanos = (long) (1_000_000_000L / refreshRate);
+        Choreographer.getInstance().postFrameCallback(mFrameCallback);
+    }
+
+    private void stopFrameTracking() {
+        if (!mTrackingFrames) return;
+        mTrackingFrames = false;
+        Choreographer.getInstance().removeFrameCallback(mFrameCallback);
+    }
+
+    private void onScrollFrame(long frameTimeNanos) {
+        if (mLastFrameNanos != 0) {
+            long intervalNanos = frameTimeNanos - mLastFrameNanos;
+            WidgetPickerMetrics.INSTANCE.onScrollFrame(intervalNanos / 1_000_000,
+                    intervalNanos > mFrameIntervalNanos * 3 / 2);
+        }
+        mLastFrameNanos = frameTimeNanos;
+        Choreographer.getInstance().postFrameCallback(mFrameCallback);
+    }
+
     private boolean isModelNotReady() {
         return mAdapter.getItemCount() == 0;
     }